@@ -0,0 +1,110 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * Customizing deck's {@literal settings.js} inside a synthetic deck JAR file of the given size, the way
+ * {@literal pluginSettingsJs} does when its cache misses.
+ *
+ * @author Greg Turnquist
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DeckRewriteBenchmark {
+
+	/**
+	 * Size of the JAR file's contents, in megabytes. Deck's own is about 20.
+	 */
+	@Param({"1", "20", "100"})
+	int megabytes;
+
+	Path directory;
+
+	Path source;
+
+	Path target;
+
+	Map<String, String> data;
+
+	DeckJarRewriter rewriter = new DeckJarRewriter(StandardCharsets.UTF_8);
+
+	@Setup
+	public void setUp() throws IOException {
+
+		directory = Files.createTempDirectory("deck-rewrite-benchmark");
+		source = directory.resolve("deck.jar");
+		target = directory.resolve("deck-customized.jar");
+
+		final Random random = new Random(42);
+		final byte[] chunk = new byte[64 * 1024];
+
+		try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(source))) {
+			zip.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+			zip.write("Manifest-Version: 1.0\r\n\r\n".getBytes(StandardCharsets.UTF_8));
+			for (int i = 0; i < megabytes * 16; i++) {
+				zip.putNextEntry(new ZipEntry("static/chunk" + i + ".js"));
+				random.nextBytes(chunk);
+				zip.write(chunk);
+			}
+			zip.putNextEntry(new ZipEntry("settings.js"));
+			zip.write(("var gateHost = '{gate}';\nvar primaryAccount = '{primaryAccount}';\n"
+				+ "var primaryAccounts = '{primaryAccounts}';\n").getBytes(StandardCharsets.UTF_8));
+		}
+
+		data = new HashMap<>();
+		data.put("namespace", "-bench");
+		data.put("deck.domain", "cfapps.io");
+		data.put("deck.primaryAccount", "prod");
+		data.put("deck.primaryAccounts", "prod,staging,dev");
+	}
+
+	@TearDown
+	public void tearDown() {
+		FileSystemUtils.deleteRecursively(directory.toFile());
+	}
+
+	@Benchmark
+	public Path rewrite() throws IOException {
+
+		rewriter.rewrite(source, target, settingsJs -> ModuleService.transformSettingsJs(data, settingsJs));
+		return target;
+	}
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.cloudfoundry.operations.applications.ApplicationDetail;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import org.springframework.cloud.deployer.spi.app.AppStatus;
+import org.springframework.cloud.deployer.spi.cloudfoundry.CloudFoundryAppInstanceStatus;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.Resource;
+import org.springframework.hateoas.Resources;
+import org.springframework.hateoas.core.DefaultRelProvider;
+import org.springframework.hateoas.hal.Jackson2HalModule;
+
+/**
+ * Rendering the body of {@literal /api/modules} as HAL, for the seven modules Spinnaker has today and many more,
+ * each with a few instances.
+ *
+ * @author Greg Turnquist
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HalSerializationBenchmark {
+
+	@Param({"7", "100", "1000"})
+	int modules;
+
+	@Param({"1", "3"})
+	int instances;
+
+	ObjectMapper objectMapper;
+
+	Resources<Resource<AppStatus>> body;
+
+	@Setup
+	public void setUp() {
+
+		objectMapper = new ObjectMapper();
+		objectMapper.registerModule(new Jackson2HalModule());
+		objectMapper.setHandlerInstantiator(new Jackson2HalModule.HalHandlerInstantiator(new DefaultRelProvider(), null));
+
+		final String query = "?target=2b1c7f0e-5d8a-4c3e-9f61-7a0d4e2b9c15&namespace=-bench";
+		final List<Resource<AppStatus>> statuses = new ArrayList<>();
+
+		for (int i = 0; i < modules; i++) {
+			final String deploymentId = "module" + i + "-bench";
+			final ApplicationDetail detail = ApplicationDetail.builder()
+				.name(deploymentId)
+				.id("id-" + i)
+				.build();
+
+			final AppStatus.Builder status = AppStatus.of(deploymentId);
+			for (int j = 0; j < instances; j++) {
+				status.with(new CloudFoundryAppInstanceStatus(detail, ApplicationDetail.InstanceDetail.builder()
+					.state("RUNNING")
+					.build(), j));
+			}
+
+			statuses.add(new Resource<>(status.build(), new Link("http://localhost:8080/api/modules/" + deploymentId + query)));
+		}
+
+		body = new Resources<>(statuses,
+			new Link("http://localhost:8080/api/modules" + query),
+			new Link("http://localhost:8080/api/modules/stream" + query, "stream"));
+	}
+
+	@Benchmark
+	public byte[] serialize() throws JsonProcessingException {
+		return objectMapper.writeValueAsBytes(body);
+	}
+
+}
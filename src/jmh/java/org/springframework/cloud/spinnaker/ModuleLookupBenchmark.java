@@ -0,0 +1,104 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Finding a module by a deployment id (its name plus a namespace), among the seven modules Spinnaker has today
+ * and many more. The {@literal baseline} benchmarks run a copy of the linear scan {@link ModuleService} did before
+ * {@link ModuleIndex}.
+ *
+ * @author Greg Turnquist
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ModuleLookupBenchmark {
+
+	@Param({"7", "100", "1000"})
+	int modules;
+
+	SpinnakerConfiguration configuration;
+
+	ModuleService moduleService;
+
+	String first;
+
+	String last;
+
+	@Setup
+	public void setUp() {
+
+		configuration = SyntheticConfiguration.of(modules, 0, 0);
+		moduleService = new ModuleService(configuration, null, null, null, Runnable::run,
+			null, Runnable::run, null, new DeployMetrics());
+
+		first = "module0-bench";
+		last = "module" + (modules - 1) + "-bench";
+	}
+
+	@Benchmark
+	public Optional<ModuleDetails> lookupFirst() {
+		return moduleService.lookupModule(first);
+	}
+
+	@Benchmark
+	public Optional<ModuleDetails> lookupLast() {
+		return moduleService.lookupModule(last);
+	}
+
+	@Benchmark
+	public Optional<ModuleDetails> lookupMissing() {
+		return moduleService.lookupModule("nothing-bench");
+	}
+
+	@Benchmark
+	public Optional<ModuleDetails> baselineLookupFirst() {
+		return lookupModule(configuration, first);
+	}
+
+	@Benchmark
+	public Optional<ModuleDetails> baselineLookupLast() {
+		return lookupModule(configuration, last);
+	}
+
+	@Benchmark
+	public Optional<ModuleDetails> baselineLookupMissing() {
+		return lookupModule(configuration, "nothing-bench");
+	}
+
+	/*
+	 * ModuleService.lookupModule as it was, for comparison.
+	 */
+	private static Optional<ModuleDetails> lookupModule(SpinnakerConfiguration spinnakerConfiguration, String name) {
+
+		return spinnakerConfiguration.getModules().stream()
+			.filter(details -> name.startsWith(details.getName()))
+			.findAny();
+	}
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import static java.util.stream.Stream.concat;
+
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Resolving a module's properties, from the handful in {@literal application.yml} up to thousands. The
+ * {@literal baseline} benchmark runs a copy of what {@link ModuleService} did before {@link ModulePropertyTemplates}:
+ * every pattern is re-expanded with the data for every single property.
+ *
+ * @author Greg Turnquist
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PropertyTemplatesBenchmark {
+
+	@Param({"30", "300", "3000"})
+	int properties;
+
+	@Param({"0", "10", "100"})
+	int patterns;
+
+	SpinnakerConfiguration configuration;
+
+	ModulePropertyTemplates templates;
+
+	ModuleDetails details;
+
+	Map<String, String> data;
+
+	@Setup
+	public void setUp() {
+
+		configuration = SyntheticConfiguration.of(7, properties, patterns);
+
+		templates = new ModulePropertyTemplates(configuration);
+		details = configuration.getModules().get(0);
+
+		data = new HashMap<>();
+		data.put("namespace", "-bench");
+		data.put("deck.domain", "cfapps.io");
+		data.put("spring.config.location", "https://example.com/config");
+	}
+
+	@Benchmark
+	public Map<String, String> resolve() {
+		return templates.resolve(details, data);
+	}
+
+	@Benchmark
+	public Map<String, String> compileAndResolve() {
+		return new ModulePropertyTemplates(SyntheticConfiguration.of(7, properties, patterns)).resolve(details, data);
+	}
+
+	@Benchmark
+	public Map<String, String> baseline() {
+		return getProperties(configuration, details, data);
+	}
+
+	/*
+	 * ModuleService.getProperties and its helpers as they were, for comparison.
+	 */
+
+	private static Map<String, String> getProperties(SpinnakerConfiguration spinnakerConfiguration, ModuleDetails details, Map<String, String> data) {
+
+		final Map<String, String> properties = concat(
+				spinnakerConfiguration.getProperties().entrySet().stream(),
+				details.getProperties().entrySet().stream()
+		).collect(Collectors.toMap(
+				Map.Entry::getKey,
+				e -> translateTemplatedValue(spinnakerConfiguration, details, e, data),
+				(a, b) -> b));
+
+		data.entrySet().stream()
+				.forEach(entry -> properties.put(entry.getKey(), entry.getValue()));
+
+		return properties;
+	}
+
+	private static String translateTemplatedValue(SpinnakerConfiguration spinnakerConfiguration, ModuleDetails details, Map.Entry<String, String> e, Map<String, String> data) {
+		return preprocessPatterns(spinnakerConfiguration, details, data)
+				.reduce(new AbstractMap.SimpleEntry<>(e.getKey(), e.getValue()), (accumEntry, patternEntry) -> {
+					String newValue = accumEntry.getValue().replace("${" + patternEntry.getKey() + "}", patternEntry.getValue());
+					accumEntry.setValue(newValue);
+					return accumEntry;
+				})
+				.getValue()
+				.replace("${module}", details.getName());
+	}
+
+	private static Stream<Map.Entry<String, String>> preprocessPatterns(SpinnakerConfiguration spinnakerConfiguration, ModuleDetails details, Map<String, String> data) {
+		return
+			concat(spinnakerConfiguration.getPatterns().entrySet().stream(), details.getPatterns().entrySet().stream())
+				.map(patternEntry -> {
+					String value = data.entrySet().stream()
+							.reduce(new AbstractMap.SimpleEntry<>(patternEntry.getKey(), patternEntry.getValue()), (accumEntry, dataEntry) -> {
+								String newValue = accumEntry.getValue().replace("${" + dataEntry.getKey() + "}", dataEntry.getValue());
+								accumEntry.setValue(newValue);
+								return accumEntry;
+							})
+							.getValue();
+					return new AbstractMap.SimpleEntry<>(patternEntry.getKey(), value);
+				});
+	}
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds {@link SpinnakerConfiguration}s shaped like {@literal application.yml}, scaled up to any number of
+ * modules, properties and patterns.
+ *
+ * @author Greg Turnquist
+ */
+final class SyntheticConfiguration {
+
+	private SyntheticConfiguration() {
+	}
+
+	/**
+	 * @param modules number of modules, named {@literal module0}, {@literal module1}, ...
+	 * @param properties number of top level properties, each service's base URL built from placeholders
+	 * @param patterns number of top level patterns
+	 */
+	static SpinnakerConfiguration of(int modules, int properties, int patterns) {
+
+		final SpinnakerConfiguration configuration = new SpinnakerConfiguration();
+
+		configuration.getProperties().put("services.default.protocol", "http");
+		for (int i = 0; i < properties; i++) {
+			final String service = "services.service" + (i % Math.max(1, modules));
+			configuration.getProperties().put(service + ".host", "service" + i);
+			configuration.getProperties().put(service + ".port", "80");
+			configuration.getProperties().put(service + ".baseUrl" + i,
+				"${services.default.protocol}://${" + service + ".host}${namespace}.${deck.domain}:${" + service + ".port}");
+		}
+
+		for (int i = 0; i < patterns; i++) {
+			configuration.getPatterns().put("pattern" + i, "https://raw.githubusercontent.com/{org}/config/{label}/${module}-" + i + ".yml");
+		}
+
+		final List<ModuleDetails> details = new ArrayList<>();
+		for (int i = 0; i < modules; i++) {
+			final ModuleDetails module = new ModuleDetails();
+			module.setName("module" + i);
+			module.setArtifact("module" + i + "-web");
+			module.getProperties().put("upstream.baseUrl", "${services.service" + ((i + 1) % Math.max(1, modules)) + ".baseUrl0}");
+			details.add(module);
+		}
+		configuration.setModules(details);
+
+		return configuration;
+	}
+
+}
@@ -17,6 +17,7 @@ package org.springframework.cloud.spinnaker;
 
 import static org.springframework.hateoas.mvc.ControllerLinkBuilder.*;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.hateoas.MediaTypes;
 import org.springframework.hateoas.ResourceSupport;
 import org.springframework.http.ResponseEntity;
@@ -31,18 +32,30 @@ import org.springframework.web.bind.annotation.RestController;
 @RestController
 public class ApiController {
 
+	private final TargetRegistry targets;
+
+	@Autowired
+	public ApiController(TargetRegistry targets) {
+		this.targets = targets;
+	}
+
 	@RequestMapping(method = RequestMethod.GET, value = ModuleController.BASE_PATH, produces = MediaTypes.HAL_JSON_VALUE)
-	public ResponseEntity<?> root(@RequestParam("api") String api,
-								  @RequestParam("org") String org,
-								  @RequestParam("space") String space,
-								  @RequestParam("email") String email,
-								  @RequestParam("password") String password,
+	public ResponseEntity<?> root(@RequestParam(value = "target", required = false) String targetId,
+								  @RequestParam(value = "api", required = false) String api,
+								  @RequestParam(value = "org", required = false) String org,
+								  @RequestParam(value = "space", required = false) String space,
+								  @RequestParam(value = "email", required = false) String email,
+								  @RequestParam(value = "password", required = false) String password,
 								  @RequestParam(value = "namespace", defaultValue = "") String namespace) {
 
+		Target target = targets.resolve(targetId, api, org, space, email, password);
+
 		ResourceSupport root = new ResourceSupport();
 
-		root.add(linkTo(methodOn(ApiController.class).root(api, org, space, email, password, namespace)).withSelfRel());
-		root.add(linkTo(methodOn(ModuleController.class).statuses(api, org, space, email, password, namespace)).withRel("modules"));
+		root.add(linkTo(methodOn(ApiController.class).root(target.getId(), null, null, null, null, null, namespace)).withSelfRel());
+		root.add(linkTo(methodOn(ModuleController.class).statuses(target.getId(), null, null, null, null, null, namespace)).withRel("modules"));
+		root.add(linkTo(methodOn(ModuleController.class).inventory(target.getId(), null, null, null, null, null)).withRel("inventory"));
+		root.add(linkTo(methodOn(TargetController.class).target(target.getId())).withRel("target"));
 
 		return ResponseEntity.ok(root);
 	}
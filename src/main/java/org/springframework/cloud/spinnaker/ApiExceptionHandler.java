@@ -0,0 +1,61 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import java.util.Collections;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+/**
+ * Turns bad requests to the REST API, and requests it's too busy for, into a status code and a {@literal message},
+ * instead of a server error.
+ *
+ * @author Greg Turnquist
+ */
+@ControllerAdvice(assignableTypes = {ApiController.class, ModuleController.class, TargetController.class, JobController.class})
+public class ApiExceptionHandler {
+
+	private static final Logger log = LoggerFactory.getLogger(ApiExceptionHandler.class);
+
+	@ExceptionHandler(UnknownTargetException.class)
+	public ResponseEntity<?> unknownTarget(UnknownTargetException e) {
+		return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Collections.singletonMap("message", e.getMessage()));
+	}
+
+	@ExceptionHandler(IllegalArgumentException.class)
+	public ResponseEntity<?> badRequest(IllegalArgumentException e) {
+		return ResponseEntity.badRequest().body(Collections.singletonMap("message", e.getMessage()));
+	}
+
+	/**
+	 * Too many jobs are already waiting, or Cloud Foundry's API is being held off (see {@link ApiUnavailableException}).
+	 */
+	@ExceptionHandler(RejectedExecutionException.class)
+	public ResponseEntity<?> unavailable(RejectedExecutionException e) {
+
+		log.warn("Turning away a request: " + e.getMessage());
+
+		return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Collections.singletonMap("message", e.getMessage()));
+	}
+
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.cloudfoundry.client.CloudFoundryClient;
+import org.cloudfoundry.operations.CloudFoundryOperations;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+
+/**
+ * Rate limiter and circuit breaker for one Cloud Foundry API host.
+ *
+ * Calls are let through as long as there are tokens in a bucket that refills at {@link SpinnakerConfiguration.Limits#getRate()}
+ * per second, up to {@link SpinnakerConfiguration.Limits#getBurst()}. After {@link SpinnakerConfiguration.Limits#getFailureThreshold()}
+ * failures in a row, calls are turned away for {@link SpinnakerConfiguration.Limits#getOpenTimeout()}, after which a single
+ * trial call decides whether to carry on or keep turning them away. Only throttling, server errors and I/O problems count
+ * as failures; a 404 for an application that isn't deployed means the API is doing fine.
+ *
+ * Either way, a call that is turned away fails with an {@link ApiUnavailableException} without reaching Cloud Foundry.
+ * One that only went over the rate limit is marked as throttled, so {@link Retries} can try it again after backing off.
+ *
+ * @author Greg Turnquist
+ */
+class ApiGuard {
+
+	private static final Logger log = LoggerFactory.getLogger(ApiGuard.class);
+
+	private final String host;
+
+	private final SpinnakerConfiguration.Limits settings;
+
+	private double tokens;
+	private long refilledAt = System.nanoTime();
+
+	private int consecutiveFailures;
+	private long openUntil;
+	private boolean trialUnderway;
+
+	private final AtomicLong rejected = new AtomicLong();
+	private final AtomicLong tripped = new AtomicLong();
+
+	ApiGuard(String host, SpinnakerConfiguration.Limits settings) {
+		this.host = host;
+		this.settings = settings;
+		this.tokens = settings.getBurst();
+	}
+
+	/**
+	 * Take a token for one call.
+	 *
+	 * @throws ApiUnavailableException if the bucket is empty or the circuit is open
+	 */
+	synchronized void acquire() {
+
+		final long now = System.nanoTime();
+
+		if (this.openUntil != 0) {
+			if (now < this.openUntil || this.trialUnderway) {
+				this.rejected.incrementAndGet();
+				throw new ApiUnavailableException("Calls to " + this.host + " are suspended after " + this.consecutiveFailures
+					+ " failures in a row, try again in " + TimeUnit.NANOSECONDS.toMillis(Math.max(0, this.openUntil - now)) + "ms");
+			}
+			this.trialUnderway = true;
+		}
+
+		if (this.settings.getRate() > 0) {
+			this.tokens = Math.min(this.settings.getBurst(), this.tokens + (now - this.refilledAt) * this.settings.getRate() / 1e9);
+			this.refilledAt = now;
+
+			if (this.tokens < 1) {
+				this.trialUnderway = false;
+				this.rejected.incrementAndGet();
+				throw new ApiUnavailableException("Too many calls to " + this.host + ", at most " + this.settings.getRate()
+					+ " per second are allowed", true);
+			}
+			this.tokens -= 1;
+		}
+	}
+
+	/**
+	 * Record how a call that was let through went.
+	 *
+	 * @param e what the call failed with, or {@literal null} if it succeeded
+	 */
+	synchronized void completed(Throwable e) {
+
+		this.trialUnderway = false;
+
+		if (e == null || !isFailure(e)) {
+			this.consecutiveFailures = 0;
+			this.openUntil = 0;
+			return;
+		}
+
+		this.consecutiveFailures++;
+		if (this.openUntil != 0 || this.consecutiveFailures >= this.settings.getFailureThreshold()) {
+			this.openUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.settings.getOpenTimeout());
+			this.tripped.incrementAndGet();
+			log.warn("Suspending calls to " + this.host + " for " + this.settings.getOpenTimeout() + "ms after "
+				+ this.consecutiveFailures + " failures in a row: " + e);
+		}
+	}
+
+	/**
+	 * Record that a call was cancelled before it went one way or the other, so it can't hold up the next trial call.
+	 */
+	synchronized void abandoned() {
+		this.trialUnderway = false;
+	}
+
+	synchronized boolean isOpen() {
+		return this.openUntil != 0;
+	}
+
+	long getRejected() {
+		return this.rejected.get();
+	}
+
+	long getTripped() {
+		return this.tripped.get();
+	}
+
+	/**
+	 * @return a {@link Publisher} that takes a token when subscribed to, and records how the call went
+	 */
+	<T> Publisher<T> guard(Publisher<T> publisher) {
+
+		return subscriber -> {
+			try {
+				acquire();
+			} catch (ApiUnavailableException e) {
+				subscriber.onSubscribe(new Subscription() {
+
+					@Override
+					public void request(long n) {
+					}
+
+					@Override
+					public void cancel() {
+					}
+				});
+				subscriber.onError(e);
+				return;
+			}
+
+			final AtomicBoolean finished = new AtomicBoolean();
+
+			publisher.subscribe(new Subscriber<T>() {
+
+				@Override
+				public void onSubscribe(Subscription subscription) {
+					subscriber.onSubscribe(new Subscription() {
+
+						@Override
+						public void request(long n) {
+							subscription.request(n);
+						}
+
+						@Override
+						public void cancel() {
+							if (finished.compareAndSet(false, true)) {
+								abandoned();
+							}
+							subscription.cancel();
+						}
+					});
+				}
+
+				@Override
+				public void onNext(T element) {
+					subscriber.onNext(element);
+				}
+
+				@Override
+				public void onError(Throwable t) {
+					if (finished.compareAndSet(false, true)) {
+						completed(t);
+					}
+					subscriber.onError(t);
+				}
+
+				@Override
+				public void onComplete() {
+					if (finished.compareAndSet(false, true)) {
+						completed(null);
+					}
+					subscriber.onComplete();
+				}
+			});
+		};
+	}
+
+	/**
+	 * Wrap {@link CloudFoundryOperations} so every call made through it, or through any of the APIs it hands out
+	 * (e.g. {@link CloudFoundryOperations#applications()}), is guarded.
+	 */
+	CloudFoundryOperations guard(CloudFoundryOperations operations) {
+		return proxy(CloudFoundryOperations.class, operations);
+	}
+
+	/**
+	 * Wrap a {@link CloudFoundryClient} the same way, so calls made straight to the lower level APIs (e.g.
+	 * {@link CloudFoundryClient#applicationsV2()}) are guarded as well.
+	 */
+	CloudFoundryClient guard(CloudFoundryClient client) {
+		return proxy(CloudFoundryClient.class, client);
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> T proxy(Class<T> type, T target) {
+
+		final InvocationHandler handler = (proxy, method, args) -> {
+
+			final Object result;
+			try {
+				result = method.invoke(target, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+
+			if (result instanceof Flux) {
+				return Flux.from(guard((Publisher<Object>) result));
+			}
+			if (result instanceof Mono) {
+				return Mono.from(guard((Publisher<Object>) result));
+			}
+			if (result != null && method.getReturnType().isInterface() && method.getReturnType().getName().startsWith("org.cloudfoundry.")) {
+				return proxy((Class<Object>) method.getReturnType(), result);
+			}
+			return result;
+		};
+
+		return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+	}
+
+	/**
+	 * @return whether an error says something about the health of the API, as opposed to the call itself
+	 */
+	static boolean isFailure(Throwable e) {
+
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if (cause instanceof HttpStatusCodeException) {
+				final int status = ((HttpStatusCodeException) cause).getStatusCode().value();
+				return status == 429 || status >= 500;
+			}
+			if (cause instanceof ResourceAccessException || cause instanceof IOException || cause instanceof TimeoutException) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return whether a call was turned away for going over the rate limit, and may well be let through shortly
+	 */
+	static boolean isThrottled(Throwable e) {
+
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if (cause instanceof ApiUnavailableException) {
+				return ((ApiUnavailableException) cause).isThrottled();
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return whether a call was turned away without reaching Cloud Foundry at all
+	 */
+	static boolean isRejected(Throwable e) {
+
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if (cause instanceof ApiUnavailableException) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
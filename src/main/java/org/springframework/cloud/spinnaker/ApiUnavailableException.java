@@ -0,0 +1,46 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Thrown instead of calling a Cloud Foundry API that is being called too often, or that keeps failing.
+ * Only the former is worth trying again shortly (see {@link #isThrottled()}).
+ *
+ * @author Greg Turnquist
+ */
+public class ApiUnavailableException extends RejectedExecutionException {
+
+	private final boolean throttled;
+
+	public ApiUnavailableException(String message) {
+		this(message, false);
+	}
+
+	public ApiUnavailableException(String message, boolean throttled) {
+		super(message);
+		this.throttled = throttled;
+	}
+
+	/**
+	 * @return whether the call was turned away for going over the rate limit, rather than because the API keeps failing
+	 */
+	public boolean isThrottled() {
+		return this.throttled;
+	}
+
+}
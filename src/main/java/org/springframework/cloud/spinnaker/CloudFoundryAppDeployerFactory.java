@@ -15,6 +15,9 @@
  */
 package org.springframework.cloud.spinnaker;
 
+import org.cloudfoundry.client.CloudFoundryClient;
+import org.cloudfoundry.operations.CloudFoundryOperations;
+
 import org.springframework.cloud.deployer.spi.cloudfoundry.CloudFoundryAppDeployer;
 import org.springframework.cloud.deployer.spi.cloudfoundry.CloudFoundryDeployerProperties;
 
@@ -27,4 +30,36 @@ public interface CloudFoundryAppDeployerFactory {
 
 	CloudFoundryAppDeployer getObject(CloudFoundryDeployerProperties props, String api, String org, String space, String email, String password, String namespace);
 
+	/**
+	 * @return the {@link CloudFoundryOperations} behind {@link #getObject(String, String, String, String, String, String)},
+	 * or {@literal null} if they aren't available
+	 */
+	CloudFoundryOperations getOperations(String api, String org, String space, String email, String password, String namespace);
+
+	/**
+	 * @return the {@link CloudFoundryClient} behind {@link #getObject(String, String, String, String, String, String)},
+	 * or {@literal null} if it isn't available
+	 */
+	CloudFoundryClient getClient(String api, String org, String space, String email, String password, String namespace);
+
+	/**
+	 * Run something that uses what this factory hands out for an API endpoint and set of credentials, which mustn't
+	 * be disposed of until it's done, however long that takes.
+	 *
+	 * @param action what to do with them
+	 */
+	default <E extends Exception> void using(String api, String email, String password, ModuleLocks.Action<E> action) throws E {
+		action.run();
+	}
+
+	/**
+	 * Hold on to what this factory hands out for an API endpoint and set of credentials until the returned
+	 * {@link Runnable} is run, for calls that carry on after the caller has moved on. Running it again does nothing.
+	 *
+	 * @return what to run once every call is done
+	 */
+	default Runnable hold(String api, String email, String password) {
+		return () -> {};
+	}
+
 }
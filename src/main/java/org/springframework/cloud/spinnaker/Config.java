@@ -15,11 +15,16 @@
  */
 package org.springframework.cloud.spinnaker;
 
+import java.io.IOException;
+import java.util.concurrent.ThreadPoolExecutor;
+
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cloud.deployer.spi.cloudfoundry.CloudFoundryDeployerProperties;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
 /**
  * @author Greg Turnquist
@@ -29,13 +34,122 @@ import org.springframework.context.annotation.Configuration;
 public class Config {
 
 	@Bean
-	ModuleService moduleService(SpinnakerConfiguration spinnakerConfiguration, CloudFoundryAppDeployerFactory appDeployerFactoryBean, ApplicationContext ctx) {
-		return new ModuleService(spinnakerConfiguration, appDeployerFactoryBean, ctx);
+	ModuleService moduleService(SpinnakerConfiguration spinnakerConfiguration, CloudFoundryAppDeployerFactory appDeployerFactoryBean, ApplicationContext ctx) throws IOException {
+		return new ModuleService(spinnakerConfiguration, appDeployerFactoryBean, moduleArtifactIndex(spinnakerConfiguration, ctx),
+			deckArtifactCache(spinnakerConfiguration), moduleStatusExecutor(spinnakerConfiguration), moduleStatusCache(spinnakerConfiguration),
+			moduleDeployExecutor(spinnakerConfiguration), moduleTimeoutScheduler(spinnakerConfiguration), deployMetrics());
+	}
+
+	@Bean
+	DeployMetrics deployMetrics() {
+		return new DeployMetrics();
+	}
+
+	@Bean
+	DeckArtifactCache deckArtifactCache(SpinnakerConfiguration spinnakerConfiguration) throws IOException {
+		return new DeckArtifactCache(spinnakerConfiguration.getDeckCache());
+	}
+
+	@Bean
+	ModuleArtifactIndex moduleArtifactIndex(SpinnakerConfiguration spinnakerConfiguration, ApplicationContext ctx) throws IOException {
+		return new ModuleArtifactIndex(spinnakerConfiguration, ctx);
+	}
+
+	@Bean
+	ModuleStatusCache moduleStatusCache(SpinnakerConfiguration spinnakerConfiguration) {
+		return new ModuleStatusCache(spinnakerConfiguration.getStatus(), moduleStatusExecutor(spinnakerConfiguration),
+			moduleTimeoutScheduler(spinnakerConfiguration));
+	}
+
+	/**
+	 * Bounded pool used to fan out module status lookups against Cloud Foundry.
+	 */
+	@Bean
+	ThreadPoolTaskExecutor moduleStatusExecutor(SpinnakerConfiguration spinnakerConfiguration) {
+
+		SpinnakerConfiguration.Status status = spinnakerConfiguration.getStatus();
+
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(status.getThreads());
+		executor.setMaxPoolSize(status.getThreads());
+		executor.setQueueCapacity(status.getQueueCapacity());
+		executor.setThreadNamePrefix("module-status-");
+		executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+		return executor;
+	}
+
+	/**
+	 * Bounded pool used to deploy several modules side by side.
+	 */
+	@Bean
+	ThreadPoolTaskExecutor moduleDeployExecutor(SpinnakerConfiguration spinnakerConfiguration) {
+
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(spinnakerConfiguration.getDeploy().getParallelism());
+		executor.setMaxPoolSize(spinnakerConfiguration.getDeploy().getParallelism());
+		executor.setThreadNamePrefix("module-deploy-");
+		return executor;
+	}
+
+	@Bean
+	ModuleStatusStream moduleStatusStream(SpinnakerConfiguration spinnakerConfiguration, ModuleService moduleService) {
+		return new ModuleStatusStream(moduleService, moduleStatusStreamScheduler(spinnakerConfiguration), spinnakerConfiguration.getStatus());
+	}
+
+	/**
+	 * Scheduler that status streams look for changes on.
+	 */
+	@Bean
+	ThreadPoolTaskScheduler moduleStatusStreamScheduler(SpinnakerConfiguration spinnakerConfiguration) {
+
+		ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+		scheduler.setPoolSize(spinnakerConfiguration.getStatus().getStreamThreads());
+		scheduler.setThreadNamePrefix("module-status-stream-");
+		return scheduler;
+	}
+
+	/**
+	 * Scheduler that non-blocking status lookups time out on, and that retries are started from. Kept apart from the
+	 * status streams, so a slow stream can't hold up a timeout.
+	 */
+	@Bean
+	ThreadPoolTaskScheduler moduleTimeoutScheduler(SpinnakerConfiguration spinnakerConfiguration) {
+
+		ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+		scheduler.setPoolSize(spinnakerConfiguration.getStatus().getTimerThreads());
+		scheduler.setThreadNamePrefix("module-timeout-");
+		return scheduler;
+	}
+
+	@Bean
+	TargetRegistry targetRegistry(SpinnakerConfiguration spinnakerConfiguration, CloudFoundryAppDeployerFactory appDeployerFactoryBean) {
+		return new TargetRegistry(appDeployerFactoryBean, spinnakerConfiguration.getTargets());
+	}
+
+	@Bean
+	DeploymentJobs deploymentJobs(SpinnakerConfiguration spinnakerConfiguration) {
+		return new DeploymentJobs(spinnakerConfiguration.getJobs(), deploymentJobExecutor(spinnakerConfiguration));
+	}
+
+	/**
+	 * Bounded pool that deployments run on in the background, turning away new jobs once its queue is full.
+	 */
+	@Bean
+	ThreadPoolTaskExecutor deploymentJobExecutor(SpinnakerConfiguration spinnakerConfiguration) {
+
+		SpinnakerConfiguration.Jobs jobs = spinnakerConfiguration.getJobs();
+
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(jobs.getThreads());
+		executor.setMaxPoolSize(jobs.getThreads());
+		executor.setQueueCapacity(jobs.getQueueCapacity());
+		executor.setThreadNamePrefix("deployment-job-");
+		return executor;
 	}
 
 	@Bean
-	CloudFoundryAppDeployerFactory cloudFoundryAppDeployerFactoryBean() {
-		return new DefaultAppDeployerFactory();
+	DefaultAppDeployerFactory cloudFoundryAppDeployerFactoryBean(SpinnakerConfiguration spinnakerConfiguration) {
+		return new DefaultAppDeployerFactory(spinnakerConfiguration.getDeployers(), spinnakerConfiguration.getLimits());
 	}
 
 }
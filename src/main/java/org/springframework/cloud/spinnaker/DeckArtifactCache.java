@@ -0,0 +1,213 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * On-disk cache of customized deck JAR files. Each file is named after a digest of the original JAR file and every
+ * setting that went into customizing it, so deploying deck again with the same settings (e.g. to another space)
+ * reuses what was built before.
+ *
+ * The cache is bounded by {@link SpinnakerConfiguration.DeckCache#getMaxSize()}, deleting the least recently used
+ * files first. A file handed out by {@link #get} is pinned until it's {@link #release released}, so it's never
+ * deleted while a deployment is still pushing it.
+ *
+ * @author Greg Turnquist
+ */
+public class DeckArtifactCache {
+
+	private static final Logger log = LoggerFactory.getLogger(DeckArtifactCache.class);
+
+	private static final String SUFFIX = ".jar";
+
+	private final Path directory;
+
+	private final long maxSize;
+
+	/**
+	 * Cached file name to its size, from least to most recently used.
+	 */
+	private final LinkedHashMap<String, Long> files = new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * Cached file name to how many callers are still using it.
+	 */
+	private final Map<String, Integer> pinned = new HashMap<>();
+
+	private long totalSize = 0;
+
+	public DeckArtifactCache(SpinnakerConfiguration.DeckCache settings) throws IOException {
+
+		this.directory = Paths.get(settings.getDirectory());
+		this.maxSize = settings.getMaxSize();
+
+		Files.createDirectories(this.directory);
+		loadExistingFiles();
+	}
+
+	/**
+	 * Find the customized JAR file for the given inputs, building it if it isn't cached yet. The file is pinned, and
+	 * must be {@link #release released} once the caller is done with it.
+	 *
+	 * @param sourceDigest SHA-256 digest of the original JAR file
+	 * @param settings every setting that goes into customizing it
+	 * @param builder writes the customized JAR file to the path it's handed
+	 * @return the cached JAR file
+	 * @throws IOException
+	 */
+	public Path get(String sourceDigest, List<String> settings, Builder builder) throws IOException {
+
+		final String fileName = digest(sourceDigest, settings) + SUFFIX;
+		final Path cached = this.directory.resolve(fileName);
+
+		synchronized (this) {
+			if (this.files.get(fileName) != null && Files.exists(cached)) {
+				log.debug("Reusing " + cached);
+				Files.setLastModifiedTime(cached, FileTime.fromMillis(System.currentTimeMillis()));
+				pin(fileName);
+				return cached;
+			}
+		}
+
+		final Path inProgress = this.directory.resolve(fileName + "." + UUID.randomUUID());
+		try {
+			builder.build(inProgress);
+			Files.move(inProgress, cached, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(inProgress);
+		}
+
+		log.debug("Cached " + cached);
+		synchronized (this) {
+			pin(fileName);
+			add(fileName, Files.size(cached));
+		}
+		return cached;
+	}
+
+	/**
+	 * Let go of a file handed out by {@link #get}, so it may be evicted once nobody else is using it.
+	 *
+	 * @param cached the file {@link #get} returned
+	 */
+	public synchronized void release(Path cached) {
+
+		final String fileName = cached.getFileName().toString();
+		if (this.pinned.computeIfPresent(fileName, (key, count) -> count > 1 ? count - 1 : null) == null) {
+			evict();
+		}
+	}
+
+	/**
+	 * @return how many files handed out by {@link #get} haven't been released yet
+	 */
+	synchronized int pinCount() {
+		return this.pinned.values().stream().mapToInt(Integer::intValue).sum();
+	}
+
+	/**
+	 * @param sourceDigest SHA-256 digest of the original JAR file
+	 * @param settings every setting that goes into customizing it
+	 * @return a digest identifying the customized JAR file
+	 */
+	public static String digest(String sourceDigest, List<String> settings) {
+		return Digests.sha256(sourceDigest + "\n" + String.join("\n", settings));
+	}
+
+	private synchronized void add(String fileName, long size) {
+
+		final Long previous = this.files.put(fileName, size);
+		this.totalSize += size - (previous != null ? previous : 0);
+		evict();
+	}
+
+	private void pin(String fileName) {
+		this.pinned.merge(fileName, 1, Integer::sum);
+	}
+
+	/**
+	 * Delete the least recently used files that nobody's using until the cache fits within its maximum size again.
+	 */
+	private synchronized void evict() {
+
+		final Iterator<Map.Entry<String, Long>> leastRecentlyUsed = this.files.entrySet().iterator();
+		while (this.totalSize > this.maxSize && leastRecentlyUsed.hasNext()) {
+			final Map.Entry<String, Long> entry = leastRecentlyUsed.next();
+			if (this.pinned.containsKey(entry.getKey())) {
+				continue; // Still being pushed somewhere
+			}
+			try {
+				Files.deleteIfExists(this.directory.resolve(entry.getKey()));
+				this.totalSize -= entry.getValue();
+				leastRecentlyUsed.remove();
+				log.debug("Evicted " + entry.getKey());
+			} catch (IOException e) {
+				log.warn("Unable to evict " + entry.getKey() + " from " + this.directory, e);
+			}
+		}
+	}
+
+	/**
+	 * Pick up files cached by a previous run, oldest first.
+	 */
+	private void loadExistingFiles() throws IOException {
+
+		final List<Path> existing = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory, "*" + SUFFIX)) {
+			stream.forEach(existing::add);
+		}
+
+		existing.sort(Comparator.comparing(path -> {
+			try {
+				return Files.getLastModifiedTime(path);
+			} catch (IOException e) {
+				return FileTime.fromMillis(0);
+			}
+		}));
+
+		for (Path path : existing) {
+			add(path.getFileName().toString(), Files.size(path));
+		}
+	}
+
+	/**
+	 * Builds a customized JAR file.
+	 */
+	@FunctionalInterface
+	public interface Builder {
+
+		void build(Path target) throws IOException;
+	}
+
+}
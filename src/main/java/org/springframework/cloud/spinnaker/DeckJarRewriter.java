@@ -0,0 +1,312 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.function.UnaryOperator;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.springframework.util.StreamUtils;
+
+/**
+ * Rewrites deck's JAR file with a customized {@literal settings.js}.
+ *
+ * Rather than inflating and recompressing every entry, the compressed bytes of each unchanged entry are copied
+ * verbatim from one file to the other. Only {@literal settings.js} (and a fresh manifest) are encoded anew. Nothing
+ * but the central directory and {@literal settings.js} is ever held in memory.
+ *
+ * ZIP64 archives aren't supported, which is fine for deck's few megabytes of static content.
+ *
+ * @author Greg Turnquist
+ */
+class DeckJarRewriter {
+
+	static final String SETTINGS_JS = "settings.js";
+
+	static final String MANIFEST = "META-INF/MANIFEST.MF";
+
+	private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+	private static final int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50;
+	private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+	private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+
+	private static final int LOCAL_HEADER_LENGTH = 30;
+	private static final int CENTRAL_HEADER_LENGTH = 46;
+	private static final int END_OF_CENTRAL_DIRECTORY_LENGTH = 22;
+
+	private static final int DATA_DESCRIPTOR_FLAG = 0x08;
+
+	private final Charset charset;
+
+	DeckJarRewriter(Charset charset) {
+		this.charset = charset;
+	}
+
+	/**
+	 * Copy {@literal source} to {@literal target}, swapping in a fresh manifest, dropping everything else under
+	 * {@literal META-INF}, and passing {@literal settings.js} through {@literal settingsJs}.
+	 *
+	 * @param source the original deck JAR file
+	 * @param target where to write the customized JAR file
+	 * @param settingsJs transforms the contents of {@literal settings.js}
+	 * @throws IOException
+	 */
+	void rewrite(Path source, Path target, UnaryOperator<String> settingsJs) throws IOException {
+
+		try (
+				FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+				ZipFile zipFile = new ZipFile(source.toFile());
+				FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)
+		) {
+			final ByteBuffer centralDirectory = readCentralDirectory(in);
+			final ByteArrayOutputStream newCentralDirectory = new ByteArrayOutputStream(centralDirectory.remaining() + 256);
+			int entries = 0;
+
+			writeEntry(out, newCentralDirectory, MANIFEST, toDosTime(LocalDateTime.now()),
+				"Manifest-Version: 1.0\r\n\r\n".getBytes(StandardCharsets.UTF_8));
+			entries++;
+
+			while (centralDirectory.hasRemaining()) {
+
+				final int start = centralDirectory.position();
+				if (centralDirectory.getInt(start) != CENTRAL_HEADER_SIGNATURE) {
+					throw new IOException("Corrupt central directory in " + source);
+				}
+
+				final int flags = Short.toUnsignedInt(centralDirectory.getShort(start + 8));
+				final int dosTime = centralDirectory.getInt(start + 12);
+				final long compressedSize = Integer.toUnsignedLong(centralDirectory.getInt(start + 20));
+				final int nameLength = Short.toUnsignedInt(centralDirectory.getShort(start + 28));
+				final int extraLength = Short.toUnsignedInt(centralDirectory.getShort(start + 30));
+				final int commentLength = Short.toUnsignedInt(centralDirectory.getShort(start + 32));
+				final long localHeaderOffset = Integer.toUnsignedLong(centralDirectory.getInt(start + 42));
+				final int recordLength = CENTRAL_HEADER_LENGTH + nameLength + extraLength + commentLength;
+
+				final byte[] nameBytes = new byte[nameLength];
+				centralDirectory.position(start + CENTRAL_HEADER_LENGTH);
+				centralDirectory.get(nameBytes);
+				final String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+				centralDirectory.position(start + recordLength);
+
+				if (name.contains("META-INF") || name.contains("MANIFEST.MF")) {
+					// Skip the manifest since it's written up above.
+					continue;
+				}
+
+				if (name.equals(SETTINGS_JS)) {
+					final ZipEntry entry = zipFile.getEntry(name);
+					final String original;
+					try (InputStream inputStream = zipFile.getInputStream(entry)) {
+						original = StreamUtils.copyToString(inputStream, this.charset);
+					}
+					writeEntry(out, newCentralDirectory, name, dosTime, settingsJs.apply(original).getBytes(this.charset));
+				} else {
+					final long newOffset = out.position();
+					copyRawEntry(in, out, localHeaderOffset, compressedSize, (flags & DATA_DESCRIPTOR_FLAG) != 0);
+
+					final byte[] record = new byte[recordLength];
+					centralDirectory.position(start);
+					centralDirectory.get(record);
+					ByteBuffer.wrap(record).order(ByteOrder.LITTLE_ENDIAN).putInt(42, (int) newOffset);
+					newCentralDirectory.write(record);
+				}
+				entries++;
+			}
+
+			final long centralDirectoryOffset = out.position();
+			writeFully(out, ByteBuffer.wrap(newCentralDirectory.toByteArray()));
+
+			final ByteBuffer end = ByteBuffer.allocate(END_OF_CENTRAL_DIRECTORY_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+			end.putInt(END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+			end.putShort((short) 0); // this disk
+			end.putShort((short) 0); // disk where the central directory starts
+			end.putShort((short) entries);
+			end.putShort((short) entries);
+			end.putInt(newCentralDirectory.size());
+			end.putInt((int) centralDirectoryOffset);
+			end.putShort((short) 0); // comment length
+			end.flip();
+			writeFully(out, end);
+		}
+	}
+
+	/**
+	 * Locate the end of central directory record, and load the central directory it points to.
+	 */
+	private static ByteBuffer readCentralDirectory(FileChannel in) throws IOException {
+
+		final long size = in.size();
+		final int tailLength = (int) Math.min(size, END_OF_CENTRAL_DIRECTORY_LENGTH + 0xFFFF);
+		final ByteBuffer tail = readFully(in, size - tailLength, tailLength);
+
+		for (int position = tailLength - END_OF_CENTRAL_DIRECTORY_LENGTH; position >= 0; position--) {
+			if (tail.getInt(position) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+
+				final int entries = Short.toUnsignedInt(tail.getShort(position + 10));
+				final long centralDirectorySize = Integer.toUnsignedLong(tail.getInt(position + 12));
+				final long centralDirectoryOffset = Integer.toUnsignedLong(tail.getInt(position + 16));
+
+				if (entries == 0xFFFF || centralDirectorySize == 0xFFFFFFFFL || centralDirectoryOffset == 0xFFFFFFFFL) {
+					throw new IOException("ZIP64 archives are not supported");
+				}
+
+				return readFully(in, centralDirectoryOffset, (int) centralDirectorySize);
+			}
+		}
+
+		throw new IOException("Not a ZIP archive: no end of central directory record found");
+	}
+
+	/**
+	 * Copy an entry's local header, compressed data and data descriptor (if any) without decoding them.
+	 */
+	private static void copyRawEntry(FileChannel in, FileChannel out, long offset, long compressedSize, boolean hasDataDescriptor) throws IOException {
+
+		final ByteBuffer localHeader = readFully(in, offset, LOCAL_HEADER_LENGTH);
+		if (localHeader.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+			throw new IOException("Corrupt local header at offset " + offset);
+		}
+
+		final int nameLength = Short.toUnsignedInt(localHeader.getShort(26));
+		final int extraLength = Short.toUnsignedInt(localHeader.getShort(28));
+		long length = LOCAL_HEADER_LENGTH + nameLength + extraLength + compressedSize;
+
+		if (hasDataDescriptor) {
+			final ByteBuffer signature = readFully(in, offset + length, 4);
+			length += (signature.getInt(0) == DATA_DESCRIPTOR_SIGNATURE) ? 16 : 12;
+		}
+
+		long copied = 0;
+		while (copied < length) {
+			copied += in.transferTo(offset + copied, length - copied, out);
+		}
+	}
+
+	/**
+	 * Deflate a new entry, and write its local header and data, recording its central directory header.
+	 */
+	private static void writeEntry(FileChannel out, ByteArrayOutputStream centralDirectory, String name, int dosTime, byte[] content) throws IOException {
+
+		final byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+
+		final CRC32 crc = new CRC32();
+		crc.update(content);
+
+		final byte[] compressed = deflate(content);
+		final long offset = out.position();
+
+		final ByteBuffer localHeader = ByteBuffer.allocate(LOCAL_HEADER_LENGTH + nameBytes.length).order(ByteOrder.LITTLE_ENDIAN);
+		localHeader.putInt(LOCAL_HEADER_SIGNATURE);
+		localHeader.putShort((short) 20); // version needed to extract
+		localHeader.putShort((short) 0); // flags
+		localHeader.putShort((short) ZipEntry.DEFLATED);
+		localHeader.putInt(dosTime);
+		localHeader.putInt((int) crc.getValue());
+		localHeader.putInt(compressed.length);
+		localHeader.putInt(content.length);
+		localHeader.putShort((short) nameBytes.length);
+		localHeader.putShort((short) 0); // extra field length
+		localHeader.put(nameBytes);
+		localHeader.flip();
+		writeFully(out, localHeader);
+		writeFully(out, ByteBuffer.wrap(compressed));
+
+		final ByteBuffer centralHeader = ByteBuffer.allocate(CENTRAL_HEADER_LENGTH + nameBytes.length).order(ByteOrder.LITTLE_ENDIAN);
+		centralHeader.putInt(CENTRAL_HEADER_SIGNATURE);
+		centralHeader.putShort((short) 20); // version made by
+		centralHeader.putShort((short) 20); // version needed to extract
+		centralHeader.putShort((short) 0); // flags
+		centralHeader.putShort((short) ZipEntry.DEFLATED);
+		centralHeader.putInt(dosTime);
+		centralHeader.putInt((int) crc.getValue());
+		centralHeader.putInt(compressed.length);
+		centralHeader.putInt(content.length);
+		centralHeader.putShort((short) nameBytes.length);
+		centralHeader.putShort((short) 0); // extra field length
+		centralHeader.putShort((short) 0); // comment length
+		centralHeader.putShort((short) 0); // disk number start
+		centralHeader.putShort((short) 0); // internal attributes
+		centralHeader.putInt(0); // external attributes
+		centralHeader.putInt((int) offset);
+		centralHeader.put(nameBytes);
+		centralDirectory.write(centralHeader.array());
+	}
+
+	private static byte[] deflate(byte[] content) {
+
+		final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		try {
+			deflater.setInput(content);
+			deflater.finish();
+
+			final ByteArrayOutputStream compressed = new ByteArrayOutputStream(content.length / 2 + 64);
+			final byte[] buffer = new byte[8192];
+			while (!deflater.finished()) {
+				compressed.write(buffer, 0, deflater.deflate(buffer));
+			}
+			return compressed.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private static int toDosTime(LocalDateTime time) {
+
+		if (time.getYear() < 1980) {
+			return (1 << 21) | (1 << 16);
+		}
+		return (time.getYear() - 1980) << 25
+			| time.getMonthValue() << 21
+			| time.getDayOfMonth() << 16
+			| time.getHour() << 11
+			| time.getMinute() << 5
+			| time.getSecond() >> 1;
+	}
+
+	private static ByteBuffer readFully(FileChannel in, long position, int length) throws IOException {
+
+		final ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		while (buffer.hasRemaining()) {
+			if (in.read(buffer, position + buffer.position()) == -1) {
+				throw new IOException("Unexpected end of file at offset " + (position + buffer.position()));
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+
+		while (buffer.hasRemaining()) {
+			out.write(buffer);
+		}
+	}
+
+}
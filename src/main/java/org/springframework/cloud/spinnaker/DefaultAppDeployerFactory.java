@@ -17,25 +17,73 @@ package org.springframework.cloud.spinnaker;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.cloudfoundry.client.CloudFoundryClient;
 import org.cloudfoundry.operations.CloudFoundryOperations;
 import org.cloudfoundry.operations.CloudFoundryOperationsBuilder;
 import org.cloudfoundry.spring.client.SpringCloudFoundryClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
 import org.springframework.cloud.deployer.spi.cloudfoundry.CloudFoundryAppDeployer;
 import org.springframework.cloud.deployer.spi.cloudfoundry.CloudFoundryDeployerProperties;
 
 /**
+ * Creates {@link CloudFoundryAppDeployer}s on demand, and caches them so each set of credentials logs in once.
+ *
+ * The cache is safe to use from concurrent requests. It holds at most {@link SpinnakerConfiguration.Deployers#getMaxSize()}
+ * deployers, disposing of the least recently used one beyond that, as well as any that sit idle longer than
+ * {@link SpinnakerConfiguration.Deployers#getIdleTimeout()}. Keys are hashed so credentials are never held in them.
+ *
+ * Deployers for the same API endpoint and credentials share one {@link CloudFoundryClient}, which is disposed of
+ * along with the last deployer using it, unless a deployment or lookup still holds on to it (see {@link #hold}).
+ * Every call made through a deployer's {@link CloudFoundryOperations}, or straight to the {@link CloudFoundryClient}
+ * it hands out, goes through the {@link ApiGuard} of its API host.
+ *
  * @author Greg Turnquist
  */
-public class DefaultAppDeployerFactory implements CloudFoundryAppDeployerFactory {
+public class DefaultAppDeployerFactory implements CloudFoundryAppDeployerFactory, PublicMetrics, DisposableBean {
+
+	private static final Logger log = LoggerFactory.getLogger(DefaultAppDeployerFactory.class);
+
+	private final Map<String, CachedDeployer> cachedDeployers = new ConcurrentHashMap<>();
+
+	private final Map<String, SharedClient> sharedClients = new HashMap<>();
 
-	private final Map<String, CloudFoundryAppDeployer> cachedDeployers = new HashMap<>();
+	private final Map<String, ApiGuard> guards = new ConcurrentHashMap<>();
+
+	private final SpinnakerConfiguration.Deployers settings;
+
+	private final SpinnakerConfiguration.Limits limits;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	private volatile long lastSweep = System.currentTimeMillis();
 
 	public DefaultAppDeployerFactory() {
+		this(new SpinnakerConfiguration.Deployers(), new SpinnakerConfiguration.Limits());
+	}
+
+	public DefaultAppDeployerFactory(SpinnakerConfiguration.Deployers settings, SpinnakerConfiguration.Limits limits) {
+		this.settings = settings;
+		this.limits = limits;
 	}
 
 	public CloudFoundryAppDeployer getObject(String api, String org, String space, String email, String password, String namespace) {
@@ -43,13 +91,160 @@ public class DefaultAppDeployerFactory implements CloudFoundryAppDeployerFactory
 	}
 
 	public CloudFoundryAppDeployer getObject(CloudFoundryDeployerProperties props, String api, String org, String space, String email, String password, String namespace) {
+		return getCached(props, api, org, space, email, password, namespace).deployer;
+	}
+
+	@Override
+	public CloudFoundryOperations getOperations(String api, String org, String space, String email, String password, String namespace) {
+		return getCached(new CloudFoundryDeployerProperties(), api, org, space, email, password, namespace).operations;
+	}
+
+	@Override
+	public CloudFoundryClient getClient(String api, String org, String space, String email, String password, String namespace) {
+		return getCached(new CloudFoundryDeployerProperties(), api, org, space, email, password, namespace).client;
+	}
+
+	/**
+	 * Hold on to the client for an API endpoint and set of credentials while {@literal action} runs, so evicting its
+	 * deployers in the meantime doesn't dispose of it under an ongoing deployment. It's disposed of once both the
+	 * action is done and no cached deployer uses it anymore.
+	 */
+	@Override
+	public <E extends Exception> void using(String api, String email, String password, ModuleLocks.Action<E> action) throws E {
+
+		final Runnable release = hold(api, email, password);
+		try {
+			action.run();
+		} finally {
+			release.run();
+		}
+	}
+
+	/**
+	 * Hold on to the client for an API endpoint and set of credentials the same way as {@link #using}, until the
+	 * returned {@link Runnable} is run. Lookups that answer asynchronously, or outlive the caller's deadline, give it
+	 * back once their last call to Cloud Foundry is done.
+	 */
+	@Override
+	public Runnable hold(String api, String email, String password) {
+
+		final String clientKey = getClientKey(api, email, password);
+		acquireClient(clientKey, api, email, password);
 
-		return this.cachedDeployers.computeIfAbsent(
-				getKey(props, api, org, space, email, password, namespace),
-				s -> doCreate(props, api, org, space, email, password));
+		final AtomicBoolean released = new AtomicBoolean();
+		return () -> {
+			if (released.compareAndSet(false, true)) {
+				releaseClient(clientKey);
+			}
+		};
 	}
 
-	private static CloudFoundryAppDeployer doCreate(CloudFoundryDeployerProperties props, String api, String org, String space, String email, String password) {
+	private CachedDeployer getCached(CloudFoundryDeployerProperties props, String api, String org, String space, String email, String password, String namespace) {
+
+		sweepIdleDeployers();
+
+		final String key = getKey(props, api, org, space, email, password, namespace);
+
+		CachedDeployer cached = this.cachedDeployers.get(key);
+		if (cached != null) {
+			this.hits.incrementAndGet();
+		} else {
+			cached = this.cachedDeployers.computeIfAbsent(key, s -> {
+				this.misses.incrementAndGet();
+				return doCreate(props, api, org, space, email, password);
+			});
+			evictLeastRecentlyUsed();
+		}
+
+		cached.lastAccess = System.currentTimeMillis();
+		return cached;
+	}
+
+	@Override
+	public Collection<Metric<?>> metrics() {
+
+		final List<Metric<?>> metrics = new ArrayList<>(Arrays.asList(
+			new Metric<>("spinnaker.deployers.size", this.cachedDeployers.size()),
+			new Metric<>("spinnaker.deployers.clients", clientCount()),
+			new Metric<>("spinnaker.deployers.hits", this.hits.get()),
+			new Metric<>("spinnaker.deployers.misses", this.misses.get()),
+			new Metric<>("spinnaker.deployers.evictions", this.evictions.get())));
+
+		this.guards.forEach((host, guard) -> {
+			final String name = "spinnaker.api." + host.replace('.', '_');
+			metrics.add(new Metric<>(name + ".rejected", guard.getRejected()));
+			metrics.add(new Metric<>(name + ".tripped", guard.getTripped()));
+			metrics.add(new Metric<>(name + ".open", guard.isOpen() ? 1 : 0));
+		});
+
+		return metrics;
+	}
+
+	private int clientCount() {
+
+		synchronized (this.sharedClients) {
+			return this.sharedClients.size();
+		}
+	}
+
+	@Override
+	public void destroy() {
+		this.cachedDeployers.keySet().forEach(this::evict);
+	}
+
+	private CachedDeployer doCreate(CloudFoundryDeployerProperties props, String api, String org, String space, String email, String password) {
+
+		final String clientKey = getClientKey(api, email, password);
+		final CloudFoundryClient client = acquireClient(clientKey, api, email, password);
+
+		final ApiGuard guard = guardFor(api);
+
+		// The operations sit on top of the bare client, so each of their calls only takes one token
+		final CloudFoundryOperations operations = guard.guard(createOperations(client, org, space));
+		final CloudFoundryClient guardedClient = guard.guard(client);
+
+		return new CachedDeployer(new CloudFoundryAppDeployer(props, operations, guardedClient), operations, guardedClient, clientKey);
+	}
+
+	/**
+	 * One guard per API host, however many clients and deployers talk to it.
+	 */
+	private ApiGuard guardFor(String api) {
+
+		final String host = DeployMetrics.target(api).replace('_', '.');
+		return this.guards.computeIfAbsent(host, key -> new ApiGuard(key, this.limits));
+	}
+
+	/**
+	 * Hand out the client for an API endpoint and set of credentials, creating it if nobody uses it yet. Deployers
+	 * for different orgs, spaces, namespaces and buildpacks all share it, along with its connections and login.
+	 */
+	private CloudFoundryClient acquireClient(String clientKey, String api, String email, String password) {
+
+		synchronized (this.sharedClients) {
+			final SharedClient shared = this.sharedClients.computeIfAbsent(clientKey, key -> new SharedClient(createClient(api, email, password)));
+			shared.users++;
+			return shared.client;
+		}
+	}
+
+	/**
+	 * Give back a client, disposing of it once no deployer uses it anymore.
+	 */
+	private void releaseClient(String clientKey) {
+
+		final SharedClient released;
+		synchronized (this.sharedClients) {
+			final SharedClient shared = this.sharedClients.get(clientKey);
+			if (shared == null || --shared.users > 0) {
+				return;
+			}
+			released = this.sharedClients.remove(clientKey);
+		}
+		dispose(released.client);
+	}
+
+	CloudFoundryClient createClient(String api, String email, String password) {
 
 		final URL apiEndpoint;
 		try {
@@ -58,24 +253,118 @@ public class DefaultAppDeployerFactory implements CloudFoundryAppDeployerFactory
 			throw new RuntimeException(e);
 		}
 
-		CloudFoundryClient client = SpringCloudFoundryClient.builder()
+		return SpringCloudFoundryClient.builder()
 				.host(apiEndpoint.getHost())
 				.port(apiEndpoint.getPort())
 				.username(email)
 				.password(password)
 				.skipSslValidation(true)
 				.build();
+	}
+
+	CloudFoundryOperations createOperations(CloudFoundryClient client, String org, String space) {
 
-		CloudFoundryOperations operations = new CloudFoundryOperationsBuilder()
+		return new CloudFoundryOperationsBuilder()
 				.cloudFoundryClient(client)
 				.target(org, space)
 				.build();
+	}
+
+	/**
+	 * @return the keys deployers are cached under
+	 */
+	Set<String> getCacheKeys() {
+		return Collections.unmodifiableSet(this.cachedDeployers.keySet());
+	}
+
+	/**
+	 * Every so often, get rid of deployers nobody has used for a while.
+	 */
+	private void sweepIdleDeployers() {
+
+		final long now = System.currentTimeMillis();
+		final long idleTimeout = this.settings.getIdleTimeout();
+
+		if (now - this.lastSweep < Math.min(idleTimeout, 60000)) {
+			return;
+		}
+		this.lastSweep = now;
+
+		this.cachedDeployers.entrySet().stream()
+			.filter(entry -> now - entry.getValue().lastAccess > idleTimeout)
+			.map(Map.Entry::getKey)
+			.forEach(this::evict);
+	}
 
-		return new CloudFoundryAppDeployer(props, operations, client);
+	private void evictLeastRecentlyUsed() {
+
+		while (this.cachedDeployers.size() > this.settings.getMaxSize()) {
+			this.cachedDeployers.entrySet().stream()
+				.min(Comparator.comparingLong(entry -> entry.getValue().lastAccess))
+				.map(Map.Entry::getKey)
+				.ifPresent(this::evict);
+		}
+	}
+
+	private void evict(String key) {
+
+		final CachedDeployer evicted = this.cachedDeployers.remove(key);
+		if (evicted != null) {
+			this.evictions.incrementAndGet();
+			releaseClient(evicted.clientKey);
+		}
+	}
+
+	/**
+	 * Release whatever resources a {@link CloudFoundryClient} holds on to, if it offers a way to do so.
+	 *
+	 * @param client
+	 */
+	private static void dispose(CloudFoundryClient client) {
+
+		try {
+			if (client instanceof DisposableBean) {
+				((DisposableBean) client).destroy();
+			} else if (client instanceof AutoCloseable) {
+				((AutoCloseable) client).close();
+			}
+		} catch (Exception e) {
+			log.warn("Unable to dispose of " + client, e);
+		}
 	}
 
 	private static String getKey(CloudFoundryDeployerProperties props, String api, String org, String space, String email, String password, String namespace) {
-		return props.getBuildpack() + ":" + api + ":" + org + ":" + space + ":" + email + ":" + password + ":" + namespace;
+		return Digests.sha256(props.getBuildpack() + ":" + api + ":" + org + ":" + space + ":" + email + ":" + password + ":" + namespace);
+	}
+
+	private static String getClientKey(String api, String email, String password) {
+		return Digests.sha256(api + ":" + email + ":" + password);
+	}
+
+	private static class CachedDeployer {
+
+		final CloudFoundryAppDeployer deployer;
+		final CloudFoundryOperations operations;
+		final CloudFoundryClient client;
+		final String clientKey;
+		volatile long lastAccess = System.currentTimeMillis();
+
+		CachedDeployer(CloudFoundryAppDeployer deployer, CloudFoundryOperations operations, CloudFoundryClient client, String clientKey) {
+			this.deployer = deployer;
+			this.operations = operations;
+			this.client = client;
+			this.clientKey = clientKey;
+		}
+	}
+
+	private static class SharedClient {
+
+		final CloudFoundryClient client;
+		int users = 0;
+
+		SharedClient(CloudFoundryClient client) {
+			this.client = client;
+		}
 	}
 
 }
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+
+/**
+ * How long each stage of a deployment takes, per module and target, along with a few counters of calls to Cloud
+ * Foundry. Each stage keeps a histogram of its durations, reported as {@literal spinnaker.deploy.<stage>.<module>.<target>.*}
+ * with percentiles estimated from the histogram's buckets. Status lookups are kept in the same kind of histogram,
+ * as {@literal spinnaker.status.lookup.<target>.*}. A full push is timed as one stage, since the deployer
+ * uploads, stages and starts the application in a single call.
+ *
+ * @author Greg Turnquist
+ */
+public class DeployMetrics implements PublicMetrics {
+
+	/**
+	 * Upper bounds (in milliseconds) of the histogram buckets. Anything slower lands in one last bucket.
+	 */
+	private static final long[] BUCKETS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 20000, 50000,
+		100000, 200000, 500000, 1000000};
+
+	/**
+	 * Number of status lookups to see before their percentiles are trusted.
+	 */
+	private static final long MIN_SAMPLES = 20;
+
+	private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+	private final AtomicLong statusCalls = new AtomicLong();
+	private final AtomicLong cloudFoundryErrors = new AtomicLong();
+	private final AtomicLong cloudFoundryRejections = new AtomicLong();
+	private final AtomicLong bytesUploaded = new AtomicLong();
+
+	/**
+	 * Start timing a deployment against the given Cloud Foundry API.
+	 *
+	 * @param api
+	 * @return a {@link Timing} whose clock starts now
+	 */
+	public Timing start(String api) {
+		return new Timing(target(api));
+	}
+
+	public void statusCalled() {
+		this.statusCalls.incrementAndGet();
+	}
+
+	public void cloudFoundryError() {
+		this.cloudFoundryErrors.incrementAndGet();
+	}
+
+	/**
+	 * Count a lookup that was given up on because the {@link ApiGuard} kept turning it away.
+	 */
+	public void cloudFoundryRejection() {
+		this.cloudFoundryRejections.incrementAndGet();
+	}
+
+	public void uploaded(long bytes) {
+		this.bytesUploaded.addAndGet(bytes);
+	}
+
+	@Override
+	public Collection<Metric<?>> metrics() {
+
+		final List<Metric<?>> metrics = new ArrayList<>();
+
+		metrics.add(new Metric<>("spinnaker.status.calls", this.statusCalls.get()));
+		metrics.add(new Metric<>("spinnaker.cf.errors", this.cloudFoundryErrors.get()));
+		metrics.add(new Metric<>("spinnaker.cf.rejected", this.cloudFoundryRejections.get()));
+		metrics.add(new Metric<>("spinnaker.deploy.bytesUploaded", this.bytesUploaded.get()));
+
+		this.histograms.forEach((name, histogram) -> {
+			final long count = histogram.count();
+			metrics.add(new Metric<>(name + ".count", count));
+			metrics.add(new Metric<>(name + ".mean", (count > 0) ? histogram.total.get() / count : 0L));
+			metrics.add(new Metric<>(name + ".max", histogram.max.get()));
+			metrics.add(new Metric<>(name + ".p50", histogram.percentile(0.5)));
+			metrics.add(new Metric<>(name + ".p95", histogram.percentile(0.95)));
+			metrics.add(new Metric<>(name + ".p99", histogram.percentile(0.99)));
+		});
+
+		return metrics;
+	}
+
+	/**
+	 * Record how long a status lookup against the given target took.
+	 */
+	void statusLookedUp(String target, long millis) {
+
+		this.histograms
+			.computeIfAbsent("spinnaker.status.lookup." + target, name -> new Histogram())
+			.record(millis);
+	}
+
+	/**
+	 * @return the given percentile of status lookups against the target, or 0 until enough of them have been seen
+	 */
+	long statusLatency(String target, double percentile) {
+
+		final Histogram histogram = this.histograms.get("spinnaker.status.lookup." + target);
+		return (histogram != null && histogram.count() >= MIN_SAMPLES) ? histogram.percentile(percentile) : 0;
+	}
+
+	void record(String stage, String module, String target, long millis) {
+
+		this.histograms
+			.computeIfAbsent("spinnaker.deploy." + stage + "." + module + "." + target, name -> new Histogram())
+			.record(millis);
+	}
+
+	/**
+	 * @return the API's host, in a form that fits in a metric name
+	 */
+	static String target(String api) {
+
+		String host;
+		try {
+			host = URI.create(api.contains("://") ? api : "https://" + api).getHost();
+		} catch (IllegalArgumentException e) {
+			host = null;
+		}
+		return ((host != null) ? host : api).replace('.', '_');
+	}
+
+	/**
+	 * Times the stages of one deployment, one after the other. Each stage is charged with the time since the
+	 * previous one ended.
+	 */
+	public class Timing {
+
+		private final String target;
+
+		private String module = "unknown";
+
+		private long mark = System.nanoTime();
+
+		private Timing(String target) {
+			this.target = target;
+		}
+
+		/**
+		 * Name the module being deployed, once it's known.
+		 */
+		public Timing module(String module) {
+			this.module = module;
+			return this;
+		}
+
+		/**
+		 * Record the stage that just ended, and start the clock on the next one.
+		 */
+		public void stage(String stage) {
+
+			final long now = System.nanoTime();
+			record(stage, this.module, this.target, TimeUnit.NANOSECONDS.toMillis(now - this.mark));
+			this.mark = now;
+		}
+	}
+
+	static class Histogram {
+
+		final AtomicLongArray buckets = new AtomicLongArray(BUCKETS.length + 1);
+		final AtomicLong total = new AtomicLong();
+		final AtomicLong max = new AtomicLong();
+
+		void record(long millis) {
+
+			int bucket = 0;
+			while (bucket < BUCKETS.length && millis > BUCKETS[bucket]) {
+				bucket++;
+			}
+			this.buckets.incrementAndGet(bucket);
+			this.total.addAndGet(millis);
+			this.max.accumulateAndGet(millis, Math::max);
+		}
+
+		long count() {
+
+			long count = 0;
+			for (int i = 0; i < this.buckets.length(); i++) {
+				count += this.buckets.get(i);
+			}
+			return count;
+		}
+
+		/**
+		 * @return the upper bound of the bucket the given percentile falls in, capped at the slowest duration seen
+		 */
+		long percentile(double percentile) {
+
+			final long rank = (long) Math.ceil(percentile * count());
+			long seen = 0;
+			for (int i = 0; i < this.buckets.length(); i++) {
+				seen += this.buckets.get(i);
+				if (seen >= rank && seen > 0) {
+					return (i < BUCKETS.length) ? Math.min(BUCKETS[i], this.max.get()) : this.max.get();
+				}
+			}
+			return 0;
+		}
+	}
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A deployment or undeployment running in the background, as reported through {@link JobController}.
+ *
+ * @author Greg Turnquist
+ */
+public class DeploymentJob {
+
+	public enum State {
+		queued,
+		running,
+		succeeded,
+		failed
+	}
+
+	private final String id = UUID.randomUUID().toString();
+	private final String operation;
+	private final String deploymentId;
+	private final long submittedAt = System.currentTimeMillis();
+
+	private volatile State state = State.queued;
+	private volatile String stage = "queued";
+	private volatile String message;
+	private volatile long startedAt;
+	private volatile long finishedAt;
+
+	private final Map<String, String> progress = Collections.synchronizedMap(new LinkedHashMap<>());
+
+	DeploymentJob(String operation, String deploymentId) {
+		this.operation = operation;
+		this.deploymentId = deploymentId;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public String getOperation() {
+		return operation;
+	}
+
+	public String getDeploymentId() {
+		return deploymentId;
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	public String getStage() {
+		return stage;
+	}
+
+	public String getMessage() {
+		return message;
+	}
+
+	/**
+	 * @return milliseconds spent running so far, or in total once finished
+	 */
+	public long getElapsed() {
+
+		if (startedAt == 0) {
+			return 0;
+		}
+		return ((finishedAt != 0) ? finishedAt : System.currentTimeMillis()) - startedAt;
+	}
+
+	/**
+	 * @return the stage each application has reached, for jobs that work on several at once
+	 */
+	public Map<String, String> getProgress() {
+
+		synchronized (progress) {
+			return new LinkedHashMap<>(progress);
+		}
+	}
+
+	public long getSubmittedAt() {
+		return submittedAt;
+	}
+
+	boolean isFinished() {
+		return state == State.succeeded || state == State.failed;
+	}
+
+	long getFinishedAt() {
+		return finishedAt;
+	}
+
+	void start() {
+		this.startedAt = System.currentTimeMillis();
+		this.state = State.running;
+		this.stage = "started";
+	}
+
+	void stage(String stage) {
+		this.stage = stage;
+	}
+
+	void progress(String deploymentId, String stage) {
+		this.progress.put(deploymentId, stage);
+		this.stage = deploymentId + ": " + stage;
+	}
+
+	void succeed() {
+		this.finishedAt = System.currentTimeMillis();
+		this.stage = "done";
+		this.state = State.succeeded;
+	}
+
+	void fail(String message) {
+		this.finishedAt = System.currentTimeMillis();
+		this.message = message;
+		this.state = State.failed;
+	}
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs deployments in the background on a bounded {@link Executor}, keeping track of each one as a
+ * {@link DeploymentJob} until {@link SpinnakerConfiguration.Jobs#getRetention()} after it finished.
+ *
+ * @author Greg Turnquist
+ */
+public class DeploymentJobs {
+
+	private static final Logger log = LoggerFactory.getLogger(DeploymentJobs.class);
+
+	private final Map<String, DeploymentJob> jobs = new ConcurrentHashMap<>();
+
+	private final Executor executor;
+
+	private final long retention;
+
+	public DeploymentJobs(SpinnakerConfiguration.Jobs settings, Executor executor) {
+		this.executor = executor;
+		this.retention = settings.getRetention();
+	}
+
+	/**
+	 * Queue up a job.
+	 *
+	 * @param operation what the job does, e.g. {@literal deploy}
+	 * @param deploymentId what it does it to
+	 * @param task the work itself, which reports its stages to the {@link Consumer} it's handed
+	 * @return the queued job
+	 * @throws RejectedExecutionException if too many jobs are already waiting
+	 */
+	public DeploymentJob submit(String operation, String deploymentId, Task task) {
+		return submit(new DeploymentJob(operation, deploymentId), task);
+	}
+
+	/**
+	 * Queue up a job that works on several applications at once, tracking how far each one got.
+	 *
+	 * @param operation what the job does, e.g. {@literal undeploy}
+	 * @param description what it does it to
+	 * @param task the work itself, which reports each application's stages to the {@link BiConsumer} it's handed
+	 * @return the queued job
+	 * @throws RejectedExecutionException if too many jobs are already waiting
+	 */
+	public DeploymentJob submitBulk(String operation, String description, BulkTask task) {
+
+		final DeploymentJob job = new DeploymentJob(operation, description);
+		return submit(job, stages -> task.run(job::progress));
+	}
+
+	private DeploymentJob submit(DeploymentJob job, Task task) {
+
+		evictExpired();
+
+		this.jobs.put(job.getId(), job);
+
+		try {
+			this.executor.execute(() -> run(job, task));
+		} catch (RejectedExecutionException e) {
+			this.jobs.remove(job.getId());
+			throw e;
+		}
+
+		return job;
+	}
+
+	/**
+	 * @param id
+	 * @return the job, if it's still being tracked
+	 */
+	public Optional<DeploymentJob> get(String id) {
+		return Optional.ofNullable(this.jobs.get(id));
+	}
+
+	private void run(DeploymentJob job, Task task) {
+
+		job.start();
+		try {
+			task.run(job::stage);
+			job.succeed();
+		} catch (Exception e) {
+			log.error("Unable to " + job.getOperation() + " " + job.getDeploymentId(), e);
+			job.fail(e.getMessage());
+		}
+	}
+
+	private void evictExpired() {
+
+		final long cutoff = System.currentTimeMillis() - this.retention;
+		this.jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt() < cutoff);
+	}
+
+	/**
+	 * The work behind a {@link DeploymentJob}.
+	 */
+	@FunctionalInterface
+	public interface Task {
+
+		void run(Consumer<String> stages) throws Exception;
+	}
+
+	/**
+	 * The work behind a {@link DeploymentJob} that covers several applications.
+	 */
+	@FunctionalInterface
+	public interface BulkTask {
+
+		void run(BiConsumer<String, String> progress) throws Exception;
+	}
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+/**
+ * How deploying (or undeploying) a single module went as part of a bulk operation.
+ *
+ * @author Greg Turnquist
+ */
+public class DeploymentOutcome {
+
+	public enum State {
+		succeeded,
+		failed,
+		skipped
+	}
+
+	private final String deploymentId;
+	private final State state;
+	private final String message;
+
+	private DeploymentOutcome(String deploymentId, State state, String message) {
+		this.deploymentId = deploymentId;
+		this.state = state;
+		this.message = message;
+	}
+
+	public static DeploymentOutcome succeeded(String deploymentId) {
+		return new DeploymentOutcome(deploymentId, State.succeeded, null);
+	}
+
+	public static DeploymentOutcome failed(String deploymentId, String message) {
+		return new DeploymentOutcome(deploymentId, State.failed, message);
+	}
+
+	public static DeploymentOutcome skipped(String deploymentId, String message) {
+		return new DeploymentOutcome(deploymentId, State.skipped, message);
+	}
+
+	public String getDeploymentId() {
+		return deploymentId;
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	public String getMessage() {
+		return message;
+	}
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 helpers, rendered as lowercase hex.
+ *
+ * @author Greg Turnquist
+ */
+final class Digests {
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private Digests() {
+	}
+
+	static String sha256(String value) {
+		return toHex(newSha256().digest(value.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * Digest a stream to its end. The stream is left open.
+	 *
+	 * @param inputStream
+	 * @return
+	 * @throws IOException
+	 */
+	static String sha256(InputStream inputStream) throws IOException {
+
+		final MessageDigest digest = newSha256();
+		final byte[] buffer = new byte[64 * 1024];
+		int read;
+		while ((read = inputStream.read(buffer)) != -1) {
+			digest.update(buffer, 0, read);
+		}
+		return toHex(digest.digest());
+	}
+
+	static MessageDigest newSha256() {
+
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	static String toHex(byte[] bytes) {
+
+		final char[] hex = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			hex[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+			hex[i * 2 + 1] = HEX[bytes[i] & 0xf];
+		}
+		return new String(hex);
+	}
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import static org.springframework.hateoas.mvc.ControllerLinkBuilder.linkTo;
+import static org.springframework.hateoas.mvc.ControllerLinkBuilder.methodOn;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.hateoas.Resource;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * @author Greg Turnquist
+ */
+@RestController
+public class JobController {
+
+	private final DeploymentJobs deploymentJobs;
+
+	@Autowired
+	public JobController(DeploymentJobs deploymentJobs) {
+		this.deploymentJobs = deploymentJobs;
+	}
+
+	@RequestMapping(method = RequestMethod.GET, value = ModuleController.BASE_PATH + "/jobs/{id}", produces = MediaTypes.HAL_JSON_VALUE)
+	public ResponseEntity<?> job(@PathVariable String id) {
+
+		return deploymentJobs.get(id)
+			.<ResponseEntity<?>> map(job -> ResponseEntity.ok(toResource(job)))
+			.orElseGet(() -> ResponseEntity.notFound().build());
+	}
+
+	static Resource<DeploymentJob> toResource(DeploymentJob job) {
+		return new Resource<>(job, linkTo(methodOn(JobController.class).job(job.getId())).withSelfRel());
+	}
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.ResourcePatternResolver;
+
+/**
+ * Every module's artifact, found once when the application starts rather than by scanning the classpath on each
+ * deployment. Size and SHA-256 digest are worked out up front as well.
+ *
+ * @author Greg Turnquist
+ */
+public class ModuleArtifactIndex {
+
+	private static final Logger log = LoggerFactory.getLogger(ModuleArtifactIndex.class);
+
+	private final Map<String, IndexedArtifact> artifacts = new HashMap<>();
+
+	/**
+	 * Scan {@link SpinnakerConfiguration.Artifacts#getLocation()} once and match what's found up to the modules.
+	 *
+	 * @param spinnakerConfiguration
+	 * @param resourcePatternResolver
+	 * @throws IOException
+	 * @throws IllegalStateException if a module has more than one candidate artifact, or none at all while
+	 * {@link SpinnakerConfiguration.Artifacts#isFailOnMissing()} is set
+	 */
+	public ModuleArtifactIndex(SpinnakerConfiguration spinnakerConfiguration, ResourcePatternResolver resourcePatternResolver) throws IOException {
+
+		final SpinnakerConfiguration.Artifacts settings = spinnakerConfiguration.getArtifacts();
+		final List<Resource> candidates = Arrays.asList(resourcePatternResolver.getResources(settings.getLocation()));
+
+		for (ModuleDetails details : spinnakerConfiguration.getModules()) {
+
+			final List<Resource> matches = candidates.stream()
+				.filter(resource -> isArtifactOf(details, resource))
+				.collect(Collectors.toList());
+
+			if (matches.size() > 1) {
+				throw new IllegalStateException("Found " + matches.size() + " artifacts for module '" + details.getName() + "': " + matches);
+			}
+
+			if (matches.isEmpty()) {
+				if (settings.isFailOnMissing()) {
+					throw new IllegalStateException("Unable to find artifact '" + details.getArtifact() + "' for module '"
+						+ details.getName() + "' in " + settings.getLocation());
+				}
+				log.warn("Unable to find artifact '" + details.getArtifact() + "' for module '" + details.getName() + "'");
+				continue;
+			}
+
+			final IndexedArtifact artifact = index(matches.get(0));
+			log.info("Indexed " + artifact.getResource() + " (" + artifact.getSize() + " bytes, sha256 " + artifact.getSha256() + ")");
+			this.artifacts.put(details.getArtifact(), artifact);
+		}
+	}
+
+	/**
+	 * Look up a module's artifact.
+	 *
+	 * @param details
+	 * @return
+	 * @throws IllegalStateException if no artifact was found for the module
+	 */
+	public IndexedArtifact get(ModuleDetails details) {
+
+		final IndexedArtifact artifact = this.artifacts.get(details.getArtifact());
+		if (artifact == null) {
+			throw new IllegalStateException("No artifact '" + details.getArtifact() + "' available for module '" + details.getName() + "'");
+		}
+		return artifact;
+	}
+
+	/**
+	 * Mirrors the {@literal **}/{artifact}/{@literal **}/{artifact}-*.jar layout the modules are packaged in.
+	 *
+	 * @param details
+	 * @param resource
+	 * @return
+	 */
+	private static boolean isArtifactOf(ModuleDetails details, Resource resource) {
+
+		final String filename = resource.getFilename();
+		if (filename == null || !filename.startsWith(details.getArtifact() + "-") || !filename.endsWith(".jar")) {
+			return false;
+		}
+
+		try {
+			return resource.getURL().getPath().contains("/" + details.getArtifact() + "/");
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	private static IndexedArtifact index(Resource resource) throws IOException {
+
+		try (InputStream inputStream = resource.getInputStream()) {
+			return new IndexedArtifact(resource, resource.contentLength(), Digests.sha256(inputStream));
+		}
+	}
+
+	/**
+	 * A module's artifact, along with its size and SHA-256 digest.
+	 */
+	public static class IndexedArtifact {
+
+		private final Resource resource;
+		private final long size;
+		private final String sha256;
+
+		IndexedArtifact(Resource resource, long size, String sha256) {
+			this.resource = resource;
+			this.size = size;
+			this.sha256 = sha256;
+		}
+
+		public Resource getResource() {
+			return resource;
+		}
+
+		public long getSize() {
+			return size;
+		}
+
+		public String getSha256() {
+			return sha256;
+		}
+	}
+
+}
@@ -18,8 +18,11 @@ package org.springframework.cloud.spinnaker;
 import static org.springframework.hateoas.mvc.ControllerLinkBuilder.linkTo;
 import static org.springframework.hateoas.mvc.ControllerLinkBuilder.methodOn;
 
-import java.io.IOException;
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
@@ -36,6 +39,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 /**
  * @author Greg Turnquist
@@ -49,75 +53,242 @@ public class ModuleController {
 
 	private final ModuleService moduleService;
 
+	private final DeploymentJobs deploymentJobs;
+
+	private final ModuleStatusStream statusStream;
+
+	private final TargetRegistry targets;
+
 	@Autowired
-	public ModuleController(ModuleService moduleService) {
+	public ModuleController(ModuleService moduleService, DeploymentJobs deploymentJobs, ModuleStatusStream statusStream, TargetRegistry targets) {
 		this.moduleService = moduleService;
+		this.deploymentJobs = deploymentJobs;
+		this.statusStream = statusStream;
+		this.targets = targets;
 	}
 
 	@RequestMapping(method = RequestMethod.GET, value = BASE_PATH + "/modules", produces = MediaTypes.HAL_JSON_VALUE)
-	public ResponseEntity<?> statuses(@RequestParam("api") String api,
-									  @RequestParam("org") String org,
-									  @RequestParam("space") String space,
-									  @RequestParam("email") String email,
-									  @RequestParam("password") String password,
+	public CompletableFuture<ResponseEntity<?>> statuses(@RequestParam(value = "target", required = false) String targetId,
+									  @RequestParam(value = "api", required = false) String api,
+									  @RequestParam(value = "org", required = false) String org,
+									  @RequestParam(value = "space", required = false) String space,
+									  @RequestParam(value = "email", required = false) String email,
+									  @RequestParam(value = "password", required = false) String password,
 									  @RequestParam(value = "namespace", defaultValue = "") String namespace) {
 
-		return ResponseEntity.ok(new Resources<>(
-			moduleService.getStatuses(api, org, space, email, password, namespace)
-				.map(appStatus -> new Resource<>(
-					appStatus,
-					linkTo(methodOn(ModuleController.class).status(appStatus.getDeploymentId(), api, org, space, email, password, namespace)).withSelfRel()))
-				.collect(Collectors.toList()),
-				linkTo(methodOn(ModuleController.class).statuses(api, org, space, email, password, namespace)).withSelfRel()
-		));
+		Target target = targets.resolve(targetId, api, org, space, email, password);
+
+		return moduleService.getStatusesAsync(target.getApi(), target.getOrg(), target.getSpace(), target.getEmail(), target.getPassword(), namespace)
+			.<ResponseEntity<?>> thenApply(appStatuses -> ResponseEntity.ok(new Resources<>(
+				appStatuses.stream()
+					.map(appStatus -> new Resource<>(
+						appStatus,
+						linkTo(methodOn(ModuleController.class).status(appStatus.getDeploymentId(), target.getId(), null, null, null, null, null, namespace)).withSelfRel()))
+					.collect(Collectors.toList()),
+					linkTo(methodOn(ModuleController.class).statuses(target.getId(), null, null, null, null, null, namespace)).withSelfRel(),
+					linkTo(methodOn(ModuleController.class).statusStream(target.getId(), null, null, null, null, null, namespace)).withRel("stream")
+			)));
+	}
+
+	@RequestMapping(method = RequestMethod.GET, value = BASE_PATH + "/modules/stream", produces = "text/event-stream")
+	public SseEmitter statusStream(@RequestParam(value = "target", required = false) String targetId,
+								   @RequestParam(value = "api", required = false) String api,
+								   @RequestParam(value = "org", required = false) String org,
+								   @RequestParam(value = "space", required = false) String space,
+								   @RequestParam(value = "email", required = false) String email,
+								   @RequestParam(value = "password", required = false) String password,
+								   @RequestParam(value = "namespace", defaultValue = "") String namespace) {
+
+		Target target = targets.resolve(targetId, api, org, space, email, password);
+
+		return statusStream.subscribe(target.getApi(), target.getOrg(), target.getSpace(), target.getEmail(), target.getPassword(), namespace);
+	}
+
+	@RequestMapping(method = RequestMethod.GET, value = BASE_PATH + "/inventory", produces = MediaTypes.HAL_JSON_VALUE)
+	public CompletableFuture<ResponseEntity<?>> inventory(@RequestParam(value = "target", required = false) String targetId,
+									   @RequestParam(value = "api", required = false) String api,
+									   @RequestParam(value = "org", required = false) String org,
+									   @RequestParam(value = "space", required = false) String space,
+									   @RequestParam(value = "email", required = false) String email,
+									   @RequestParam(value = "password", required = false) String password) {
+
+		Target target = targets.resolve(targetId, api, org, space, email, password);
+
+		return moduleService.getInventoryAsync(target.getApi(), target.getOrg(), target.getSpace(), target.getEmail(), target.getPassword())
+			.<ResponseEntity<?>> thenApply(namespaces -> ResponseEntity.ok(new Resources<>(
+				namespaces.entrySet().stream()
+					.map(entry -> new Resource<>(
+						new Namespace(entry.getKey(), entry.getValue()),
+						linkTo(methodOn(ModuleController.class).statuses(target.getId(), null, null, null, null, null, entry.getKey())).withRel("modules")))
+					.collect(Collectors.toList()),
+				linkTo(methodOn(ModuleController.class).inventory(target.getId(), null, null, null, null, null)).withSelfRel()
+			)));
 	}
 
 	@RequestMapping(method = RequestMethod.GET, value = BASE_PATH + "/modules/{module}", produces = MediaTypes.HAL_JSON_VALUE)
-	public ResponseEntity<?> status(@PathVariable String module,
-									@RequestParam("api") String api,
-									@RequestParam("org") String org,
-									@RequestParam("space") String space,
-									@RequestParam("email") String email,
-									@RequestParam("password") String password,
+	public CompletableFuture<ResponseEntity<?>> status(@PathVariable String module,
+									@RequestParam(value = "target", required = false) String targetId,
+									@RequestParam(value = "api", required = false) String api,
+									@RequestParam(value = "org", required = false) String org,
+									@RequestParam(value = "space", required = false) String space,
+									@RequestParam(value = "email", required = false) String email,
+									@RequestParam(value = "password", required = false) String password,
 									@RequestParam(value = "namespace", defaultValue = "") String namespace) {
 
-		return ResponseEntity.ok(new Resource<>(
-			moduleService.getStatus(module, api, org, space, email, password, namespace),
-			linkTo(methodOn(ModuleController.class).status(module, api, org, space, email, password, namespace)).withSelfRel(),
-			linkTo(methodOn(ModuleController.class).statuses(api, org, space, email, password, namespace)).withRel("all"),
-			linkTo(methodOn(ApiController.class).root(api, org, space, email, password, namespace)).withRel("root")
-		));
+		Target target = targets.resolve(targetId, api, org, space, email, password);
+
+		return moduleService.getStatusAsync(module, target.getApi(), target.getOrg(), target.getSpace(), target.getEmail(), target.getPassword(), namespace)
+			.<ResponseEntity<?>> thenApply(appStatus -> ResponseEntity.ok(new Resource<>(
+				appStatus,
+				linkTo(methodOn(ModuleController.class).status(module, target.getId(), null, null, null, null, null, namespace)).withSelfRel(),
+				linkTo(methodOn(ModuleController.class).statuses(target.getId(), null, null, null, null, null, namespace)).withRel("all"),
+				linkTo(methodOn(ApiController.class).root(target.getId(), null, null, null, null, null, namespace)).withRel("root")
+			)));
 	}
 
-	@RequestMapping(method = RequestMethod.POST, value = BASE_PATH + "/modules/{module}")
+	@RequestMapping(method = RequestMethod.POST, value = BASE_PATH + "/modules/{module}", produces = MediaTypes.HAL_JSON_VALUE)
 	public ResponseEntity<?> deploy(@PathVariable String module,
-									@RequestParam("api") String api,
-									@RequestParam("org") String org,
-									@RequestParam("space") String space,
-									@RequestParam("email") String email,
-									@RequestParam("password") String password,
+									@RequestParam(value = "target", required = false) String targetId,
+									@RequestParam(value = "api", required = false) String api,
+									@RequestParam(value = "org", required = false) String org,
+									@RequestParam(value = "space", required = false) String space,
+									@RequestParam(value = "email", required = false) String email,
+									@RequestParam(value = "password", required = false) String password,
 									@RequestParam(value = "namespace", defaultValue = "") String namespace,
-									@RequestBody Map<String, String> data) throws IOException {
+									@RequestBody Map<String, String> data) {
+
+		Target target = targets.resolve(targetId, api, org, space, email, password);
+
+		moduleService.getModuleDetails(module); // Turn away an unknown module before queueing anything
+
+		DeploymentJob job = deploymentJobs.submit("deploy", module + namespace,
+			stages -> moduleService.deploy(module, data, target.getApi(), target.getOrg(), target.getSpace(), target.getEmail(), target.getPassword(), namespace, stages));
+
+		return accepted(job, module, target, namespace);
+	}
+
+	@RequestMapping(method = RequestMethod.POST, value = BASE_PATH + "/modules/{module}/namespaces", produces = MediaTypes.HAL_JSON_VALUE)
+	public ResponseEntity<?> deployToNamespaces(@PathVariable String module,
+												@RequestParam(value = "target", required = false) String targetId,
+												@RequestParam(value = "api", required = false) String api,
+												@RequestParam(value = "org", required = false) String org,
+												@RequestParam(value = "space", required = false) String space,
+												@RequestParam(value = "email", required = false) String email,
+												@RequestParam(value = "password", required = false) String password,
+												@RequestBody Map<String, Map<String, String>> data) {
+
+		Target target = targets.resolve(targetId, api, org, space, email, password);
+
+		moduleService.getModuleDetails(module); // Turn away an unknown module before queueing anything
+
+		DeploymentJob job = deploymentJobs.submit("deploy", module + " to " + data.keySet(), stages -> {
+			String failures = moduleService.deployToNamespaces(module, data, target.getApi(), target.getOrg(), target.getSpace(), target.getEmail(), target.getPassword(), stages).stream()
+				.filter(outcome -> outcome.getState() != DeploymentOutcome.State.succeeded)
+				.map(outcome -> outcome.getDeploymentId() + ": " + outcome.getMessage())
+				.collect(Collectors.joining(", "));
+			if (!failures.isEmpty()) {
+				throw new IllegalStateException(failures);
+			}
+		});
 
-		moduleService.deploy(module, data, api, org, space, email, password, namespace);
+		Resource<DeploymentJob> resource = JobController.toResource(job);
 
-		return ResponseEntity.created(linkTo(methodOn(ModuleController.class).status(module, api, org, space, email, password, namespace)).toUri()).build();
+		return ResponseEntity.accepted().location(URI.create(resource.getId().getHref())).body(resource);
 	}
 
-	@RequestMapping(method = RequestMethod.DELETE, value = BASE_PATH + "/modules/{module}")
+	@RequestMapping(method = RequestMethod.POST, value = BASE_PATH + "/modules", produces = MediaTypes.HAL_JSON_VALUE)
+	public ResponseEntity<?> deployAll(@RequestParam(value = "target", required = false) String targetId,
+									   @RequestParam(value = "api", required = false) String api,
+									   @RequestParam(value = "org", required = false) String org,
+									   @RequestParam(value = "space", required = false) String space,
+									   @RequestParam(value = "email", required = false) String email,
+									   @RequestParam(value = "password", required = false) String password,
+									   @RequestParam(value = "namespace", defaultValue = "") String namespace,
+									   @RequestBody Map<String, Map<String, String>> data) {
+
+		Target target = targets.resolve(targetId, api, org, space, email, password);
+
+		data.keySet().forEach(moduleService::getModuleDetails); // Turn away unknown modules before queueing anything
+
+		log.debug("Deploying " + data.keySet() + " on the server...");
+
+		DeploymentJob job = deploymentJobs.submitBulk("deploy", "modules " + data.keySet() + (namespace.isEmpty() ? "" : " in " + namespace), progress -> {
+			String failures = moduleService.deployAll(data, target.getApi(), target.getOrg(), target.getSpace(), target.getEmail(), target.getPassword(), namespace, progress).stream()
+				.filter(outcome -> outcome.getState() != DeploymentOutcome.State.succeeded)
+				.map(outcome -> outcome.getDeploymentId() + " " + outcome.getState() + ": " + outcome.getMessage())
+				.collect(Collectors.joining(", "));
+			if (!failures.isEmpty()) {
+				throw new IllegalStateException(failures);
+			}
+		});
+
+		Resource<DeploymentJob> resource = JobController.toResource(job);
+		resource.add(linkTo(methodOn(ModuleController.class).statuses(target.getId(), null, null, null, null, null, namespace)).withRel("modules"));
+
+		return ResponseEntity.accepted().location(URI.create(resource.getId().getHref())).body(resource);
+	}
+
+	@RequestMapping(method = RequestMethod.DELETE, value = BASE_PATH + "/modules/{module}", produces = MediaTypes.HAL_JSON_VALUE)
 	public ResponseEntity<?> undeploy(@PathVariable String module,
-									  @RequestParam("api") String api,
-									  @RequestParam("org") String org,
-									  @RequestParam("space") String space,
-									  @RequestParam("email") String email,
-									  @RequestParam("password") String password,
+									  @RequestParam(value = "target", required = false) String targetId,
+									  @RequestParam(value = "api", required = false) String api,
+									  @RequestParam(value = "org", required = false) String org,
+									  @RequestParam(value = "space", required = false) String space,
+									  @RequestParam(value = "email", required = false) String email,
+									  @RequestParam(value = "password", required = false) String password,
 									  @RequestParam(value = "namespace", defaultValue = "") String namespace) {
 
+		Target target = targets.resolve(targetId, api, org, space, email, password);
+
+		moduleService.getModuleDetails(module); // Turn away an unknown module before queueing anything
+
 		log.debug("Deleting " + module + " on the server...");
 
-		moduleService.undeploy(module, api, org, space, email, password, namespace);
+		DeploymentJob job = deploymentJobs.submit("undeploy", module,
+			stages -> moduleService.undeploy(module, target.getApi(), target.getOrg(), target.getSpace(), target.getEmail(), target.getPassword(), namespace, stages));
+
+		return accepted(job, module, target, namespace);
+	}
+
+	@RequestMapping(method = RequestMethod.DELETE, value = BASE_PATH + "/modules", produces = MediaTypes.HAL_JSON_VALUE)
+	public ResponseEntity<?> undeployAll(@RequestParam(value = "target", required = false) String targetId,
+										 @RequestParam(value = "api", required = false) String api,
+										 @RequestParam(value = "org", required = false) String org,
+										 @RequestParam(value = "space", required = false) String space,
+										 @RequestParam(value = "email", required = false) String email,
+										 @RequestParam(value = "password", required = false) String password,
+										 @RequestParam(value = "namespace", required = false) List<String> namespaces) {
+
+		Target target = targets.resolve(targetId, api, org, space, email, password);
+
+		List<String> toUndeploy = (namespaces == null || namespaces.isEmpty()) ? Collections.singletonList("") : namespaces;
+
+		log.debug("Deleting every module in " + toUndeploy + " on the server...");
+
+		DeploymentJob job = deploymentJobs.submitBulk("undeploy", "all modules in " + toUndeploy, progress -> {
+			String failures = moduleService.undeployAll(toUndeploy, target.getApi(), target.getOrg(), target.getSpace(), target.getEmail(), target.getPassword(), progress).stream()
+				.filter(outcome -> outcome.getState() == DeploymentOutcome.State.failed)
+				.map(outcome -> outcome.getDeploymentId() + ": " + outcome.getMessage())
+				.collect(Collectors.joining(", "));
+			if (!failures.isEmpty()) {
+				throw new IllegalStateException(failures);
+			}
+		});
+
+		Resource<DeploymentJob> resource = JobController.toResource(job);
+
+		return ResponseEntity.accepted().location(URI.create(resource.getId().getHref())).body(resource);
+	}
+
+	/**
+	 * Answer with the job that was just queued up, pointing at it as well as the module's status.
+	 */
+	private ResponseEntity<?> accepted(DeploymentJob job, String module, Target target, String namespace) {
+
+		Resource<DeploymentJob> resource = JobController.toResource(job);
+		resource.add(linkTo(methodOn(ModuleController.class).status(module, target.getId(), null, null, null, null, null, namespace)).withRel("module"));
 
-		return ResponseEntity.noContent().build();
+		return ResponseEntity.accepted().location(URI.create(resource.getId().getHref())).body(resource);
 	}
 
 }
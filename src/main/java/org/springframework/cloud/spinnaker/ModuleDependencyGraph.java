@@ -0,0 +1,192 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Which modules depend on which, going by the {@literal ${services.<module>.baseUrl}} references in their properties.
+ *
+ * Modules that refer to each other in a cycle (e.g. echo and orca) simply need to be deployed together, since
+ * each one only needs to know where the others will be.
+ *
+ * @author Greg Turnquist
+ */
+class ModuleDependencyGraph {
+
+	private static final Pattern SERVICE_REFERENCE = Pattern.compile("\\$\\{services\\.([^.}]+)\\.baseUrl\\}");
+
+	private final Map<String, Set<String>> dependencies = new LinkedHashMap<>();
+
+	ModuleDependencyGraph(SpinnakerConfiguration spinnakerConfiguration) {
+
+		final Set<String> moduleNames = spinnakerConfiguration.getModules().stream()
+			.map(ModuleDetails::getName)
+			.collect(Collectors.toSet());
+
+		for (ModuleDetails details : spinnakerConfiguration.getModules()) {
+
+			final Set<String> dependsOn = new LinkedHashSet<>();
+
+			Stream.concat(spinnakerConfiguration.getProperties().values().stream(), details.getProperties().values().stream())
+				.filter(value -> value != null)
+				.forEach(value -> {
+					final Matcher matcher = SERVICE_REFERENCE.matcher(value);
+					while (matcher.find()) {
+						final String dependency = matcher.group(1);
+						if (moduleNames.contains(dependency) && !dependency.equals(details.getName())) {
+							dependsOn.add(dependency);
+						}
+					}
+				});
+
+			this.dependencies.put(details.getName(), dependsOn);
+		}
+	}
+
+	/**
+	 * @param module
+	 * @return the modules the given one refers to
+	 */
+	Set<String> getDependencies(String module) {
+		return this.dependencies.getOrDefault(module, Collections.emptySet());
+	}
+
+	/**
+	 * Split the given modules into waves, where every module only depends on modules from earlier waves (or on
+	 * modules in its own wave that depend on it in return). Dependencies on modules that weren't asked for are
+	 * assumed to be in place already.
+	 *
+	 * @param modules names of the modules to deploy
+	 * @return the waves, in order
+	 */
+	List<List<String>> waves(Collection<String> modules) {
+
+		final Set<String> requested = new LinkedHashSet<>(modules);
+		final List<Set<String>> components = stronglyConnectedComponents(requested);
+
+		final Map<String, Integer> componentOf = new HashMap<>();
+		for (int i = 0; i < components.size(); i++) {
+			for (String module : components.get(i)) {
+				componentOf.put(module, i);
+			}
+		}
+
+		// Tarjan's algorithm hands back components dependencies first, so one pass settles each component's wave.
+		final int[] waveOf = new int[components.size()];
+		final List<List<String>> waves = new ArrayList<>();
+
+		for (int i = 0; i < components.size(); i++) {
+			int wave = 0;
+			for (String module : components.get(i)) {
+				for (String dependency : getDependencies(module)) {
+					final Integer component = componentOf.get(dependency);
+					if (component != null && component != i) {
+						wave = Math.max(wave, waveOf[component] + 1);
+					}
+				}
+			}
+			waveOf[i] = wave;
+
+			while (waves.size() <= wave) {
+				waves.add(new ArrayList<>());
+			}
+			waves.get(wave).addAll(components.get(i));
+		}
+
+		return waves;
+	}
+
+	private List<Set<String>> stronglyConnectedComponents(Set<String> modules) {
+		return new Tarjan(modules).run();
+	}
+
+	/**
+	 * Tarjan's strongly connected components, restricted to the requested modules.
+	 */
+	private class Tarjan {
+
+		private final Set<String> modules;
+		private final Map<String, Integer> index = new HashMap<>();
+		private final Map<String, Integer> lowLink = new HashMap<>();
+		private final Deque<String> stack = new ArrayDeque<>();
+		private final Set<String> onStack = new HashSet<>();
+		private final List<Set<String>> components = new ArrayList<>();
+		private int counter = 0;
+
+		Tarjan(Set<String> modules) {
+			this.modules = modules;
+		}
+
+		List<Set<String>> run() {
+
+			for (String module : this.modules) {
+				if (!this.index.containsKey(module)) {
+					visit(module);
+				}
+			}
+			return this.components;
+		}
+
+		private void visit(String module) {
+
+			this.index.put(module, this.counter);
+			this.lowLink.put(module, this.counter);
+			this.counter++;
+			this.stack.push(module);
+			this.onStack.add(module);
+
+			for (String dependency : getDependencies(module)) {
+				if (!this.modules.contains(dependency)) {
+					continue;
+				}
+				if (!this.index.containsKey(dependency)) {
+					visit(dependency);
+					this.lowLink.put(module, Math.min(this.lowLink.get(module), this.lowLink.get(dependency)));
+				} else if (this.onStack.contains(dependency)) {
+					this.lowLink.put(module, Math.min(this.lowLink.get(module), this.index.get(dependency)));
+				}
+			}
+
+			if (this.lowLink.get(module).equals(this.index.get(module))) {
+				final Set<String> component = new LinkedHashSet<>();
+				String member;
+				do {
+					member = this.stack.pop();
+					this.onStack.remove(member);
+					component.add(member);
+				} while (!member.equals(module));
+				this.components.add(component);
+			}
+		}
+	}
+
+}
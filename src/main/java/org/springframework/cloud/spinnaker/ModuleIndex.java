@@ -0,0 +1,221 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Every module, indexed by name so the module a deployed application belongs to is found with one walk down the
+ * application's name, however many modules there are. If several module names are prefixes of an application's
+ * name (e.g. {@literal module1} and {@literal module10}), the longest one wins.
+ *
+ * Each module also carries its properties and patterns already merged with the top level ones. The index is built
+ * once from the bound {@link SpinnakerConfiguration} and never changes, so it can be shared without locking.
+ *
+ * @author Greg Turnquist
+ */
+class ModuleIndex {
+
+	private final Map<String, String> properties;
+
+	private final Map<String, String> patterns;
+
+	private final List<IndexedModule> modules;
+
+	private final Node root;
+
+	ModuleIndex(SpinnakerConfiguration spinnakerConfiguration) {
+
+		this.properties = new LinkedHashMap<>(spinnakerConfiguration.getProperties());
+		this.patterns = new LinkedHashMap<>(spinnakerConfiguration.getPatterns());
+
+		final Map<String, IndexedModule> byName = new LinkedHashMap<>();
+		if (spinnakerConfiguration.getModules() != null) {
+			spinnakerConfiguration.getModules().forEach(details -> byName.put(details.getName(), index(details)));
+		}
+
+		this.modules = Collections.unmodifiableList(new ArrayList<>(byName.values()));
+		this.root = Node.build(byName, 0);
+	}
+
+	/**
+	 * @param deploymentId a module's name plus its namespace
+	 * @return the module the deployment id belongs to, or {@literal null} if there is none
+	 */
+	IndexedModule get(String deploymentId) {
+
+		IndexedModule found = this.root.module;
+		Node node = this.root;
+
+		for (int i = 0; i < deploymentId.length(); i++) {
+			node = node.child(deploymentId.charAt(i));
+			if (node == null) {
+				break;
+			}
+			if (node.module != null) {
+				found = node.module;
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * @param deploymentId a module's name plus its namespace
+	 * @return the details of the module the deployment id belongs to
+	 */
+	Optional<ModuleDetails> lookup(String deploymentId) {
+
+		final IndexedModule module = get(deploymentId);
+		return (module != null) ? module.lookup : Optional.empty();
+	}
+
+	/**
+	 * @return every module, in the order they were configured
+	 */
+	List<IndexedModule> getModules() {
+		return this.modules;
+	}
+
+	/**
+	 * Merge a module's properties and patterns with the top level ones, whether or not it's one of the configured
+	 * modules.
+	 */
+	IndexedModule index(ModuleDetails details) {
+
+		final Map<String, String> properties = new LinkedHashMap<>(this.properties);
+		properties.putAll(details.getProperties());
+
+		final Map<String, String> patterns = new LinkedHashMap<>(this.patterns);
+		patterns.putAll(details.getPatterns());
+
+		return new IndexedModule(details, properties, patterns);
+	}
+
+	/**
+	 * A module along with its merged properties and patterns.
+	 */
+	static class IndexedModule {
+
+		private final ModuleDetails details;
+		private final Optional<ModuleDetails> lookup;
+		private final Map<String, String> properties;
+		private final Map<String, String> patterns;
+
+		private IndexedModule(ModuleDetails details, Map<String, String> properties, Map<String, String> patterns) {
+			this.details = details;
+			this.lookup = Optional.of(details);
+			this.properties = Collections.unmodifiableMap(properties);
+			this.patterns = Collections.unmodifiableMap(patterns);
+		}
+
+		ModuleDetails getDetails() {
+			return this.details;
+		}
+
+		String getName() {
+			return this.details.getName();
+		}
+
+		/**
+		 * @return the top level properties, overridden by the module's own
+		 */
+		Map<String, String> getProperties() {
+			return this.properties;
+		}
+
+		/**
+		 * @return the top level patterns, overridden by the module's own
+		 */
+		Map<String, String> getPatterns() {
+			return this.patterns;
+		}
+
+		/**
+		 * @param deploymentId one of this module's deployment ids
+		 * @return the namespace part of the deployment id
+		 */
+		String namespaceOf(String deploymentId) {
+			return deploymentId.substring(this.details.getName().length());
+		}
+	}
+
+	/**
+	 * One character of a module name, with the characters that can follow it kept sorted for a binary search.
+	 */
+	private static class Node {
+
+		private static final char[] NO_KEYS = new char[0];
+		private static final Node[] NO_CHILDREN = new Node[0];
+
+		final IndexedModule module;
+		final char[] keys;
+		final Node[] children;
+
+		private Node(IndexedModule module, char[] keys, Node[] children) {
+			this.module = module;
+			this.keys = keys;
+			this.children = children;
+		}
+
+		Node child(char key) {
+
+			final int index = Arrays.binarySearch(this.keys, key);
+			return (index >= 0) ? this.children[index] : null;
+		}
+
+		/**
+		 * Build the node for the given depth from the modules whose names share everything before it.
+		 */
+		static Node build(Map<String, IndexedModule> modules, int depth) {
+
+			IndexedModule module = null;
+			final TreeMap<Character, Map<String, IndexedModule>> byKey = new TreeMap<>();
+
+			for (Map.Entry<String, IndexedModule> entry : modules.entrySet()) {
+				if (entry.getKey().length() == depth) {
+					module = entry.getValue();
+				} else {
+					byKey.computeIfAbsent(entry.getKey().charAt(depth), key -> new HashMap<>()).put(entry.getKey(), entry.getValue());
+				}
+			}
+
+			if (byKey.isEmpty()) {
+				return new Node(module, NO_KEYS, NO_CHILDREN);
+			}
+
+			final char[] keys = new char[byKey.size()];
+			final Node[] children = new Node[byKey.size()];
+			int i = 0;
+			for (Map.Entry<Character, Map<String, IndexedModule>> entry : byKey.entrySet()) {
+				keys[i] = entry.getKey();
+				children[i] = build(entry.getValue(), depth + 1);
+				i++;
+			}
+
+			return new Node(module, keys, children);
+		}
+	}
+
+}
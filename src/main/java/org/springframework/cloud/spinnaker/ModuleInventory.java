@@ -0,0 +1,134 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.cloudfoundry.operations.applications.ApplicationSummary;
+
+import org.springframework.cloud.deployer.spi.app.AppStatus;
+
+/**
+ * Every namespace of modules deployed to a space, kept up to date from one list of the space's applications at a time.
+ *
+ * Only applications that are new, or whose summary changed since the last list, are looked up in detail. Those that
+ * couldn't be looked up are reported as unknown and tried again next time. A target nobody has asked about for longer
+ * than the idle timeout is forgotten.
+ *
+ * @author Greg Turnquist
+ */
+class ModuleInventory {
+
+	private final Function<String, Optional<ModuleDetails>> moduleLookup;
+
+	private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+	private final long idleTimeout;
+
+	/**
+	 * @param moduleLookup finds the module an application name belongs to
+	 * @param idleTimeout how long (in milliseconds) to keep a target that isn't updated
+	 */
+	ModuleInventory(Function<String, Optional<ModuleDetails>> moduleLookup, long idleTimeout) {
+		this.moduleLookup = moduleLookup;
+		this.idleTimeout = idleTimeout;
+	}
+
+	/**
+	 * Bring a target's inventory up to date.
+	 *
+	 * @param target identifies the space (and who's looking at it)
+	 * @param applications every application currently in the space
+	 * @param loader looks up the {@link AppStatus} of the given applications, leaving out any it couldn't
+	 * @return each namespace's statuses, keyed by namespace
+	 */
+	Map<String, List<AppStatus>> update(String target, Collection<ApplicationSummary> applications,
+										Function<Collection<String>, Map<String, AppStatus>> loader) {
+
+		final long now = System.currentTimeMillis();
+		this.snapshots.values().removeIf(idle -> now - idle.lastUpdate > this.idleTimeout);
+
+		final Snapshot snapshot = this.snapshots.computeIfAbsent(target, key -> new Snapshot());
+		snapshot.lastUpdate = now;
+
+		synchronized (snapshot) {
+
+			final Map<String, String> fingerprints = new HashMap<>();
+			final Map<String, String> namespaces = new TreeMap<>();
+
+			for (ApplicationSummary application : applications) {
+				this.moduleLookup.apply(application.getName()).ifPresent(details -> {
+					fingerprints.put(application.getName(), fingerprint(application));
+					namespaces.put(application.getName(), application.getName().substring(details.getName().length()));
+				});
+			}
+
+			snapshot.fingerprints.keySet().retainAll(fingerprints.keySet());
+			snapshot.statuses.keySet().retainAll(fingerprints.keySet());
+
+			final List<String> changed = fingerprints.entrySet().stream()
+				.filter(entry -> !entry.getValue().equals(snapshot.fingerprints.get(entry.getKey())))
+				.map(Map.Entry::getKey)
+				.collect(Collectors.toList());
+
+			if (!changed.isEmpty()) {
+				changed.forEach(snapshot.fingerprints::remove);
+				loader.apply(changed).forEach((name, status) -> {
+					snapshot.statuses.put(name, status);
+					snapshot.fingerprints.put(name, fingerprints.get(name));
+				});
+			}
+
+			return namespaces.entrySet().stream()
+				.collect(Collectors.groupingBy(Map.Entry::getValue, TreeMap::new, Collectors.mapping(
+					entry -> snapshot.statuses.getOrDefault(entry.getKey(), AppStatus.of(entry.getKey()).build()),
+					Collectors.toList())));
+		}
+	}
+
+	/**
+	 * @return how many targets are being kept track of
+	 */
+	int size() {
+		return this.snapshots.size();
+	}
+
+	/**
+	 * Reduce an {@link ApplicationSummary} to what changes when its instances do.
+	 */
+	private static String fingerprint(ApplicationSummary application) {
+		return application.getId() + " " + application.getRequestedState() + " " + application.getRunningInstances() + "/" + application.getInstances();
+	}
+
+	/**
+	 * What was last seen of one target.
+	 */
+	private static class Snapshot {
+
+		final Map<String, String> fingerprints = new HashMap<>();
+		final Map<String, AppStatus> statuses = new HashMap<>();
+		volatile long lastUpdate = System.currentTimeMillis();
+	}
+
+}
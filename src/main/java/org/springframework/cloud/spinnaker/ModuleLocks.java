@@ -0,0 +1,82 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Striped locks that keep two deployments of the same module (in the same target and namespace) from running at the
+ * same time, while deployments of different modules go ahead side by side.
+ *
+ * @author Greg Turnquist
+ */
+class ModuleLocks {
+
+	private final ReentrantLock[] stripes;
+
+	ModuleLocks(int stripes) {
+
+		this.stripes = new ReentrantLock[Math.max(1, stripes)];
+		for (int i = 0; i < this.stripes.length; i++) {
+			this.stripes[i] = new ReentrantLock();
+		}
+	}
+
+	/**
+	 * Run something while holding a module's lock.
+	 *
+	 * @param api
+	 * @param org
+	 * @param space
+	 * @param deploymentId module name plus namespace
+	 * @param stages told when having to wait on someone else
+	 * @param action what to do once the lock is held
+	 */
+	<E extends Exception> void run(String api, String org, String space, String deploymentId, Consumer<String> stages,
+								   Action<E> action) throws E {
+
+		final ReentrantLock lock = lockFor(api + ":" + org + ":" + space + ":" + deploymentId);
+
+		if (!lock.tryLock()) {
+			stages.accept("waiting for another deployment of " + deploymentId);
+			lock.lock();
+		}
+
+		try {
+			action.run();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	ReentrantLock lockFor(String key) {
+
+		int hash = key.hashCode();
+		hash ^= (hash >>> 16);
+		return this.stripes[Math.floorMod(hash, this.stripes.length)];
+	}
+
+	/**
+	 * Work done while holding a lock.
+	 */
+	@FunctionalInterface
+	interface Action<E extends Exception> {
+
+		void run() throws E;
+	}
+
+}
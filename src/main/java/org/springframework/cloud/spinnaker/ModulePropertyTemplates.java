@@ -0,0 +1,232 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The properties and patterns of every module, parsed once into {@link Template}s so that deploying a module only
+ * has to fill in the blanks.
+ *
+ * A placeholder such as {@literal ${services.orca.baseUrl}} is resolved, in order, against:
+ * <ol>
+ *     <li>{@literal module}, the name of the module being deployed</li>
+ *     <li>the patterns (module-specific ones overriding the top level ones)</li>
+ *     <li>the data submitted with the deployment</li>
+ *     <li>the properties (module-specific ones overriding the top level ones)</li>
+ * </ol>
+ * Patterns and properties may themselves contain placeholders, which are resolved the same way regardless of the
+ * order they were declared in. Placeholders that can't be resolved are left as is, for the module itself to resolve
+ * when it starts up.
+ *
+ * @author Greg Turnquist
+ */
+class ModulePropertyTemplates {
+
+	static final String MODULE_PLACEHOLDER = "module";
+
+	private final ModuleIndex moduleIndex;
+
+	private final Map<String, CompiledModule> modules = new HashMap<>();
+
+	ModulePropertyTemplates(SpinnakerConfiguration spinnakerConfiguration) {
+		this(new ModuleIndex(spinnakerConfiguration));
+	}
+
+	ModulePropertyTemplates(ModuleIndex moduleIndex) {
+
+		this.moduleIndex = moduleIndex;
+
+		moduleIndex.getModules().forEach(module -> this.modules.put(module.getName(), new CompiledModule(module)));
+	}
+
+	/**
+	 * Merge top level properties and module-specific ones, fill in their placeholders, and then lay the
+	 * {@literal data} on top.
+	 *
+	 * @param details
+	 * @param data
+	 * @return the final set of properties to deploy the module with
+	 * @throws IllegalStateException if placeholders refer to each other in a cycle
+	 */
+	Map<String, String> resolve(ModuleDetails details, Map<String, String> data) {
+
+		final CompiledModule module = this.modules.containsKey(details.getName())
+			? this.modules.get(details.getName())
+			: new CompiledModule(this.moduleIndex.index(details));
+
+		final Resolution resolution = new Resolution(module, data);
+
+		final Map<String, String> properties = new HashMap<>();
+		module.properties.forEach((key, template) -> properties.put(key, resolution.render(template)));
+		properties.putAll(data);
+
+		return properties;
+	}
+
+	/**
+	 * A module's merged properties and patterns, already parsed.
+	 */
+	private static class CompiledModule {
+
+		final String name;
+		final Map<String, Template> properties = new LinkedHashMap<>();
+		final Map<String, Template> patterns = new HashMap<>();
+
+		CompiledModule(ModuleIndex.IndexedModule module) {
+
+			this.name = module.getName();
+
+			module.getProperties().forEach((key, value) -> this.properties.put(key, Template.parse(value)));
+			module.getPatterns().forEach((key, value) -> this.patterns.put(key, Template.parse(value)));
+		}
+	}
+
+	/**
+	 * A single pass of filling in placeholders for one deployment. Every placeholder name is resolved at most once.
+	 */
+	private static class Resolution {
+
+		private final CompiledModule module;
+		private final Map<String, String> data;
+
+		private final Map<String, String> resolved = new HashMap<>();
+		private final Set<String> resolving = new LinkedHashSet<>();
+
+		Resolution(CompiledModule module, Map<String, String> data) {
+			this.module = module;
+			this.data = data;
+		}
+
+		String render(Template template) {
+
+			if (template.isLiteral()) {
+				return template.text;
+			}
+
+			final StringBuilder rendered = new StringBuilder(template.text.length());
+			for (Template.Segment segment : template.segments) {
+				if (segment.placeholder) {
+					final String value = lookup(segment.text);
+					rendered.append(value != null ? value : Template.PREFIX + segment.text + Template.SUFFIX);
+				} else {
+					rendered.append(segment.text);
+				}
+			}
+			return rendered.toString();
+		}
+
+		private String lookup(String name) {
+
+			if (this.resolved.containsKey(name)) {
+				return this.resolved.get(name);
+			}
+
+			if (!this.resolving.add(name)) {
+				throw new IllegalStateException("Circular placeholder reference in module '" + this.module.name + "': "
+					+ String.join(" -> ", this.resolving) + " -> " + name);
+			}
+
+			try {
+				final String value;
+				if (MODULE_PLACEHOLDER.equals(name)) {
+					value = this.module.name;
+				} else if (this.module.patterns.containsKey(name)) {
+					value = render(this.module.patterns.get(name));
+				} else if (this.data.containsKey(name)) {
+					value = this.data.get(name);
+				} else if (this.module.properties.containsKey(name)) {
+					value = render(this.module.properties.get(name));
+				} else {
+					value = null;
+				}
+
+				this.resolved.put(name, value);
+				return value;
+			} finally {
+				this.resolving.remove(name);
+			}
+		}
+	}
+
+	/**
+	 * A value split up into literal text and {@literal ${...}} placeholders.
+	 */
+	static class Template {
+
+		static final String PREFIX = "${";
+		static final String SUFFIX = "}";
+
+		final String text;
+		final List<Segment> segments;
+
+		private Template(String text, List<Segment> segments) {
+			this.text = text;
+			this.segments = segments;
+		}
+
+		static Template parse(String text) {
+
+			if (text == null || !text.contains(PREFIX)) {
+				return new Template(text, Collections.emptyList());
+			}
+
+			final List<Segment> segments = new ArrayList<>();
+			int position = 0;
+
+			while (position < text.length()) {
+				final int start = text.indexOf(PREFIX, position);
+				final int end = (start == -1) ? -1 : text.indexOf(SUFFIX, start + PREFIX.length());
+
+				if (start == -1 || end == -1) {
+					segments.add(new Segment(text.substring(position), false));
+					break;
+				}
+
+				if (start > position) {
+					segments.add(new Segment(text.substring(position, start), false));
+				}
+				segments.add(new Segment(text.substring(start + PREFIX.length(), end), true));
+				position = end + SUFFIX.length();
+			}
+
+			return new Template(text, Collections.unmodifiableList(segments));
+		}
+
+		boolean isLiteral() {
+			return this.segments.isEmpty();
+		}
+
+		static class Segment {
+
+			final String text;
+			final boolean placeholder;
+
+			Segment(String text, boolean placeholder) {
+				this.text = text;
+				this.placeholder = placeholder;
+			}
+		}
+	}
+
+}
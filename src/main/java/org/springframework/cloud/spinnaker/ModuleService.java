@@ -15,42 +15,67 @@
  */
 package org.springframework.cloud.spinnaker;
 
-import static java.util.stream.Stream.concat;
-
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.Charset;
-import java.util.AbstractMap;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
-import java.util.jar.Attributes;
-import java.util.jar.JarEntry;
-import java.util.jar.JarOutputStream;
-import java.util.jar.Manifest;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.cloudfoundry.client.CloudFoundryClient;
+import org.cloudfoundry.client.v2.applications.CopyApplicationRequest;
+import org.cloudfoundry.client.v2.applications.CopyApplicationResponse;
+import org.cloudfoundry.operations.CloudFoundryOperations;
+import org.cloudfoundry.operations.applications.ApplicationDetail;
+import org.cloudfoundry.operations.applications.ApplicationSummary;
+import org.cloudfoundry.operations.applications.GetApplicationEnvironmentsRequest;
+import org.cloudfoundry.operations.applications.GetApplicationRequest;
+import org.cloudfoundry.operations.applications.RestageApplicationRequest;
+import org.cloudfoundry.operations.applications.RestartApplicationRequest;
+import org.cloudfoundry.operations.applications.SetEnvironmentVariableApplicationRequest;
+import org.cloudfoundry.operations.applications.UnsetEnvironmentVariableApplicationRequest;
+import org.cloudfoundry.util.JobUtils;
+import org.reactivestreams.Publisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.springframework.beans.BeanUtils;
 import org.springframework.cloud.deployer.spi.app.AppStatus;
 import org.springframework.cloud.deployer.spi.cloudfoundry.CloudFoundryAppDeployer;
+import org.springframework.cloud.deployer.spi.cloudfoundry.CloudFoundryAppInstanceStatus;
 import org.springframework.cloud.deployer.spi.cloudfoundry.CloudFoundryDeployerProperties;
 import org.springframework.cloud.deployer.spi.core.AppDefinition;
 import org.springframework.cloud.deployer.spi.core.AppDeploymentRequest;
-import org.springframework.context.ApplicationContext;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
-import org.springframework.security.util.InMemoryResource;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.stereotype.Service;
-import org.springframework.util.Assert;
-import org.springframework.util.StreamUtils;
 import org.springframework.util.StringUtils;
 
 /**
@@ -66,29 +91,437 @@ public class ModuleService {
 	public static final String DEFAULT_DOMAIN = "cfapps.io"; // PWS
 	public static final String DEFAULT_PRIMARY_ACCOUNT = "prod";
 
+	/**
+	 * Environment variable each deployed application is tagged with, holding a digest of its artifact.
+	 */
+	public static final String ARTIFACT_DIGEST = "SPINNAKER_ARTIFACT_DIGEST";
+
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
 	private final SpinnakerConfiguration spinnakerConfiguration;
 
 	private final CloudFoundryAppDeployerFactory appDeployerFactory;
 
-	private final ApplicationContext ctx;
+	private final ModuleArtifactIndex artifactIndex;
+
+	private final Executor statusExecutor;
+
+	private final ModuleStatusCache statusCache;
+
+	private final ModuleIndex moduleIndex;
+
+	private final ModulePropertyTemplates propertyTemplates;
+
+	private final DeckArtifactCache deckArtifactCache;
+
+	private final ModuleDependencyGraph dependencyGraph;
+
+	private final Executor deployExecutor;
 
-	public ModuleService(SpinnakerConfiguration spinnakerConfiguration, CloudFoundryAppDeployerFactory appDeployerFactory, ApplicationContext ctx) {
+	private final ModuleInventory inventory;
+
+	private final ModuleLocks locks;
+
+	private final TaskScheduler timeoutScheduler;
+
+	private final DeployMetrics metrics;
+
+	private final Retries retries;
+
+	public ModuleService(SpinnakerConfiguration spinnakerConfiguration, CloudFoundryAppDeployerFactory appDeployerFactory, ModuleArtifactIndex artifactIndex,
+						 DeckArtifactCache deckArtifactCache, Executor statusExecutor, ModuleStatusCache statusCache, Executor deployExecutor,
+						 TaskScheduler timeoutScheduler, DeployMetrics metrics) {
 
 		this.spinnakerConfiguration = spinnakerConfiguration;
 		this.appDeployerFactory = appDeployerFactory;
-		this.ctx = ctx;
+		this.artifactIndex = artifactIndex;
+		this.deckArtifactCache = deckArtifactCache;
+		this.statusExecutor = statusExecutor;
+		this.statusCache = statusCache;
+		this.moduleIndex = new ModuleIndex(spinnakerConfiguration);
+		this.propertyTemplates = new ModulePropertyTemplates(moduleIndex);
+		this.dependencyGraph = new ModuleDependencyGraph(spinnakerConfiguration);
+		this.deployExecutor = deployExecutor;
+		this.inventory = new ModuleInventory(this::lookupModule, spinnakerConfiguration.getStatus().getInventoryIdleTimeout());
+		this.locks = new ModuleLocks(spinnakerConfiguration.getDeploy().getLockStripes());
+		this.timeoutScheduler = timeoutScheduler;
+		this.metrics = metrics;
+		this.retries = new Retries(spinnakerConfiguration.getRetry(), timeoutScheduler);
 	}
 
 	/**
-	 * Look up the status of all modules
+	 * Look up the status of all modules. The space's applications are listed once, and only the modules found
+	 * among them are looked up in detail, each one concurrently, so the overall time tracks the slowest module. If
+	 * the applications can't be listed, every module is looked up on its own instead. A module that doesn't answer
+	 * within {@link SpinnakerConfiguration.Status#getTimeout()}, or that still fails after being retried (see
+	 * {@link Retries}), is reported with an unknown status instead of holding up or failing the rest. The target's
+	 * client is held on to until every lookup is done, including those nobody waits on anymore.
 	 *
 	 * @return a {@link Stream} of {@link AppStatus}'s
 	 */
 	public Stream<AppStatus> getStatuses(String api, String org, String space, String email, String password, String namespace) {
 
-		return spinnakerConfiguration.getModules().stream()
-			.map(ModuleDetails::getName)
-			.map(name -> appDeployerFactory.getObject(api, org, space, email, password, namespace).status(name + namespace));
+		metrics.statusCalled();
+
+		final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(spinnakerConfiguration.getStatus().getTimeout());
+
+		final List<String> deploymentIds = moduleIndex.getModules().stream()
+			.map(module -> module.getName() + namespace)
+			.collect(Collectors.toList());
+
+		final Runnable release = appDeployerFactory.hold(api, email, password);
+		final List<CompletableFuture<?>> calls = new ArrayList<>();
+		final Map<String, CompletableFuture<AppStatus>> lookups = new LinkedHashMap<>();
+
+		try {
+			final CloudFoundryOperations operations = appDeployerFactory.getOperations(api, org, space, email, password, namespace);
+			final Optional<Set<String>> deployed = findDeployedApplications(operations, deploymentIds, deadline, calls);
+
+			if (deployed.isPresent()) {
+				deploymentIds.forEach(deploymentId -> lookups.put(deploymentId,
+					CompletableFuture.supplyAsync(() -> statusCache.get(api, org, space, email, password, deploymentId, () -> deployed.get().contains(deploymentId)
+						? getApplicationStatus(operations, api, deploymentId)
+						: AppStatus.of(deploymentId).build()), statusExecutor)));
+			} else {
+				final CloudFoundryAppDeployer appDeployer = appDeployerFactory.getObject(api, org, space, email, password, namespace);
+				deploymentIds.forEach(deploymentId -> lookups.put(deploymentId,
+					CompletableFuture.supplyAsync(() -> statusCache.get(api, org, space, email, password, deploymentId,
+						() -> retries.call("the status of " + deploymentId, () -> appDeployer.status(deploymentId))), statusExecutor)));
+			}
+		} finally {
+			calls.addAll(lookups.values());
+			releaseWhenDone(release, allOf(calls));
+		}
+
+		return lookups.entrySet().stream()
+			.map(lookup -> awaitStatus(lookup.getKey(), lookup.getValue(), deadline))
+			.collect(Collectors.toList())
+			.stream();
+	}
+
+	/**
+	 * Look up the status of all modules the same way as {@link #getStatuses}, without holding up the calling thread
+	 * while Cloud Foundry answers. Only if the applications can't be listed are the modules looked up one by one on
+	 * the status executor, since {@link CloudFoundryAppDeployer#status(String)} blocks.
+	 *
+	 * @return the {@link AppStatus}'s, once every module has answered or timed out
+	 */
+	public CompletableFuture<List<AppStatus>> getStatusesAsync(String api, String org, String space, String email, String password, String namespace) {
+
+		final long deadline = System.currentTimeMillis() + spinnakerConfiguration.getStatus().getTimeout();
+
+		final List<String> deploymentIds = moduleIndex.getModules().stream()
+			.map(module -> module.getName() + namespace)
+			.collect(Collectors.toList());
+
+		final Runnable release = appDeployerFactory.hold(api, email, password);
+		final CloudFoundryOperations operations = getOperations(release, api, org, space, email, password, namespace);
+		if (operations == null) {
+			release.run();
+			return CompletableFuture.supplyAsync(() -> getStatuses(api, org, space, email, password, namespace).collect(Collectors.toList()), statusExecutor);
+		}
+
+		metrics.statusCalled();
+
+		final CompletableFuture<Map<String, CompletableFuture<AppStatus>>> lookups = retries.callAsync("listing applications", () -> Publishers.collect(operations.applications().list()))
+			.thenApply(applications -> {
+				final Set<String> deployed = applications.stream()
+					.map(ApplicationSummary::getName)
+					.filter(deploymentIds::contains)
+					.collect(Collectors.toSet());
+
+				final Map<String, CompletableFuture<AppStatus>> started = new LinkedHashMap<>();
+				deploymentIds.forEach(deploymentId -> started.put(deploymentId, statusCache.getAsync(api, org, space, email, password, deploymentId, () -> deployed.contains(deploymentId)
+					? lookUpApplicationStatus(operations, api, deploymentId).exceptionally(e -> unknownStatus(deploymentId, e))
+					: CompletableFuture.completedFuture(AppStatus.of(deploymentId).build()))));
+				return started;
+			});
+
+		releaseWhenDone(release, lookups.thenCompose(started -> allOf(started.values())));
+
+		return lookups
+			.thenCompose(started -> {
+				final List<CompletableFuture<AppStatus>> statuses = started.entrySet().stream()
+					.map(lookup -> withinDeadline(lookup.getKey(), lookup.getValue(), deadline))
+					.collect(Collectors.toList());
+
+				return allOf(statuses)
+					.thenApply(done -> statuses.stream()
+						.map(CompletableFuture::join)
+						.collect(Collectors.toList()));
+			})
+			.exceptionally(e -> {
+				lookupFailed(e);
+				log.warn("Unable to list applications, reporting every module as unknown", e);
+				return deploymentIds.stream()
+					.map(deploymentId -> AppStatus.of(deploymentId).build())
+					.collect(Collectors.toList());
+			});
+	}
+
+	/**
+	 * Look up a single module's {@link AppStatus} without holding up the calling thread.
+	 *
+	 * @param name
+	 * @return the {@link AppStatus} of the module, once Cloud Foundry answers
+	 */
+	public CompletableFuture<AppStatus> getStatusAsync(String name, String api, String org, String space, String email, String password, String namespace) {
+
+		final String deploymentId = lookupModule(name)
+			.map(details -> details.getName() + namespace)
+			.orElseThrow(handleNonExistentModule(name));
+
+		final Runnable release = appDeployerFactory.hold(api, email, password);
+		final CloudFoundryOperations operations = getOperations(release, api, org, space, email, password, namespace);
+		if (operations == null) {
+			release.run();
+			return CompletableFuture.supplyAsync(() -> getStatus(name, api, org, space, email, password, namespace), statusExecutor);
+		}
+
+		metrics.statusCalled();
+
+		final CompletableFuture<AppStatus> lookup = statusCache.getAsync(api, org, space, email, password, deploymentId, () -> lookUpApplicationStatus(operations, api, deploymentId)
+			.exceptionally(e -> unknownStatus(deploymentId, e)));
+		releaseWhenDone(release, lookup);
+
+		return withinDeadline(deploymentId, lookup, System.currentTimeMillis() + spinnakerConfiguration.getStatus().getTimeout());
+	}
+
+	/**
+	 * Get the {@link CloudFoundryOperations} for a target whose client is already held, letting go of it if that fails.
+	 */
+	private CloudFoundryOperations getOperations(Runnable release, String api, String org, String space, String email, String password, String namespace) {
+
+		try {
+			return appDeployerFactory.getOperations(api, org, space, email, password, namespace);
+		} catch (RuntimeException e) {
+			release.run();
+			throw e;
+		}
+	}
+
+	/**
+	 * Give back a client held with {@link CloudFoundryAppDeployerFactory#hold} once the calls made with it are done,
+	 * whether or not anybody still waits on them.
+	 */
+	private static void releaseWhenDone(Runnable release, CompletableFuture<?> calls) {
+		calls.whenComplete((done, e) -> release.run());
+	}
+
+	/**
+	 * @return a future that completes once every one of the given futures has, however they did
+	 */
+	private static CompletableFuture<Void> allOf(Collection<? extends CompletableFuture<?>> futures) {
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()]));
+	}
+
+	/**
+	 * Report an unknown status if a module hasn't answered by the deadline, the same way {@link #awaitStatus} does,
+	 * but with a timer instead of a waiting thread.
+	 *
+	 * @param deadline in terms of {@link System#currentTimeMillis()}
+	 */
+	private CompletableFuture<AppStatus> withinDeadline(String deploymentId, CompletableFuture<AppStatus> status, long deadline) {
+
+		if (status.isDone()) {
+			return status;
+		}
+
+		final CompletableFuture<AppStatus> result = new CompletableFuture<>();
+		final ScheduledFuture<?> timeout = timeoutScheduler.schedule(() -> {
+			if (result.complete(AppStatus.of(deploymentId).build())) {
+				log.warn("Timed out looking up the status of " + deploymentId);
+			}
+		}, new Date(deadline));
+
+		status.whenComplete((appStatus, e) -> {
+			timeout.cancel(false);
+			if (e != null) {
+				result.completeExceptionally(e);
+			} else {
+				result.complete(appStatus);
+			}
+		});
+
+		return result;
+	}
+
+	/**
+	 * List the space's applications in one go, keeping the names of those that belong to the given deployment ids.
+	 *
+	 * @param calls where to keep track of the listing, which may carry on past the deadline
+	 * @return the deployed applications, or {@link Optional#empty()} if they couldn't be listed
+	 */
+	private Optional<Set<String>> findDeployedApplications(CloudFoundryOperations operations, Collection<String> deploymentIds, long deadline,
+														   Collection<CompletableFuture<?>> calls) {
+
+		if (operations == null) {
+			return Optional.empty();
+		}
+
+		final CompletableFuture<List<ApplicationSummary>> listing = retries.callAsync("listing applications", () -> Publishers.collect(operations.applications().list()));
+		calls.add(listing);
+
+		try {
+			return Optional.of(listing
+				.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS).stream()
+				.map(ApplicationSummary::getName)
+				.filter(deploymentIds::contains)
+				.collect(Collectors.toSet()));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return Optional.empty();
+		} catch (ExecutionException | TimeoutException e) {
+			lookupFailed(e);
+			log.warn("Unable to list applications, looking up each module instead", e);
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * Look up a deployed application's instances, reporting an unknown status if that fails.
+	 */
+	private AppStatus getApplicationStatus(CloudFoundryOperations operations, String api, String deploymentId) {
+
+		return lookUpApplicationStatus(operations, api, deploymentId)
+			.exceptionally(e -> unknownStatus(deploymentId, e))
+			.join();
+	}
+
+	/**
+	 * Look up a deployed application's instances, retrying transient failures. If hedging is turned on, a lookup
+	 * that's slower than 95% of those against the same API is sent a second time, and the first answer is kept.
+	 */
+	private CompletableFuture<AppStatus> lookUpApplicationStatus(CloudFoundryOperations operations, String api, String deploymentId) {
+
+		final String target = DeployMetrics.target(api);
+
+		return retries.callAsync("the status of " + deploymentId, () -> retries.hedge(() -> {
+			final long start = System.nanoTime();
+			return fetchApplicationStatus(operations, deploymentId).whenComplete((status, e) -> {
+				if (e == null) {
+					metrics.statusLookedUp(target, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+				}
+			});
+		}, metrics.statusLatency(target, 0.95)));
+	}
+
+	/**
+	 * Count a failed lookup against Cloud Foundry, reporting the module's status as unknown.
+	 */
+	private AppStatus unknownStatus(String deploymentId, Throwable e) {
+
+		lookupFailed(e);
+		log.debug("Unable to look up " + deploymentId + ": " + e);
+		return AppStatus.of(deploymentId).build();
+	}
+
+	/**
+	 * Count a failed lookup as rejected if the {@link ApiGuard} never let it reach Cloud Foundry, and as an error otherwise.
+	 */
+	private void lookupFailed(Throwable e) {
+
+		if (ApiGuard.isRejected(e)) {
+			metrics.cloudFoundryRejection();
+		} else {
+			metrics.cloudFoundryError();
+		}
+	}
+
+	/**
+	 * Look up a deployed application's instances, the same way {@link CloudFoundryAppDeployer#status(String)} does.
+	 */
+	private static CompletableFuture<AppStatus> fetchApplicationStatus(CloudFoundryOperations operations, String deploymentId) {
+
+		return Publishers.first(operations.applications().get(GetApplicationRequest.builder()
+			.name(deploymentId)
+			.build()))
+			.thenApply(detail -> {
+				final AppStatus.Builder builder = AppStatus.of(deploymentId);
+				int index = 0;
+				for (ApplicationDetail.InstanceDetail instance : detail.getInstanceDetails()) {
+					builder.with(new CloudFoundryAppInstanceStatus(detail, instance, index++));
+				}
+				return builder.build();
+			});
+	}
+
+	/**
+	 * Look up every namespace of modules deployed to a space the same way as {@link #getInventory}, on the status
+	 * executor rather than the calling thread.
+	 *
+	 * @return each namespace's statuses, keyed by namespace, once they've been looked up
+	 */
+	public CompletableFuture<Map<String, List<AppStatus>>> getInventoryAsync(String api, String org, String space, String email, String password) {
+		return CompletableFuture.supplyAsync(() -> getInventory(api, org, space, email, password), statusExecutor);
+	}
+
+	/**
+	 * Look up every namespace of modules deployed to a space, from one list of its applications. Between calls,
+	 * only applications that changed are looked up again (see {@link ModuleInventory}). No more than
+	 * {@link SpinnakerConfiguration.Status#getThreads()} applications are looked up at a time, however many there are.
+	 *
+	 * @return each namespace's statuses, keyed by namespace
+	 */
+	public Map<String, List<AppStatus>> getInventory(String api, String org, String space, String email, String password) {
+
+		final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(spinnakerConfiguration.getStatus().getTimeout());
+
+		final Runnable release = appDeployerFactory.hold(api, email, password);
+		final List<CompletableFuture<?>> calls = new ArrayList<>();
+
+		try {
+			final CloudFoundryOperations operations = appDeployerFactory.getOperations(api, org, space, email, password, "");
+			if (operations == null) {
+				throw new IllegalStateException("Unable to list the applications in " + org + "/" + space);
+			}
+
+			final CompletableFuture<List<ApplicationSummary>> listing = retries.callAsync("listing applications", () -> Publishers.collect(operations.applications().list()));
+			calls.add(listing);
+
+			final List<ApplicationSummary> applications;
+			try {
+				applications = listing.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while listing the applications in " + org + "/" + space, e);
+			} catch (ExecutionException | TimeoutException e) {
+				throw new IllegalStateException("Unable to list the applications in " + org + "/" + space, e);
+			}
+
+			return inventory.update(Digests.sha256(api + ":" + org + ":" + space + ":" + email), applications, names -> {
+
+				final Semaphore permits = new Semaphore(spinnakerConfiguration.getStatus().getThreads());
+				final Map<String, CompletableFuture<AppStatus>> lookups = new LinkedHashMap<>();
+
+				for (String name : names) {
+					try {
+						if (!permits.tryAcquire(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+							break; // Whatever's left is reported as unknown, and looked up next time
+						}
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						break;
+					}
+					lookups.put(name, lookUpApplicationStatus(operations, api, name).whenComplete((status, e) -> permits.release()));
+				}
+				calls.addAll(lookups.values());
+
+				final Map<String, AppStatus> statuses = new LinkedHashMap<>();
+				lookups.forEach((name, lookup) -> {
+					try {
+						statuses.put(name, lookup.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					} catch (ExecutionException | TimeoutException e) {
+						log.warn("Unable to look up the status of " + name + ": " + e);
+					}
+				});
+				return statuses;
+			});
+		} finally {
+			releaseWhenDone(release, allOf(calls));
+		}
 	}
 
 	/**
@@ -99,10 +532,19 @@ public class ModuleService {
 	 */
 	public AppStatus getStatus(String name, String api, String org, String space, String email, String password, String namespace) {
 
-		return lookupModule(name)
-			.map(details -> details.getName())
-			.map(moduleName -> appDeployerFactory.getObject(api, org, space, email, password, namespace).status(moduleName + namespace))
+		metrics.statusCalled();
+
+		final String deploymentId = lookupModule(name)
+			.map(details -> details.getName() + namespace)
 			.orElseThrow(handleNonExistentModule(name));
+
+		final Runnable release = appDeployerFactory.hold(api, email, password);
+		try {
+			return statusCache.get(api, org, space, email, password, deploymentId, () -> retries.call("the status of " + deploymentId,
+				() -> appDeployerFactory.getObject(api, org, space, email, password, namespace).status(deploymentId)));
+		} finally {
+			release.run();
+		}
 	}
 
 	/**
@@ -113,19 +555,425 @@ public class ModuleService {
 	 * @throws IOException
 	 */
 	public void deploy(String module, Map<String, String> data, String api, String org, String space, String email, String password, String namespace) throws IOException {
+		deploy(module, data, api, org, space, email, password, namespace, stage -> {});
+	}
+
+	/**
+	 * Deploy a module after finding its artifact, reporting each stage as it begins.
+	 *
+	 * @param module
+	 * @param data
+	 * @param stages told the name of each stage as it begins
+	 * @throws IOException
+	 */
+	public void deploy(String module, Map<String, String> data, String api, String org, String space, String email, String password, String namespace,
+					   Consumer<String> stages) throws IOException {
+
+		final DeployMetrics.Timing timing = metrics.start(api);
 
 		ModuleDetails details = getModuleDetails(module);
+		timing.module(details.getName()).stage("lookup");
 
-		final org.springframework.core.io.Resource artifactToDeploy = findArtifact(details, ctx, data);
-		final Map<String, String> properties = getProperties(spinnakerConfiguration, details, data);
+		stages.accept("finding artifact");
+		final ModuleArtifactIndex.IndexedArtifact artifactToDeploy = findArtifact(details, data, timing);
+		try {
+			deployArtifact(details, artifactToDeploy, data, api, org, space, email, password, namespace, stages, timing);
+		} finally {
+			releaseArtifact(details, artifactToDeploy);
+		}
+	}
 
-		log.debug("Uploading " + artifactToDeploy + "...");
+	private void deployArtifact(ModuleDetails details, ModuleArtifactIndex.IndexedArtifact artifactToDeploy, Map<String, String> data,
+								String api, String org, String space, String email, String password, String namespace,
+								Consumer<String> stages, DeployMetrics.Timing timing) throws IOException {
 
-		getCloudFoundryAppDeployer(details, api, org, space, email, password, namespace).deploy(new AppDeploymentRequest(
-				new AppDefinition(details.getName() + namespace, Collections.emptyMap()),
-				artifactToDeploy,
-				properties
-		));
+		stages.accept("resolving properties");
+		final Map<String, String> properties = getProperties(details, data);
+		timing.stage("properties");
+
+		final String deploymentId = details.getName() + namespace;
+		final String artifactDigest = artifactDigest(details, artifactToDeploy);
+
+		deploying(api, org, space, email, password, deploymentId, stages, () -> {
+
+			timing.stage("lock");
+
+			final CloudFoundryOperations operations = appDeployerFactory.getOperations(api, org, space, email, password, namespace);
+
+			statusCache.invalidate(api, org, space, deploymentId);
+
+			try {
+				stages.accept("checking deployed artifact");
+				final boolean unchanged = operations != null && artifactDigest.equals(getDeployedArtifactDigest(operations, deploymentId));
+				timing.stage("check");
+
+				if (unchanged) {
+					log.debug(deploymentId + " already runs " + artifactToDeploy.getResource() + ", only updating its environment...");
+					stages.accept("updating environment");
+					updateEnvironment(operations, deploymentId, properties);
+					timing.stage("environment");
+					stages.accept("restarting");
+					await(operations.applications().restart(RestartApplicationRequest.builder()
+						.name(deploymentId)
+						.build()));
+					timing.stage("start");
+					return;
+				}
+
+				if (operations != null) {
+					// Until the new bits are in place, the app must not claim to run them
+					setDeployedArtifactDigest(operations, deploymentId, null);
+				}
+
+				log.debug("Uploading " + artifactToDeploy.getResource() + "...");
+				stages.accept("deploying");
+
+				getCloudFoundryAppDeployer(details, api, org, space, email, password, namespace).deploy(new AppDeploymentRequest(
+						new AppDefinition(deploymentId, Collections.emptyMap()),
+						artifactToDeploy.getResource(),
+						properties
+				));
+				timing.stage("push");
+				metrics.uploaded(artifactToDeploy.getSize());
+
+				if (operations != null) {
+					setDeployedArtifactDigest(operations, deploymentId, artifactDigest);
+				}
+			} finally {
+				statusCache.invalidate(api, org, space, deploymentId);
+			}
+		});
+	}
+
+	/**
+	 * Deploy a module to several namespaces, pushing its artifact only once. The module is deployed to the first
+	 * namespace as usual (or, should that fail, the next one, and so on). Every other namespace whose application
+	 * already exists then gets a copy of those bits, along with its own properties, and is restaged. Namespaces that
+	 * don't have the application yet, or need different bits (e.g. deck, whose settings differ per namespace), are
+	 * deployed as usual. Once the first namespace is done, the rest go side by side, up to
+	 * {@link SpinnakerConfiguration.Deploy#getParallelism()} at a time.
+	 *
+	 * @param module
+	 * @param dataByNamespace each namespace's data, as it would be handed to {@link #deploy}
+	 * @param stages told the name of each stage as it begins
+	 * @return how each namespace's deployment went, in order
+	 */
+	public List<DeploymentOutcome> deployToNamespaces(String module, Map<String, Map<String, String>> dataByNamespace,
+													  String api, String org, String space, String email, String password,
+													  Consumer<String> stages) {
+
+		final ModuleDetails details = getModuleDetails(module);
+		final Map<String, CompletableFuture<DeploymentOutcome>> deployments = new LinkedHashMap<>();
+
+		String sourceDeploymentId = null;
+
+		for (Map.Entry<String, Map<String, String>> entry : dataByNamespace.entrySet()) {
+
+			final String namespace = entry.getKey();
+			final Map<String, String> data = (entry.getValue() != null) ? entry.getValue() : Collections.emptyMap();
+			final String deploymentId = details.getName() + namespace;
+			final Consumer<String> namespaceStages = stage -> stages.accept(deploymentId + ": " + stage);
+
+			if (sourceDeploymentId == null) {
+				// Until some namespace has the bits, there's nothing to copy from
+				final DeploymentOutcome outcome = deployNamespace(deploymentId,
+					() -> deploy(module, data, api, org, space, email, password, namespace, namespaceStages));
+				deployments.put(namespace, CompletableFuture.completedFuture(outcome));
+				if (outcome.getState() == DeploymentOutcome.State.succeeded) {
+					sourceDeploymentId = deploymentId;
+				}
+			} else {
+				final String source = sourceDeploymentId;
+				deployments.put(namespace, CompletableFuture.supplyAsync(() -> deployNamespace(deploymentId,
+					() -> copyOrDeploy(details, data, source, api, org, space, email, password, namespace, namespaceStages)), deployExecutor));
+			}
+		}
+
+		return deployments.values().stream()
+			.map(CompletableFuture::join)
+			.collect(Collectors.toList());
+	}
+
+	private static DeploymentOutcome deployNamespace(String deploymentId, ModuleLocks.Action<IOException> deployment) {
+
+		try {
+			deployment.run();
+			return DeploymentOutcome.succeeded(deploymentId);
+		} catch (IOException | RuntimeException e) {
+			log.error("Unable to deploy " + deploymentId, e);
+			return DeploymentOutcome.failed(deploymentId, e.getMessage());
+		}
+	}
+
+	/**
+	 * Give a namespace's application a copy of another one's bits, provided they're the bits it needs. Fall back to
+	 * {@link #deploy} otherwise.
+	 */
+	private void copyOrDeploy(ModuleDetails details, Map<String, String> data, String sourceDeploymentId, String api, String org, String space,
+							  String email, String password, String namespace, Consumer<String> stages) throws IOException {
+
+		final String deploymentId = details.getName() + namespace;
+
+		deploying(api, org, space, email, password, deploymentId, stages, () -> {
+
+			final CloudFoundryOperations operations = appDeployerFactory.getOperations(api, org, space, email, password, namespace);
+			final CloudFoundryClient client = appDeployerFactory.getClient(api, org, space, email, password, namespace);
+
+			if (operations == null || client == null) {
+				deploy(details.getName(), data, api, org, space, email, password, namespace, stages);
+				return;
+			}
+
+			final DeployMetrics.Timing timing = metrics.start(api).module(details.getName());
+
+			stages.accept("finding artifact");
+			final String artifactDigest = findArtifactDigest(details, data);
+			timing.stage("artifact");
+
+			stages.accept("checking deployed artifact");
+			final String deployedDigest = getDeployedArtifactDigest(operations, deploymentId);
+			final String sourceDigest = getDeployedArtifactDigest(operations, sourceDeploymentId);
+			final Optional<String> targetId = getApplicationId(operations, deploymentId);
+			final Optional<String> sourceId = getApplicationId(operations, sourceDeploymentId);
+			timing.stage("check");
+
+			if (artifactDigest.equals(deployedDigest) || !artifactDigest.equals(sourceDigest) || !targetId.isPresent() || !sourceId.isPresent()) {
+				deploy(details.getName(), data, api, org, space, email, password, namespace, stages);
+				return;
+			}
+
+			stages.accept("resolving properties");
+			final Map<String, String> properties = getProperties(details, data);
+			timing.stage("properties");
+
+			statusCache.invalidate(api, org, space, deploymentId);
+
+			try {
+				setDeployedArtifactDigest(operations, deploymentId, null);
+
+				log.debug("Copying the bits of " + sourceDeploymentId + " to " + deploymentId + "...");
+				stages.accept("copying bits from " + sourceDeploymentId);
+				copyBits(client, sourceId.get(), targetId.get());
+				timing.stage("copy");
+
+				stages.accept("updating environment");
+				updateEnvironment(operations, deploymentId, properties);
+				timing.stage("environment");
+
+				stages.accept("restaging");
+				await(operations.applications().restage(RestageApplicationRequest.builder()
+					.name(deploymentId)
+					.build()));
+				timing.stage("staging");
+
+				setDeployedArtifactDigest(operations, deploymentId, artifactDigest);
+			} finally {
+				statusCache.invalidate(api, org, space, deploymentId);
+			}
+		});
+	}
+
+	/**
+	 * Copy one application's bits to another, waiting until Cloud Foundry is done with them.
+	 */
+	void copyBits(CloudFoundryClient client, String sourceApplicationId, String applicationId) {
+
+		final CopyApplicationResponse copy = await(client.applicationsV2().copy(CopyApplicationRequest.builder()
+			.applicationId(applicationId)
+			.sourceApplicationId(sourceApplicationId)
+			.build()));
+		await(JobUtils.waitForCompletion(client, copy));
+	}
+
+	/**
+	 * @return a digest of everything that ends up in a module's application bits
+	 */
+	static String artifactDigest(ModuleDetails details, ModuleArtifactIndex.IndexedArtifact artifact) {
+		return artifactDigest(details, artifact.getSha256());
+	}
+
+	private static String artifactDigest(ModuleDetails details, String sha256) {
+		return Digests.sha256(sha256 + ":" + details.getProperties().get("buildpack"));
+	}
+
+	/**
+	 * Work out the same digest as {@link #artifactDigest} would for the artifact {@link #findArtifact} finds, without
+	 * building (or pinning) a customized deck JAR file.
+	 */
+	private String findArtifactDigest(ModuleDetails details, Map<String, String> data) {
+
+		final ModuleArtifactIndex.IndexedArtifact artifact = artifactIndex.get(details);
+
+		return artifactDigest(details, details.getName().equals("deck")
+			? DeckArtifactCache.digest(artifact.getSha256(), settingsJsInputs(data))
+			: artifact.getSha256());
+	}
+
+	/**
+	 * @return the application's id, if it's deployed
+	 */
+	private Optional<String> getApplicationId(CloudFoundryOperations operations, String deploymentId) {
+
+		try {
+			return Optional.ofNullable(await(operations.applications().get(GetApplicationRequest.builder()
+				.name(deploymentId)
+				.build())))
+				.map(ApplicationDetail::getId);
+		} catch (IllegalStateException e) {
+			log.debug("Unable to find " + deploymentId + ": " + e.getMessage());
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * @return the digest a deployed application was tagged with, or {@literal null} if it isn't deployed or wasn't tagged
+	 */
+	private String getDeployedArtifactDigest(CloudFoundryOperations operations, String deploymentId) {
+
+		try {
+			return Publishers.first(operations.applications().getEnvironments(GetApplicationEnvironmentsRequest.builder()
+				.name(deploymentId)
+				.build()))
+				.thenApply(environments -> Optional.ofNullable(environments.getUserProvided().get(ARTIFACT_DIGEST))
+					.map(Object::toString)
+					.orElse(null))
+				.get(spinnakerConfiguration.getDeploy().getTimeout(), TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException | TimeoutException e) {
+			metrics.cloudFoundryError();
+			log.debug("Unable to find the artifact behind " + deploymentId + ": " + e);
+			return null;
+		}
+	}
+
+	/**
+	 * Tag a deployed application with the digest of its artifact, or remove the tag if the digest is {@literal null}.
+	 */
+	private void setDeployedArtifactDigest(CloudFoundryOperations operations, String deploymentId, String artifactDigest) {
+
+		try {
+			if (artifactDigest != null) {
+				await(operations.applications().setEnvironmentVariable(SetEnvironmentVariableApplicationRequest.builder()
+					.name(deploymentId)
+					.variableName(ARTIFACT_DIGEST)
+					.variableValue(artifactDigest)
+					.build()));
+			} else {
+				await(operations.applications().unsetEnvironmentVariable(UnsetEnvironmentVariableApplicationRequest.builder()
+					.name(deploymentId)
+					.variableName(ARTIFACT_DIGEST)
+					.build()));
+			}
+		} catch (IllegalStateException e) {
+			// An untagged app is simply pushed in full next time
+			log.debug("Unable to tag " + deploymentId + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Hand a module's properties to its application as {@literal SPRING_APPLICATION_JSON}.
+	 */
+	private void updateEnvironment(CloudFoundryOperations operations, String deploymentId, Map<String, String> properties) throws IOException {
+
+		await(operations.applications().setEnvironmentVariable(SetEnvironmentVariableApplicationRequest.builder()
+			.name(deploymentId)
+			.variableName("SPRING_APPLICATION_JSON")
+			.variableValue(OBJECT_MAPPER.writeValueAsString(properties))
+			.build()));
+	}
+
+	/**
+	 * Wait for a Cloud Foundry operation to finish, up to {@link SpinnakerConfiguration.Deploy#getTimeout()}.
+	 *
+	 * @return the first element the operation published, if any
+	 */
+	private <T> T await(Publisher<T> operation) {
+
+		try {
+			final List<T> elements = Publishers.collect(operation).get(spinnakerConfiguration.getDeploy().getTimeout(), TimeUnit.MILLISECONDS);
+			return elements.isEmpty() ? null : elements.get(0);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting on Cloud Foundry", e);
+		} catch (ExecutionException e) {
+			metrics.cloudFoundryError();
+			throw new IllegalStateException(e.getCause().getMessage(), e.getCause());
+		} catch (TimeoutException e) {
+			metrics.cloudFoundryError();
+			throw new IllegalStateException("Timed out waiting on Cloud Foundry", e);
+		}
+	}
+
+	/**
+	 * Deploy several modules at once. Modules are deployed in waves, each one only after the modules it refers to
+	 * (see {@link ModuleDependencyGraph}), and the modules within a wave side by side, up to
+	 * {@link SpinnakerConfiguration.Deploy#getParallelism()} at a time. A module whose dependency failed is skipped,
+	 * while the rest carry on.
+	 *
+	 * @param dataByModule each module's data, as it would be handed to {@link #deploy}
+	 * @param progress told each module's deployment id along with the name of each stage it begins
+	 * @return how each module's deployment went, in the order they were deployed
+	 */
+	public List<DeploymentOutcome> deployAll(Map<String, Map<String, String>> dataByModule, String api, String org, String space, String email, String password,
+											 String namespace, BiConsumer<String, String> progress) {
+
+		final Map<String, Map<String, String>> data = new LinkedHashMap<>();
+		dataByModule.forEach((module, moduleData) ->
+			data.put(getModuleDetails(module).getName(), (moduleData != null) ? moduleData : Collections.emptyMap()));
+
+		final List<DeploymentOutcome> outcomes = new ArrayList<>();
+		final Set<String> unavailable = new HashSet<>();
+
+		data.keySet().forEach(module -> progress.accept(module + namespace, "waiting"));
+
+		for (List<String> wave : dependencyGraph.waves(data.keySet())) {
+
+			log.debug("Deploying " + wave + "...");
+
+			final Map<String, CompletableFuture<DeploymentOutcome>> deployments = new LinkedHashMap<>();
+
+			for (String module : wave) {
+
+				final String deploymentId = module + namespace;
+				final Optional<String> failedDependency = dependencyGraph.getDependencies(module).stream()
+					.filter(unavailable::contains)
+					.findFirst();
+
+				deployments.put(module, failedDependency
+					.map(dependency -> {
+						progress.accept(deploymentId, "skipped");
+						return CompletableFuture.completedFuture(
+							DeploymentOutcome.skipped(deploymentId, "Module '" + dependency + "' did not deploy"));
+					})
+					.orElseGet(() -> {
+						progress.accept(deploymentId, "queued");
+						return CompletableFuture.supplyAsync(() -> {
+							try {
+								deploy(module, data.get(module), api, org, space, email, password, namespace,
+									stage -> progress.accept(deploymentId, stage));
+								progress.accept(deploymentId, "deployed");
+								return DeploymentOutcome.succeeded(deploymentId);
+							} catch (IOException | RuntimeException e) {
+								log.error("Unable to deploy " + deploymentId, e);
+								progress.accept(deploymentId, "failed");
+								return DeploymentOutcome.failed(deploymentId, e.getMessage());
+							}
+						}, deployExecutor);
+					}));
+			}
+
+			deployments.forEach((module, deployment) -> {
+				final DeploymentOutcome outcome = deployment.join();
+				if (outcome.getState() != DeploymentOutcome.State.succeeded) {
+					unavailable.add(module);
+				}
+				outcomes.add(outcome);
+			});
+		}
+
+		return outcomes;
 	}
 
 	/**
@@ -134,21 +982,139 @@ public class ModuleService {
 	 * @param name
 	 */
 	public void undeploy(String name, String api, String org, String space, String email, String password, String namespace) {
-		final CloudFoundryAppDeployer appDeployer = appDeployerFactory.getObject(api, org, space, email, password, namespace);
-		appDeployer.undeploy(name);
+		undeploy(name, api, org, space, email, password, namespace, stage -> {});
 	}
 
 	/**
-	 * Lookup if a module exists in the configuration settings.
+	 * Undeploy a module, reporting each stage as it begins. A module that is found not to be deployed is left alone.
 	 *
 	 * @param name
-	 * @return {@link Optional} name of the module.
+	 * @param stages told the name of each stage as it begins
+	 */
+	public void undeploy(String name, String api, String org, String space, String email, String password, String namespace, Consumer<String> stages) {
+
+		appDeployerFactory.using(api, email, password, () -> {
+			final CloudFoundryAppDeployer appDeployer = appDeployerFactory.getObject(api, org, space, email, password, namespace);
+			final CloudFoundryOperations operations = appDeployerFactory.getOperations(api, org, space, email, password, namespace);
+
+			undeploy(appDeployer, name, api, org, space, stages, () -> operations == null || isDeployed(operations, name));
+		});
+	}
+
+	/**
+	 * Undeploy every module of several namespaces side by side, up to {@link SpinnakerConfiguration.Deploy#getParallelism()}
+	 * at a time. The space's applications are listed once up front, and modules that aren't deployed are skipped. A
+	 * module that fails to undeploy doesn't stop the rest.
+	 *
+	 * @param namespaces
+	 * @param progress told each module's deployment id along with the name of each stage it begins
+	 * @return how each module's undeployment went, namespace by namespace
 	 */
-	private Optional<ModuleDetails> lookupModule(String name) {
+	public List<DeploymentOutcome> undeployAll(Collection<String> namespaces, String api, String org, String space, String email, String password,
+											   BiConsumer<String, String> progress) {
+
+		final Map<String, String> namespaceByDeploymentId = new LinkedHashMap<>();
+		namespaces.forEach(namespace -> moduleIndex.getModules()
+			.forEach(module -> namespaceByDeploymentId.put(module.getName() + namespace, namespace)));
+
+		final Runnable release = appDeployerFactory.hold(api, email, password);
+		final List<CompletableFuture<?>> calls = new ArrayList<>();
+		final Optional<Set<String>> deployed;
+		try {
+			final CloudFoundryOperations operations = appDeployerFactory.getOperations(api, org, space, email, password, "");
+			deployed = findDeployedApplications(operations, namespaceByDeploymentId.keySet(),
+				System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(spinnakerConfiguration.getDeploy().getTimeout()), calls);
+		} finally {
+			releaseWhenDone(release, allOf(calls));
+		}
 
-		return spinnakerConfiguration.getModules().stream()
-			.filter(details -> name.startsWith(details.getName()))
-			.findAny();
+		final Map<String, CompletableFuture<DeploymentOutcome>> undeployments = new LinkedHashMap<>();
+
+		namespaceByDeploymentId.forEach((deploymentId, namespace) -> {
+
+			if (deployed.isPresent() && !deployed.get().contains(deploymentId)) {
+				progress.accept(deploymentId, "not deployed");
+				undeployments.put(deploymentId, CompletableFuture.completedFuture(DeploymentOutcome.skipped(deploymentId, "Not deployed")));
+				return;
+			}
+
+			progress.accept(deploymentId, "queued");
+			undeployments.put(deploymentId, CompletableFuture.supplyAsync(() -> {
+				try {
+					appDeployerFactory.using(api, email, password, () ->
+						undeploy(appDeployerFactory.getObject(api, org, space, email, password, namespace), deploymentId, api, org, space,
+							stage -> progress.accept(deploymentId, stage), () -> true));
+					progress.accept(deploymentId, "undeployed");
+					return DeploymentOutcome.succeeded(deploymentId);
+				} catch (RuntimeException e) {
+					log.error("Unable to undeploy " + deploymentId, e);
+					progress.accept(deploymentId, "failed");
+					return DeploymentOutcome.failed(deploymentId, e.getMessage());
+				}
+			}, deployExecutor));
+		});
+
+		return undeployments.values().stream()
+			.map(CompletableFuture::join)
+			.collect(Collectors.toList());
+	}
+
+	/**
+	 * Deploy an application while holding its module's lock, keeping the target's Cloud Foundry client from being
+	 * disposed of until the deployment is done.
+	 */
+	private <E extends Exception> void deploying(String api, String org, String space, String email, String password, String deploymentId,
+												 Consumer<String> stages, ModuleLocks.Action<E> deployment) throws E {
+
+		appDeployerFactory.using(api, email, password, () -> locks.run(api, org, space, deploymentId, stages, deployment));
+	}
+
+	/**
+	 * Undeploy an application while holding its module's lock, unless it turns out not to be deployed by then.
+	 */
+	private void undeploy(CloudFoundryAppDeployer appDeployer, String name, String api, String org, String space, Consumer<String> stages,
+						  BooleanSupplier deployed) {
+
+		locks.run(api, org, space, name, stages, () -> {
+			stages.accept("undeploying");
+			try {
+				if (!deployed.getAsBoolean()) {
+					log.info(name + " is not deployed, so there is nothing to undeploy");
+					return;
+				}
+				appDeployer.undeploy(name);
+			} finally {
+				statusCache.invalidate(api, org, space, name);
+			}
+		});
+	}
+
+	/**
+	 * Look for an application among the space's applications, retrying transient failures. If it still can't be
+	 * told, it's assumed to be deployed so the deployer gets to decide.
+	 */
+	private boolean isDeployed(CloudFoundryOperations operations, String deploymentId) {
+
+		try {
+			return retries.call("looking up " + deploymentId, () -> Publishers.collect(operations.applications().list())
+				.get(spinnakerConfiguration.getDeploy().getTimeout(), TimeUnit.MILLISECONDS)).stream()
+				.anyMatch(application -> deploymentId.equals(application.getName()));
+		} catch (RuntimeException e) {
+			metrics.cloudFoundryError();
+			log.debug("Unable to tell whether " + deploymentId + " is deployed: " + e);
+			return true;
+		}
+	}
+
+	/**
+	 * Lookup if a module exists in the configuration settings. If several module names are prefixes of the given
+	 * name, the longest one wins (see {@link ModuleIndex}).
+	 *
+	 * @param name
+	 * @return {@link Optional} name of the module.
+	 */
+	Optional<ModuleDetails> lookupModule(String name) {
+		return moduleIndex.lookup(name);
 	}
 
 
@@ -158,7 +1124,7 @@ public class ModuleService {
 	 * @param module
 	 * @return
 	 */
-	private ModuleDetails getModuleDetails(String module) {
+	ModuleDetails getModuleDetails(String module) {
 
 		return lookupModule(module)
 				.map(moduleDetails -> moduleDetails)
@@ -169,20 +1135,60 @@ public class ModuleService {
 		return () -> new IllegalArgumentException("Module '" + module + "' is not managed by this system");
 	}
 
-	private Resource findArtifact(ModuleDetails details,
-						ApplicationContext ctx,
-						Map<String, String> data) throws IOException {
+	/**
+	 * Wait for a module's status until the shared deadline. If it doesn't arrive in time, or the lookup failed, give
+	 * up on it and report an unknown status so the other modules can still be shown.
+	 *
+	 * @param deploymentId
+	 * @param status
+	 * @param deadline in terms of {@link System#nanoTime()}
+	 * @return the {@link AppStatus}, or an empty one if it timed out
+	 */
+	private AppStatus awaitStatus(String deploymentId, Future<AppStatus> status, long deadline) {
+
+		try {
+			return status.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+		} catch (TimeoutException e) {
+			log.warn("Timed out looking up the status of " + deploymentId);
+			status.cancel(true);
+			return AppStatus.of(deploymentId).build();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			status.cancel(true);
+			return AppStatus.of(deploymentId).build();
+		} catch (ExecutionException e) {
+			return unknownStatus(deploymentId, e.getCause());
+		}
+	}
 
-		final String locationPattern = "classpath*:**/" + details.getArtifact() + "/**/" + details.getArtifact() + "-*.jar";
-		final org.springframework.core.io.Resource[] resources = ctx.getResources(locationPattern);
+	private ModuleArtifactIndex.IndexedArtifact findArtifact(ModuleDetails details, Map<String, String> data, DeployMetrics.Timing timing) throws IOException {
 
-		Assert.state(resources.length == 1, "Number of resources MUST be 1");
+		final ModuleArtifactIndex.IndexedArtifact artifact = artifactIndex.get(details);
+		timing.stage("artifact");
 
 		log.info("Need to also chew on " + data);
 
-		return (details.getName().equals("deck")
-					? pluginSettingsJs(resources[0], data)
-					: resources[0]);
+		if (!details.getName().equals("deck")) {
+			return artifact;
+		}
+
+		final ModuleArtifactIndex.IndexedArtifact customized = pluginSettingsJs(artifact, data);
+		timing.stage("deckRewrite");
+		return customized;
+	}
+
+	/**
+	 * Let go of an artifact found by {@link #findArtifact}, so a customized deck JAR file may be evicted from the
+	 * {@link DeckArtifactCache} again.
+	 */
+	private void releaseArtifact(ModuleDetails details, ModuleArtifactIndex.IndexedArtifact artifact) {
+
+		if (details.getName().equals("deck")) {
+			final Path customizedDeckJarFile = onFileSystem(artifact.getResource());
+			if (customizedDeckJarFile != null) {
+				deckArtifactCache.release(customizedDeckJarFile);
+			}
+		}
 	}
 
 	/**
@@ -241,121 +1247,99 @@ public class ModuleService {
 	 * @param data
 	 * @return
 	 */
-	private static Map<String, String> getProperties(SpinnakerConfiguration spinnakerConfiguration, ModuleDetails details, Map<String, String> data) {
-
-		final Map<String, String> properties = concat(
-				spinnakerConfiguration.getProperties().entrySet().stream(),
-				details.getProperties().entrySet().stream()
-		).collect(Collectors.toMap(
-				Map.Entry::getKey,
-				e -> translateTemplatedValue(spinnakerConfiguration, details, e, data),
-				(a, b) -> b));
-
-		data.entrySet().stream()
-				.forEach(entry -> properties.put(entry.getKey(), entry.getValue()));
-
-		return properties;
-	}
-
-	private static String translateTemplatedValue(SpinnakerConfiguration spinnakerConfiguration, ModuleDetails details, Map.Entry<String, String> e, Map<String, String> data) {
-		return preprocessPatterns(spinnakerConfiguration, details, data)
-				.reduce(new AbstractMap.SimpleEntry<>(e.getKey(), e.getValue()), (accumEntry, patternEntry) -> {
-					String newValue = accumEntry.getValue().replace("${" + patternEntry.getKey() + "}", patternEntry.getValue());
-					accumEntry.setValue(newValue);
-					return accumEntry;
-				})
-				.getValue()
-				.replace("${module}", details.getName());
-	}
-
-	private static Stream<Map.Entry<String, String>> preprocessPatterns(SpinnakerConfiguration spinnakerConfiguration, ModuleDetails details, Map<String, String> data) {
-		return
-			concat(spinnakerConfiguration.getPatterns().entrySet().stream(), details.getPatterns().entrySet().stream())
-				.map(patternEntry -> {
-					String value = data.entrySet().stream()
-							.reduce(new AbstractMap.SimpleEntry<>(patternEntry.getKey(), patternEntry.getValue()), (accumEntry, dataEntry) -> {
-								String newValue = accumEntry.getValue().replace("${" + dataEntry.getKey() + "}", dataEntry.getValue());
-								accumEntry.setValue(newValue);
-								return accumEntry;
-							})
-							.getValue();
-					return new AbstractMap.SimpleEntry<>(patternEntry.getKey(), value);
-				});
+	private Map<String, String> getProperties(ModuleDetails details, Map<String, String> data) {
+		return propertyTemplates.resolve(details, data);
+	}
 
+	/**
+	 * Customize deck's {@literal settings.js}. Unchanged entries are copied over as is, straight from one file to
+	 * another, so the JAR file is never held in memory. The result is cached, so deploying deck again with the same
+	 * settings doesn't have to rebuild it.
+	 *
+	 * @param originalDeckJarFile
+	 * @param data
+	 * @return the customized deck JAR file, identified by a digest of everything that went into it, pinned in the
+	 * cache until {@link #releaseArtifact released}
+	 * @throws IOException
+	 */
+	private ModuleArtifactIndex.IndexedArtifact pluginSettingsJs(ModuleArtifactIndex.IndexedArtifact originalDeckJarFile, Map<String, String> data) throws IOException {
 
-	}
+		final List<String> settings = settingsJsInputs(data);
+		final Path customizedDeckJarFile = deckArtifactCache.get(originalDeckJarFile.getSha256(), settings,
+			target -> rewriteDeckJarFile(originalDeckJarFile.getResource(), target, data));
 
-	private org.springframework.core.io.Resource pluginSettingsJs(org.springframework.core.io.Resource originalDeckJarFile, Map<String, String> data) {
 		try {
-			Manifest manifest = new Manifest();
-			manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
-			final ByteArrayOutputStream jarByteStream = new ByteArrayOutputStream();
-
-			try (
-					ZipInputStream inputJarStream = new ZipInputStream(originalDeckJarFile.getInputStream());
-					JarOutputStream newDeckJarFile = new JarOutputStream(jarByteStream, manifest)
-			) {
-				ZipEntry entry;
-				while ((entry = inputJarStream.getNextEntry()) != null) {
-					try {
+			return new ModuleArtifactIndex.IndexedArtifact(new FileSystemResource(customizedDeckJarFile.toFile()),
+				Files.size(customizedDeckJarFile), DeckArtifactCache.digest(originalDeckJarFile.getSha256(), settings));
+		} catch (IOException e) {
+			deckArtifactCache.release(customizedDeckJarFile);
+			throw e;
+		}
+	}
 
-						if (entry.getName().contains("META-INF") || entry.getName().contains("MANIFEST.MF")) {
-							// Skip the manifest since it's set up above.
-						} else if (entry.getName().equals("settings.js")) {
-							transformSettingsJs(data, inputJarStream, newDeckJarFile, entry);
-						} else {
-							passThroughFileEntry(inputJarStream, newDeckJarFile, entry);
-						}
-					} catch (IOException e) {
-						throw new RuntimeException(e);
-					}
-				};
+	private static void rewriteDeckJarFile(Resource originalDeckJarFile, Path target, Map<String, String> data) throws IOException {
+
+		final Path local = onFileSystem(originalDeckJarFile);
+		final Path source = (local != null) ? local : copyToTempFile(originalDeckJarFile);
+		try {
+			new DeckJarRewriter(Charset.defaultCharset())
+				.rewrite(source, target, settingsJs -> transformSettingsJs(data, settingsJs));
+		} finally {
+			if (local == null) {
+				Files.deleteIfExists(source);
 			}
+		}
+	}
 
-//			if (log.isDebugEnabled()) {
-//				Path file = Files.createTempFile("deck-preview", ".jar");
-//				log.info("Dumping JAR contents to " + file);
-//				Files.write(file, jarByteStream.toByteArray());
-//				file.toFile().deleteOnExit();
-//			}
+	/**
+	 * @param resource
+	 * @return the {@link Resource}'s location on the filesystem, or {@literal null} if it isn't a plain file (e.g.
+	 * it's nested inside this app's JAR file)
+	 */
+	private static Path onFileSystem(Resource resource) {
 
-			return new InMemoryResource(jarByteStream.toByteArray(), "In memory JAR file for deck");
+		try {
+			return resource.getFile().toPath();
 		} catch (IOException e) {
-			throw new RuntimeException(e);
+			return null;
 		}
 	}
 
+	private static Path copyToTempFile(Resource resource) throws IOException {
 
-	private static void transformSettingsJs(Map<String, String> data, ZipInputStream zipInputStream, JarOutputStream newDeckJarFile, ZipEntry entry) throws IOException {
-		JarEntry newEntry = new JarEntry(entry.getName());
-		newEntry.setTime(entry.getTime());
-		newDeckJarFile.putNextEntry(newEntry);
-		if (!entry.isDirectory()) {
-			String settingsJs = StreamUtils.copyToString(zipInputStream, Charset.defaultCharset());;
-			settingsJs = settingsJs.replace("{gate}", "https://gate" + data.getOrDefault("namespace", "") + "." + data.getOrDefault("deck.domain", DEFAULT_DOMAIN));
-			settingsJs = settingsJs.replace("{primaryAccount}", data.getOrDefault("deck.primaryAccount", DEFAULT_PRIMARY_ACCOUNT));
-			final String primaryAccounts = data.getOrDefault("deck.primaryAccounts", DEFAULT_PRIMARY_ACCOUNT);
-			final String[] primaryAccountsArray = primaryAccounts.split(",");
-			final List<String> accounts = Arrays.stream(primaryAccountsArray)
-					.map(account -> "'" + account + "'")
-					.collect(Collectors.toList());
-			final String formattedAccounts = StringUtils.collectionToCommaDelimitedString(accounts);
-			settingsJs = settingsJs.replace("'{primaryAccounts}'", "[" + formattedAccounts + "]");
-			StreamUtils.copy(settingsJs, Charset.defaultCharset(), newDeckJarFile);
+		final Path copy = Files.createTempFile("deck-original-", ".jar");
+		try (InputStream inputStream = resource.getInputStream()) {
+			Files.copy(inputStream, copy, StandardCopyOption.REPLACE_EXISTING);
 		}
-		newDeckJarFile.closeEntry();
+		return copy;
 	}
 
-	private static void passThroughFileEntry(ZipInputStream zipInputStream, JarOutputStream newDeckJarFile, ZipEntry entry) throws IOException {
-		JarEntry newEntry = new JarEntry(entry.getName());
-		newEntry.setTime(entry.getTime());
-		newDeckJarFile.putNextEntry(newEntry);
-		if (!entry.isDirectory()) {
-			StreamUtils.copy(zipInputStream, newDeckJarFile);
-		}
-		newDeckJarFile.closeEntry();
+	/**
+	 * Every setting {@link #transformSettingsJs(Map, String)} depends on.
+	 *
+	 * @param data
+	 * @return
+	 */
+	private static List<String> settingsJsInputs(Map<String, String> data) {
+
+		return Arrays.asList(
+			data.getOrDefault("namespace", ""),
+			data.getOrDefault("deck.domain", DEFAULT_DOMAIN),
+			data.getOrDefault("deck.primaryAccount", DEFAULT_PRIMARY_ACCOUNT),
+			data.getOrDefault("deck.primaryAccounts", DEFAULT_PRIMARY_ACCOUNT));
 	}
 
+	static String transformSettingsJs(Map<String, String> data, String settingsJs) {
 
+		settingsJs = settingsJs.replace("{gate}", "https://gate" + data.getOrDefault("namespace", "") + "." + data.getOrDefault("deck.domain", DEFAULT_DOMAIN));
+		settingsJs = settingsJs.replace("{primaryAccount}", data.getOrDefault("deck.primaryAccount", DEFAULT_PRIMARY_ACCOUNT));
+		final String primaryAccounts = data.getOrDefault("deck.primaryAccounts", DEFAULT_PRIMARY_ACCOUNT);
+		final String[] primaryAccountsArray = primaryAccounts.split(",");
+		final List<String> accounts = Arrays.stream(primaryAccountsArray)
+				.map(account -> "'" + account + "'")
+				.collect(Collectors.toList());
+		final String formattedAccounts = StringUtils.collectionToCommaDelimitedString(accounts);
+		return settingsJs.replace("'{primaryAccounts}'", "[" + formattedAccounts + "]");
+	}
 
 }
@@ -0,0 +1,374 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.cloud.deployer.spi.app.AppStatus;
+import org.springframework.scheduling.TaskScheduler;
+
+/**
+ * Short lived cache of {@link AppStatus}'s, keyed by target, credentials and deployment id (module name plus namespace),
+ * so one caller is never served what was looked up with another's credentials.
+ *
+ * Fresh entries are served as is. Entries past their TTL, but still within the max stale window, are served
+ * while a single background refresh fetches a new value. Anything older is looked up again on the caller's thread.
+ * Identical lookups that arrive while one is already underway wait for it rather than calling Cloud Foundry again,
+ * but no longer than the status timeout, after which the next lookup starts afresh.
+ *
+ * @author Greg Turnquist
+ */
+public class ModuleStatusCache implements PublicMetrics {
+
+	private static final Logger log = LoggerFactory.getLogger(ModuleStatusCache.class);
+
+	private final Map<String, CachedStatus> statuses = new ConcurrentHashMap<>();
+
+	/**
+	 * Statuses being loaded right now, so identical lookups can share the result.
+	 */
+	private final Map<String, CompletableFuture<AppStatus>> loading = new ConcurrentHashMap<>();
+
+	private final SpinnakerConfiguration.Status settings;
+
+	private final Executor refreshExecutor;
+
+	private final TaskScheduler timeoutScheduler;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong staleHits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong refreshes = new AtomicLong();
+	private final AtomicLong refreshFailures = new AtomicLong();
+	private final AtomicLong collapsed = new AtomicLong();
+	private final AtomicLong expired = new AtomicLong();
+
+	public ModuleStatusCache(SpinnakerConfiguration.Status settings, Executor refreshExecutor, TaskScheduler timeoutScheduler) {
+
+		this.settings = settings;
+		this.refreshExecutor = refreshExecutor;
+		this.timeoutScheduler = timeoutScheduler;
+	}
+
+	/**
+	 * Look up a status, only calling the {@literal loader} if nothing usable is cached.
+	 *
+	 * @param api
+	 * @param org
+	 * @param space
+	 * @param email
+	 * @param password
+	 * @param deploymentId
+	 * @param loader fetches the status from Cloud Foundry
+	 * @return the cached or freshly loaded {@link AppStatus}
+	 */
+	public AppStatus get(String api, String org, String space, String email, String password, String deploymentId, Supplier<AppStatus> loader) {
+
+		final String key = getKey(api, org, space, email, password, deploymentId);
+
+		if (this.settings.getCacheTtl() <= 0) {
+			this.misses.incrementAndGet();
+			return load(key, loader);
+		}
+
+		final CachedStatus cached = this.statuses.get(key);
+		final long now = System.currentTimeMillis();
+
+		if (cached != null) {
+			final long age = now - cached.loadedAt;
+
+			if (age < this.settings.getCacheTtl()) {
+				this.hits.incrementAndGet();
+				return cached.status;
+			}
+
+			if (age < this.settings.getCacheTtl() + this.settings.getCacheMaxStale()) {
+				this.staleHits.incrementAndGet();
+				refreshInBackground(key, cached, loader);
+				return cached.status;
+			}
+		}
+
+		this.misses.incrementAndGet();
+		evictExpired(now);
+
+		return load(key, loader);
+	}
+
+	/**
+	 * Look up a status the same way as {@link #get(String, String, String, String, String, String, Supplier)}, without waiting on
+	 * Cloud Foundry. Stale entries are refreshed by the {@literal loader} itself, rather than on the refresh executor.
+	 *
+	 * @param loader starts fetching the status from Cloud Foundry
+	 * @return the cached {@link AppStatus}, or one that completes once it's loaded
+	 */
+	public CompletableFuture<AppStatus> getAsync(String api, String org, String space, String email, String password, String deploymentId,
+												 Supplier<CompletableFuture<AppStatus>> loader) {
+
+		final String key = getKey(api, org, space, email, password, deploymentId);
+
+		if (this.settings.getCacheTtl() <= 0) {
+			this.misses.incrementAndGet();
+			return loadAsync(key, loader);
+		}
+
+		final CachedStatus cached = this.statuses.get(key);
+		final long now = System.currentTimeMillis();
+
+		if (cached != null) {
+			final long age = now - cached.loadedAt;
+
+			if (age < this.settings.getCacheTtl()) {
+				this.hits.incrementAndGet();
+				return CompletableFuture.completedFuture(cached.status);
+			}
+
+			if (age < this.settings.getCacheTtl() + this.settings.getCacheMaxStale()) {
+				this.staleHits.incrementAndGet();
+				refreshAsync(key, cached, loader);
+				return CompletableFuture.completedFuture(cached.status);
+			}
+		}
+
+		this.misses.incrementAndGet();
+		evictExpired(now);
+
+		return loadAsync(key, loader);
+	}
+
+	/**
+	 * Call the {@literal loader}, unless the same status is already being loaded, in which case wait for that instead.
+	 * Whatever the {@literal loader} finds is cached, unless it was invalidated in the meantime.
+	 */
+	private AppStatus load(String key, Supplier<AppStatus> loader) {
+
+		final CompletableFuture<AppStatus> mine = new CompletableFuture<>();
+		final CompletableFuture<AppStatus> inFlight = this.loading.putIfAbsent(key, mine);
+
+		if (inFlight != null) {
+			this.collapsed.incrementAndGet();
+			try {
+				return inFlight.join();
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw e;
+			}
+		}
+
+		expireAfterTimeout(key, mine);
+
+		try {
+			final AppStatus status = loader.get();
+			store(key, mine, status);
+			mine.complete(status);
+			return status;
+		} catch (RuntimeException e) {
+			mine.completeExceptionally(e);
+			throw e;
+		} finally {
+			this.loading.remove(key, mine);
+		}
+	}
+
+	/**
+	 * Start the {@literal loader}, unless the same status is already being loaded, in which case share that instead.
+	 */
+	private CompletableFuture<AppStatus> loadAsync(String key, Supplier<CompletableFuture<AppStatus>> loader) {
+
+		final CompletableFuture<AppStatus> mine = new CompletableFuture<>();
+		final CompletableFuture<AppStatus> inFlight = this.loading.putIfAbsent(key, mine);
+
+		if (inFlight != null) {
+			this.collapsed.incrementAndGet();
+			return inFlight;
+		}
+
+		expireAfterTimeout(key, mine);
+
+		try {
+			loader.get().whenComplete((status, e) -> {
+				if (e != null) {
+					this.loading.remove(key, mine);
+					mine.completeExceptionally(e);
+				} else {
+					store(key, mine, status);
+					mine.complete(status);
+				}
+			});
+		} catch (RuntimeException e) {
+			this.loading.remove(key, mine);
+			mine.completeExceptionally(e);
+		}
+
+		return mine;
+	}
+
+	/**
+	 * Cache a freshly loaded status and stop sharing its lookup, but only if that lookup is still the current one. If
+	 * {@link #invalidate} ran while it was underway, what it found may predate the change, so it's dropped instead.
+	 */
+	private void store(String key, CompletableFuture<AppStatus> mine, AppStatus status) {
+
+		this.loading.computeIfPresent(key, (k, inFlight) -> {
+			if (inFlight != mine) {
+				return inFlight;
+			}
+			if (this.settings.getCacheTtl() > 0) {
+				this.statuses.put(key, new CachedStatus(status));
+			}
+			return null;
+		});
+	}
+
+	/**
+	 * Stop sharing a lookup that hasn't finished within the status timeout, failing everyone waiting on it, so a
+	 * hung call to Cloud Foundry neither holds their threads nor keeps later lookups from being tried again.
+	 */
+	private void expireAfterTimeout(String key, CompletableFuture<AppStatus> mine) {
+
+		final ScheduledFuture<?> expiry = this.timeoutScheduler.schedule(() -> {
+			if (this.loading.remove(key, mine)) {
+				this.expired.incrementAndGet();
+				mine.completeExceptionally(new TimeoutException("Timed out looking up the status of " + key));
+			}
+		}, new Date(System.currentTimeMillis() + this.settings.getTimeout()));
+
+		mine.whenComplete((status, e) -> expiry.cancel(false));
+	}
+
+	/**
+	 * Drop a module's status, whoever looked it up, e.g. because it was just deployed or undeployed.
+	 *
+	 * @param api
+	 * @param org
+	 * @param space
+	 * @param deploymentId
+	 */
+	public void invalidate(String api, String org, String space, String deploymentId) {
+
+		final String prefix = getTarget(api, org, space, deploymentId) + "@";
+
+		// Whatever is being loaded predates the change, so keep it from being stored (see store())
+		this.loading.keySet().stream()
+			.filter(key -> key.startsWith(prefix))
+			.forEach(key -> this.loading.compute(key, (k, inFlight) -> {
+				this.statuses.remove(key);
+				return null;
+			}));
+
+		this.statuses.keySet().removeIf(key -> key.startsWith(prefix));
+	}
+
+	@Override
+	public Collection<Metric<?>> metrics() {
+
+		return Arrays.asList(
+			new Metric<>("spinnaker.status.cache.size", this.statuses.size()),
+			new Metric<>("spinnaker.status.cache.hits", this.hits.get()),
+			new Metric<>("spinnaker.status.cache.staleHits", this.staleHits.get()),
+			new Metric<>("spinnaker.status.cache.misses", this.misses.get()),
+			new Metric<>("spinnaker.status.cache.refreshes", this.refreshes.get()),
+			new Metric<>("spinnaker.status.cache.refreshFailures", this.refreshFailures.get()),
+			new Metric<>("spinnaker.status.cache.collapsed", this.collapsed.get()),
+			new Metric<>("spinnaker.status.cache.expired", this.expired.get()));
+	}
+
+	private void refreshInBackground(String key, CachedStatus cached, Supplier<AppStatus> loader) {
+
+		if (!cached.refreshing.compareAndSet(false, true)) {
+			return; // Someone else is already on it
+		}
+
+		try {
+			this.refreshExecutor.execute(() -> {
+				try {
+					load(key, loader);
+					this.refreshes.incrementAndGet();
+				} catch (RuntimeException e) {
+					this.refreshFailures.incrementAndGet();
+					log.warn("Unable to refresh the status of " + key, e);
+				} finally {
+					cached.refreshing.set(false);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			cached.refreshing.set(false);
+		}
+	}
+
+	private void refreshAsync(String key, CachedStatus cached, Supplier<CompletableFuture<AppStatus>> loader) {
+
+		if (!cached.refreshing.compareAndSet(false, true)) {
+			return; // Someone else is already on it
+		}
+
+		loadAsync(key, loader).whenComplete((status, e) -> {
+			if (e != null) {
+				this.refreshFailures.incrementAndGet();
+				log.warn("Unable to refresh the status of " + key, e);
+			} else {
+				this.refreshes.incrementAndGet();
+			}
+			cached.refreshing.set(false);
+		});
+	}
+
+	private void evictExpired(long now) {
+
+		final long maxAge = this.settings.getCacheTtl() + this.settings.getCacheMaxStale();
+		this.statuses.values().removeIf(cached -> now - cached.loadedAt >= maxAge);
+	}
+
+	private static String getKey(String api, String org, String space, String email, String password, String deploymentId) {
+		return getTarget(api, org, space, deploymentId) + "@" + Digests.sha256(email + ":" + password);
+	}
+
+	private static String getTarget(String api, String org, String space, String deploymentId) {
+		return api + ":" + org + ":" + space + ":" + deploymentId;
+	}
+
+	private static class CachedStatus {
+
+		final AppStatus status;
+		final long loadedAt = System.currentTimeMillis();
+		final AtomicBoolean refreshing = new AtomicBoolean();
+
+		CachedStatus(AppStatus status) {
+			this.status = status;
+		}
+	}
+
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.cloud.deployer.spi.app.AppInstanceStatus;
+import org.springframework.cloud.deployer.spi.app.AppStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Streams module status changes to browsers as server-sent events.
+ *
+ * There's one watcher per target, credentials and namespace, no matter how many browsers subscribe to it, so a
+ * subscriber only ever shares statuses looked up with its own credentials. The watcher looks up every module's status
+ * each {@link SpinnakerConfiguration.Status#getStreamInterval()} and pushes only the statuses that changed. A new subscriber is first sent every status
+ * seen so far. Once the last subscriber leaves, the watcher stops.
+ *
+ * @author Greg Turnquist
+ */
+public class ModuleStatusStream {
+
+	private static final Logger log = LoggerFactory.getLogger(ModuleStatusStream.class);
+
+	static final String EVENT_NAME = "status";
+
+	private final Map<String, Watcher> watchers = new ConcurrentHashMap<>();
+
+	private final ModuleService moduleService;
+
+	private final TaskScheduler scheduler;
+
+	private final SpinnakerConfiguration.Status settings;
+
+	public ModuleStatusStream(ModuleService moduleService, TaskScheduler scheduler, SpinnakerConfiguration.Status settings) {
+
+		this.moduleService = moduleService;
+		this.scheduler = scheduler;
+		this.settings = settings;
+	}
+
+	/**
+	 * Subscribe to the status changes of all modules in a namespace.
+	 *
+	 * @return an {@link SseEmitter} sending each changed {@link AppStatus} as a {@literal status} event
+	 */
+	public synchronized SseEmitter subscribe(String api, String org, String space, String email, String password, String namespace) {
+
+		final String key = Digests.sha256(String.join(":", Arrays.asList(api, org, space, email, password))) + ":" + namespace;
+		final Watcher watcher = this.watchers.computeIfAbsent(key, k -> new Watcher(org + "/" + space + namespace + " at " + api,
+			k, api, org, space, email, password, namespace));
+
+		final SseEmitter emitter = new SseEmitter(this.settings.getStreamTimeout());
+		emitter.onCompletion(() -> unsubscribe(watcher, emitter));
+		emitter.onTimeout(() -> unsubscribe(watcher, emitter));
+
+		watcher.add(emitter);
+		return emitter;
+	}
+
+	/**
+	 * @return number of targets, credentials and namespaces currently being watched
+	 */
+	int getWatcherCount() {
+		return this.watchers.size();
+	}
+
+	private synchronized void unsubscribe(Watcher watcher, SseEmitter emitter) {
+
+		if (watcher.remove(emitter)) {
+			this.watchers.remove(watcher.key, watcher);
+			watcher.stop();
+		}
+	}
+
+	/**
+	 * Reduce an {@link AppStatus} to what's worth telling a browser about.
+	 */
+	static String fingerprint(AppStatus status) {
+
+		final Map<String, String> instances = new TreeMap<>();
+		for (AppInstanceStatus instance : status.getInstances().values()) {
+			instances.put(instance.getId(), String.valueOf(instance.getState()));
+		}
+		return status.getState() + " " + instances;
+	}
+
+	/**
+	 * Looks up the statuses of one target and namespace, with one set of credentials, on behalf of all its subscribers.
+	 */
+	private class Watcher implements Runnable {
+
+		private final String name;
+		private final String key;
+		private final String api;
+		private final String org;
+		private final String space;
+		private final String email;
+		private final String password;
+		private final String namespace;
+
+		private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+
+		/**
+		 * Last status sent out for each deployment id, along with its fingerprint.
+		 */
+		private final Map<String, AppStatus> lastStatuses = new ConcurrentHashMap<>();
+		private final Map<String, String> lastFingerprints = new ConcurrentHashMap<>();
+
+		private ScheduledFuture<?> task;
+
+		/**
+		 * Whether the last look hasn't finished yet, in which case the next one is skipped.
+		 */
+		private final AtomicBoolean looking = new AtomicBoolean();
+
+		Watcher(String name, String key, String api, String org, String space, String email, String password, String namespace) {
+
+			this.name = name;
+			this.key = key;
+			this.api = api;
+			this.org = org;
+			this.space = space;
+			this.email = email;
+			this.password = password;
+			this.namespace = namespace;
+		}
+
+		void add(SseEmitter emitter) {
+
+			this.lastStatuses.values().forEach(status -> send(emitter, status));
+			this.emitters.add(emitter);
+
+			if (this.task == null) {
+				log.debug("Watching " + this.name);
+				this.task = scheduler.scheduleWithFixedDelay(this, settings.getStreamInterval());
+			}
+		}
+
+		/**
+		 * @return whether that was the last subscriber
+		 */
+		boolean remove(SseEmitter emitter) {
+			return this.emitters.remove(emitter) && this.emitters.isEmpty();
+		}
+
+		void stop() {
+
+			log.debug("No longer watching " + this.name);
+			if (this.task != null) {
+				this.task.cancel(false);
+			}
+		}
+
+		/**
+		 * Start looking up the statuses without waiting on them, so the scheduler's thread is free right away.
+		 */
+		@Override
+		public void run() {
+
+			if (!this.looking.compareAndSet(false, true)) {
+				return;
+			}
+
+			try {
+				moduleService.getStatusesAsync(this.api, this.org, this.space, this.email, this.password, this.namespace)
+					.whenComplete((statuses, e) -> {
+						this.looking.set(false);
+						if (e != null) {
+							log.warn("Unable to look up statuses for " + this.name, e);
+						} else {
+							statuses.forEach(this::publish);
+						}
+					});
+			} catch (RuntimeException e) {
+				this.looking.set(false);
+				log.warn("Unable to look up statuses for " + this.name, e);
+			}
+		}
+
+		private void publish(AppStatus status) {
+
+			final String fingerprint = fingerprint(status);
+			if (!fingerprint.equals(this.lastFingerprints.put(status.getDeploymentId(), fingerprint))) {
+				this.lastStatuses.put(status.getDeploymentId(), status);
+				this.emitters.forEach(emitter -> send(emitter, status));
+			}
+		}
+
+		private void send(SseEmitter emitter, AppStatus status) {
+
+			try {
+				emitter.send(SseEmitter.event()
+					.name(EVENT_NAME)
+					.id(status.getDeploymentId())
+					.data(status, MediaType.APPLICATION_JSON));
+			} catch (IOException | IllegalStateException e) {
+				log.debug("Dropping a subscriber to " + this.name + ": " + e.getMessage());
+				emitter.completeWithError(e);
+				unsubscribe(this, emitter);
+			}
+		}
+	}
+
+}
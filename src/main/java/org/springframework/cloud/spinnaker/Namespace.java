@@ -0,0 +1,46 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import java.util.List;
+
+import org.springframework.cloud.deployer.spi.app.AppStatus;
+
+/**
+ * The modules deployed to a space under one namespace.
+ *
+ * @author Greg Turnquist
+ */
+public class Namespace {
+
+	private final String name;
+
+	private final List<AppStatus> statuses;
+
+	public Namespace(String name, List<AppStatus> statuses) {
+		this.name = name;
+		this.statuses = statuses;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public List<AppStatus> getStatuses() {
+		return statuses;
+	}
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * Bridges the {@link Publisher}s handed back by the Cloud Foundry client to {@link CompletableFuture}s, without
+ * blocking a thread while waiting on them.
+ *
+ * @author Greg Turnquist
+ */
+final class Publishers {
+
+	private Publishers() {
+	}
+
+	/**
+	 * @return every element the {@link Publisher} emits, once it completes
+	 */
+	static <T> CompletableFuture<List<T>> collect(Publisher<T> publisher) {
+
+		final CompletableFuture<List<T>> future = new CompletableFuture<>();
+		final List<T> elements = new ArrayList<>();
+
+		publisher.subscribe(new Subscriber<T>() {
+
+			@Override
+			public void onSubscribe(Subscription subscription) {
+				subscription.request(Long.MAX_VALUE);
+			}
+
+			@Override
+			public void onNext(T element) {
+				elements.add(element);
+			}
+
+			@Override
+			public void onError(Throwable t) {
+				future.completeExceptionally(t);
+			}
+
+			@Override
+			public void onComplete() {
+				future.complete(elements);
+			}
+		});
+
+		return future;
+	}
+
+	/**
+	 * @return the first element the {@link Publisher} emits
+	 */
+	static <T> CompletableFuture<T> first(Publisher<T> publisher) {
+
+		return collect(publisher).thenApply(elements -> {
+			if (elements.isEmpty()) {
+				throw new NoSuchElementException("Nothing was published");
+			}
+			return elements.get(0);
+		});
+	}
+
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.scheduling.TaskScheduler;
+
+/**
+ * Retries calls to Cloud Foundry that are safe to repeat, backing off exponentially with full jitter between
+ * attempts. Only failures that say something about the API's health are retried (see {@link ApiGuard#isFailure}),
+ * along with calls turned away for going over the rate limit (see {@link ApiGuard#isThrottled}), so a missing
+ * application or a call turned away by an open circuit fails right away.
+ *
+ * @author Greg Turnquist
+ */
+class Retries {
+
+	private static final Logger log = LoggerFactory.getLogger(Retries.class);
+
+	private final SpinnakerConfiguration.Retry settings;
+
+	private final TaskScheduler scheduler;
+
+	Retries(SpinnakerConfiguration.Retry settings, TaskScheduler scheduler) {
+		this.settings = settings;
+		this.scheduler = scheduler;
+	}
+
+	/**
+	 * Make a blocking call, sleeping between attempts.
+	 *
+	 * @return what the first successful attempt returned
+	 */
+	<T> T call(String description, Callable<T> call) {
+
+		for (int attempt = 1; ; attempt++) {
+			try {
+				return call.call();
+			} catch (Exception e) {
+				if (!shouldRetry(e, attempt)) {
+					throw (e instanceof RuntimeException) ? (RuntimeException) e : new IllegalStateException(e.getMessage(), e);
+				}
+				final long backoff = backoff(attempt);
+				log.debug("Retrying " + description + " in " + backoff + "ms after " + e);
+				try {
+					Thread.sleep(backoff);
+				} catch (InterruptedException interrupted) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while retrying " + description, e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Make an asynchronous call, scheduling each retry instead of holding up a thread.
+	 *
+	 * @param call starts a fresh attempt each time it's asked
+	 * @return what the first successful attempt completed with
+	 */
+	<T> CompletableFuture<T> callAsync(String description, Supplier<CompletableFuture<T>> call) {
+
+		final CompletableFuture<T> result = new CompletableFuture<>();
+		attempt(description, call, 1, result);
+		return result;
+	}
+
+	private <T> void attempt(String description, Supplier<CompletableFuture<T>> call, int attempt, CompletableFuture<T> result) {
+
+		start(call).whenComplete((value, e) -> {
+			if (e == null) {
+				result.complete(value);
+			} else if (!shouldRetry(e, attempt)) {
+				result.completeExceptionally(e);
+			} else {
+				final long backoff = backoff(attempt);
+				log.debug("Retrying " + description + " in " + backoff + "ms after " + e);
+				this.scheduler.schedule(() -> attempt(description, call, attempt + 1, result),
+					new Date(System.currentTimeMillis() + backoff));
+			}
+		});
+	}
+
+	/**
+	 * Make an asynchronous call, and if it hasn't answered after the given delay, make it a second time. Whichever
+	 * attempt succeeds first wins; the call only fails if both do, or if the first fails before the second starts.
+	 *
+	 * @param delay how long (in milliseconds) to wait before the second attempt, or 0 to make just the one
+	 */
+	<T> CompletableFuture<T> hedge(Supplier<CompletableFuture<T>> call, long delay) {
+
+		if (!this.settings.isHedge() || delay <= 0) {
+			return start(call);
+		}
+
+		final CompletableFuture<T> result = new CompletableFuture<>();
+		final AtomicInteger outstanding = new AtomicInteger(1);
+
+		final ScheduledFuture<?> second = this.scheduler.schedule(() -> {
+			if (!result.isDone() && outstanding.getAndIncrement() > 0) {
+				start(call).whenComplete((value, e) -> settle(result, outstanding, value, e));
+			}
+		}, new Date(System.currentTimeMillis() + delay));
+
+		start(call).whenComplete((value, e) -> {
+			second.cancel(false);
+			settle(result, outstanding, value, e);
+		});
+
+		return result;
+	}
+
+	private static <T> void settle(CompletableFuture<T> result, AtomicInteger outstanding, T value, Throwable e) {
+
+		if (e == null) {
+			result.complete(value);
+		} else if (outstanding.decrementAndGet() == 0) {
+			result.completeExceptionally(e);
+		}
+	}
+
+	private boolean shouldRetry(Throwable e, int attempt) {
+		return attempt < this.settings.getMaxAttempts() && (ApiGuard.isFailure(e) || ApiGuard.isThrottled(e));
+	}
+
+	/**
+	 * @return a random time up to the exponentially growing bound for the given attempt, capped at the configured maximum
+	 */
+	long backoff(int attempt) {
+
+		final long bound = Math.min(this.settings.getMaxBackoff(),
+			this.settings.getInitialBackoff() << Math.min(attempt - 1, 30));
+		return ThreadLocalRandom.current().nextLong(bound + 1);
+	}
+
+	/**
+	 * Start an attempt, turning anything it throws into a failed future.
+	 */
+	private static <T> CompletableFuture<T> start(Supplier<CompletableFuture<T>> call) {
+
+		try {
+			return call.get();
+		} catch (RuntimeException e) {
+			final CompletableFuture<T> failed = new CompletableFuture<>();
+			failed.completeExceptionally(e);
+			return failed;
+		}
+	}
+
+}
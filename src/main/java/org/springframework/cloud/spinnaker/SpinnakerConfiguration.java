@@ -33,6 +33,24 @@ public class SpinnakerConfiguration {
 
 	Map<String, String> patterns = new HashMap<>();
 
+	Status status = new Status();
+
+	Deployers deployers = new Deployers();
+
+	Artifacts artifacts = new Artifacts();
+
+	DeckCache deckCache = new DeckCache();
+
+	Deploy deploy = new Deploy();
+
+	Jobs jobs = new Jobs();
+
+	Targets targets = new Targets();
+
+	Limits limits = new Limits();
+
+	Retry retry = new Retry();
+
 	public List<ModuleDetails> getModules() {
 		return modules;
 	}
@@ -56,4 +74,549 @@ public class SpinnakerConfiguration {
 	public void setPatterns(Map<String, String> patterns) {
 		this.patterns = patterns;
 	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	public void setStatus(Status status) {
+		this.status = status;
+	}
+
+	public Deployers getDeployers() {
+		return deployers;
+	}
+
+	public void setDeployers(Deployers deployers) {
+		this.deployers = deployers;
+	}
+
+	public Artifacts getArtifacts() {
+		return artifacts;
+	}
+
+	public void setArtifacts(Artifacts artifacts) {
+		this.artifacts = artifacts;
+	}
+
+	public DeckCache getDeckCache() {
+		return deckCache;
+	}
+
+	public void setDeckCache(DeckCache deckCache) {
+		this.deckCache = deckCache;
+	}
+
+	public Deploy getDeploy() {
+		return deploy;
+	}
+
+	public void setDeploy(Deploy deploy) {
+		this.deploy = deploy;
+	}
+
+	public Jobs getJobs() {
+		return jobs;
+	}
+
+	public void setJobs(Jobs jobs) {
+		this.jobs = jobs;
+	}
+
+	public Targets getTargets() {
+		return targets;
+	}
+
+	public void setTargets(Targets targets) {
+		this.targets = targets;
+	}
+
+	public Limits getLimits() {
+		return limits;
+	}
+
+	public void setLimits(Limits limits) {
+		this.limits = limits;
+	}
+
+	public Retry getRetry() {
+		return retry;
+	}
+
+	public void setRetry(Retry retry) {
+		this.retry = retry;
+	}
+
+	/**
+	 * Settings for looking up the status of modules.
+	 */
+	public static class Status {
+
+		/**
+		 * Number of module statuses that may be looked up against Cloud Foundry at the same time.
+		 */
+		int threads = 8;
+
+		/**
+		 * Number of pending status lookups to queue up before making the caller do the work.
+		 */
+		int queueCapacity = 100;
+
+		/**
+		 * How long (in milliseconds) to wait on a single module before reporting its status as unknown.
+		 */
+		long timeout = 10000;
+
+		/**
+		 * How long (in milliseconds) a looked up status is served from cache. Set to 0 to disable caching.
+		 */
+		long cacheTtl = 5000;
+
+		/**
+		 * How long (in milliseconds) past its TTL a cached status may still be served while it's refreshed in the background.
+		 */
+		long cacheMaxStale = 30000;
+
+		/**
+		 * How often (in milliseconds) a status stream looks for changes while anyone is subscribed.
+		 */
+		long streamInterval = 3000;
+
+		/**
+		 * How long (in milliseconds) a browser stays subscribed to a status stream before it has to reconnect.
+		 */
+		long streamTimeout = 1800000;
+
+		/**
+		 * Number of status streams that may look for changes at the same time.
+		 */
+		int streamThreads = 2;
+
+		/**
+		 * Number of threads that time out status lookups and start retries. They never wait on Cloud Foundry themselves.
+		 */
+		int timerThreads = 2;
+
+		/**
+		 * How long (in milliseconds) a space's inventory is kept once nobody asks for it anymore.
+		 */
+		long inventoryIdleTimeout = 1800000;
+
+		public int getThreads() {
+			return threads;
+		}
+
+		public void setThreads(int threads) {
+			this.threads = threads;
+		}
+
+		public int getQueueCapacity() {
+			return queueCapacity;
+		}
+
+		public void setQueueCapacity(int queueCapacity) {
+			this.queueCapacity = queueCapacity;
+		}
+
+		public long getTimeout() {
+			return timeout;
+		}
+
+		public void setTimeout(long timeout) {
+			this.timeout = timeout;
+		}
+
+		public long getCacheTtl() {
+			return cacheTtl;
+		}
+
+		public void setCacheTtl(long cacheTtl) {
+			this.cacheTtl = cacheTtl;
+		}
+
+		public long getCacheMaxStale() {
+			return cacheMaxStale;
+		}
+
+		public void setCacheMaxStale(long cacheMaxStale) {
+			this.cacheMaxStale = cacheMaxStale;
+		}
+
+		public long getStreamInterval() {
+			return streamInterval;
+		}
+
+		public void setStreamInterval(long streamInterval) {
+			this.streamInterval = streamInterval;
+		}
+
+		public long getStreamTimeout() {
+			return streamTimeout;
+		}
+
+		public void setStreamTimeout(long streamTimeout) {
+			this.streamTimeout = streamTimeout;
+		}
+
+		public int getStreamThreads() {
+			return streamThreads;
+		}
+
+		public void setStreamThreads(int streamThreads) {
+			this.streamThreads = streamThreads;
+		}
+
+		public int getTimerThreads() {
+			return timerThreads;
+		}
+
+		public void setTimerThreads(int timerThreads) {
+			this.timerThreads = timerThreads;
+		}
+
+		public long getInventoryIdleTimeout() {
+			return inventoryIdleTimeout;
+		}
+
+		public void setInventoryIdleTimeout(long inventoryIdleTimeout) {
+			this.inventoryIdleTimeout = inventoryIdleTimeout;
+		}
+	}
+
+	/**
+	 * Settings for the cache of Cloud Foundry deployers (and their clients).
+	 */
+	public static class Deployers {
+
+		/**
+		 * Maximum number of deployers to keep around. The least recently used one is disposed of beyond that.
+		 */
+		int maxSize = 32;
+
+		/**
+		 * How long (in milliseconds) an unused deployer is kept before it's disposed of.
+		 */
+		long idleTimeout = 1800000;
+
+		public int getMaxSize() {
+			return maxSize;
+		}
+
+		public void setMaxSize(int maxSize) {
+			this.maxSize = maxSize;
+		}
+
+		public long getIdleTimeout() {
+			return idleTimeout;
+		}
+
+		public void setIdleTimeout(long idleTimeout) {
+			this.idleTimeout = idleTimeout;
+		}
+	}
+
+	/**
+	 * Settings for finding each module's artifact when the application starts.
+	 */
+	public static class Artifacts {
+
+		/**
+		 * Where to look for module artifacts. Each one is matched up to its module by {@link ModuleDetails#getArtifact()}.
+		 */
+		String location = "classpath*:spinnaker-modules/**/*.jar";
+
+		/**
+		 * Whether to refuse to start when a module's artifact can't be found.
+		 */
+		boolean failOnMissing = true;
+
+		public String getLocation() {
+			return location;
+		}
+
+		public void setLocation(String location) {
+			this.location = location;
+		}
+
+		public boolean isFailOnMissing() {
+			return failOnMissing;
+		}
+
+		public void setFailOnMissing(boolean failOnMissing) {
+			this.failOnMissing = failOnMissing;
+		}
+	}
+
+	/**
+	 * Settings for the on-disk cache of customized deck JAR files.
+	 */
+	public static class DeckCache {
+
+		/**
+		 * Directory to keep customized deck JAR files in. Defaults to a directory under {@literal java.io.tmpdir}.
+		 */
+		String directory = System.getProperty("java.io.tmpdir") + "/spinnaker-deck-cache";
+
+		/**
+		 * Total size (in bytes) of the cached files, beyond which the least recently used ones are deleted.
+		 */
+		long maxSize = 512L * 1024 * 1024;
+
+		public String getDirectory() {
+			return directory;
+		}
+
+		public void setDirectory(String directory) {
+			this.directory = directory;
+		}
+
+		public long getMaxSize() {
+			return maxSize;
+		}
+
+		public void setMaxSize(long maxSize) {
+			this.maxSize = maxSize;
+		}
+	}
+
+	/**
+	 * Settings for deploying several modules at once.
+	 */
+	public static class Deploy {
+
+		/**
+		 * Number of modules that may be deployed at the same time.
+		 */
+		int parallelism = 4;
+
+		/**
+		 * How long (in milliseconds) to wait on Cloud Foundry when updating an application in place.
+		 */
+		long timeout = 600000;
+
+		/**
+		 * Number of locks that deployments of the same module in the same target and namespace are serialized on.
+		 */
+		int lockStripes = 64;
+
+		public int getParallelism() {
+			return parallelism;
+		}
+
+		public void setParallelism(int parallelism) {
+			this.parallelism = parallelism;
+		}
+
+		public long getTimeout() {
+			return timeout;
+		}
+
+		public void setTimeout(long timeout) {
+			this.timeout = timeout;
+		}
+
+		public int getLockStripes() {
+			return lockStripes;
+		}
+
+		public void setLockStripes(int lockStripes) {
+			this.lockStripes = lockStripes;
+		}
+	}
+
+	/**
+	 * Settings for running deployments in the background.
+	 */
+	public static class Jobs {
+
+		/**
+		 * Number of deployment jobs that may run at the same time.
+		 */
+		int threads = 4;
+
+		/**
+		 * Number of deployment jobs that may wait for a thread. Beyond that, new jobs are turned away.
+		 */
+		int queueCapacity = 16;
+
+		/**
+		 * How long (in milliseconds) a finished job can still be looked up.
+		 */
+		long retention = 3600000;
+
+		public int getThreads() {
+			return threads;
+		}
+
+		public void setThreads(int threads) {
+			this.threads = threads;
+		}
+
+		public int getQueueCapacity() {
+			return queueCapacity;
+		}
+
+		public void setQueueCapacity(int queueCapacity) {
+			this.queueCapacity = queueCapacity;
+		}
+
+		public long getRetention() {
+			return retention;
+		}
+
+		public void setRetention(long retention) {
+			this.retention = retention;
+		}
+	}
+
+	/**
+	 * Settings for targets registered through {@literal /api/targets}.
+	 */
+	public static class Targets {
+
+		/**
+		 * How long (in milliseconds) a target nobody uses is remembered.
+		 */
+		long idleTimeout = 28800000;
+
+		/**
+		 * How long (in milliseconds) to wait on Cloud Foundry when registering a target.
+		 */
+		long loginTimeout = 30000;
+
+		public long getIdleTimeout() {
+			return idleTimeout;
+		}
+
+		public void setIdleTimeout(long idleTimeout) {
+			this.idleTimeout = idleTimeout;
+		}
+
+		public long getLoginTimeout() {
+			return loginTimeout;
+		}
+
+		public void setLoginTimeout(long loginTimeout) {
+			this.loginTimeout = loginTimeout;
+		}
+	}
+
+	/**
+	 * Settings for limiting the calls made to each Cloud Foundry API host.
+	 */
+	public static class Limits {
+
+		/**
+		 * Number of calls per second allowed to one API host, on average. Set to 0 to allow any number.
+		 */
+		double rate = 50;
+
+		/**
+		 * Number of calls that may be made to one API host in a quick burst, e.g. a few dashboards looking up every
+		 * module at once.
+		 */
+		int burst = 100;
+
+		/**
+		 * Number of failures in a row (throttling, server errors, timeouts) after which calls to an API host are suspended.
+		 */
+		int failureThreshold = 5;
+
+		/**
+		 * How long (in milliseconds) calls to an API host stay suspended before one is let through to try again.
+		 */
+		long openTimeout = 30000;
+
+		public double getRate() {
+			return rate;
+		}
+
+		public void setRate(double rate) {
+			this.rate = rate;
+		}
+
+		public int getBurst() {
+			return burst;
+		}
+
+		public void setBurst(int burst) {
+			this.burst = burst;
+		}
+
+		public int getFailureThreshold() {
+			return failureThreshold;
+		}
+
+		public void setFailureThreshold(int failureThreshold) {
+			this.failureThreshold = failureThreshold;
+		}
+
+		public long getOpenTimeout() {
+			return openTimeout;
+		}
+
+		public void setOpenTimeout(long openTimeout) {
+			this.openTimeout = openTimeout;
+		}
+	}
+
+	/**
+	 * Settings for retrying calls to Cloud Foundry that are safe to repeat, like looking up an application.
+	 */
+	public static class Retry {
+
+		/**
+		 * Number of times a call is made before giving up, counting the first. Set to 1 to never retry.
+		 */
+		int maxAttempts = 3;
+
+		/**
+		 * How long (in milliseconds) to back off before the first retry, doubling for each one after it.
+		 */
+		long initialBackoff = 100;
+
+		/**
+		 * The longest (in milliseconds) to back off before a retry. Each backoff is picked at random below its bound, so
+		 * callers that failed together don't retry together.
+		 */
+		long maxBackoff = 2000;
+
+		/**
+		 * Whether to send a second status lookup when the first one takes longer than 95% of lookups against the same
+		 * API, keeping whichever answers first.
+		 */
+		boolean hedge = false;
+
+		public int getMaxAttempts() {
+			return maxAttempts;
+		}
+
+		public void setMaxAttempts(int maxAttempts) {
+			this.maxAttempts = maxAttempts;
+		}
+
+		public long getInitialBackoff() {
+			return initialBackoff;
+		}
+
+		public void setInitialBackoff(long initialBackoff) {
+			this.initialBackoff = initialBackoff;
+		}
+
+		public long getMaxBackoff() {
+			return maxBackoff;
+		}
+
+		public void setMaxBackoff(long maxBackoff) {
+			this.maxBackoff = maxBackoff;
+		}
+
+		public boolean isHedge() {
+			return hedge;
+		}
+
+		public void setHedge(boolean hedge) {
+			this.hedge = hedge;
+		}
+	}
 }
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * A Cloud Foundry org and space, along with the credentials used to reach them. Once registered with
+ * {@link TargetRegistry}, it's referred to by its id instead of passing the credentials around.
+ *
+ * @author Greg Turnquist
+ */
+public class Target {
+
+	private final String id;
+	private final String api;
+	private final String org;
+	private final String space;
+	private final String email;
+	private final String password;
+
+	volatile long lastAccess = System.currentTimeMillis();
+
+	Target(String id, String api, String org, String space, String email, String password) {
+		this.id = id;
+		this.api = api;
+		this.org = org;
+		this.space = space;
+		this.email = email;
+		this.password = password;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public String getApi() {
+		return api;
+	}
+
+	public String getOrg() {
+		return org;
+	}
+
+	public String getSpace() {
+		return space;
+	}
+
+	public String getEmail() {
+		return email;
+	}
+
+	@JsonIgnore
+	public String getPassword() {
+		return password;
+	}
+
+}
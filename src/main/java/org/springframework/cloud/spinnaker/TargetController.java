@@ -0,0 +1,80 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import static org.springframework.hateoas.mvc.ControllerLinkBuilder.linkTo;
+import static org.springframework.hateoas.mvc.ControllerLinkBuilder.methodOn;
+
+import java.net.URI;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.hateoas.Resource;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * @author Greg Turnquist
+ */
+@RestController
+public class TargetController {
+
+	private final TargetRegistry targets;
+
+	@Autowired
+	public TargetController(TargetRegistry targets) {
+		this.targets = targets;
+	}
+
+	@RequestMapping(method = RequestMethod.POST, value = ModuleController.BASE_PATH + "/targets", produces = MediaTypes.HAL_JSON_VALUE)
+	public ResponseEntity<?> register(@RequestBody Map<String, String> credentials) {
+
+		Resource<Target> resource = toResource(targets.register(
+			credentials.get("api"),
+			credentials.get("org"),
+			credentials.get("space"),
+			credentials.get("email"),
+			credentials.get("password")));
+
+		return ResponseEntity.created(URI.create(resource.getId().getHref())).body(resource);
+	}
+
+	@RequestMapping(method = RequestMethod.GET, value = ModuleController.BASE_PATH + "/targets/{id}", produces = MediaTypes.HAL_JSON_VALUE)
+	public ResponseEntity<?> target(@PathVariable String id) {
+
+		return targets.get(id)
+			.<ResponseEntity<?>> map(target -> ResponseEntity.ok(toResource(target)))
+			.orElseGet(() -> ResponseEntity.notFound().build());
+	}
+
+	@RequestMapping(method = RequestMethod.DELETE, value = ModuleController.BASE_PATH + "/targets/{id}")
+	public ResponseEntity<?> forget(@PathVariable String id) {
+
+		return targets.forget(id) ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+	}
+
+	private static Resource<Target> toResource(Target target) {
+		return new Resource<>(target,
+			linkTo(methodOn(TargetController.class).target(target.getId())).withSelfRel(),
+			linkTo(methodOn(ApiController.class).root(target.getId(), null, null, null, null, null, "")).withRel("root"));
+	}
+
+}
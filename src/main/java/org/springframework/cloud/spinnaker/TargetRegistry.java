@@ -0,0 +1,170 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.cloudfoundry.operations.CloudFoundryOperations;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Targets that have logged in once, so later requests only have to name them. Logging in leaves an authenticated
+ * client behind in {@link CloudFoundryAppDeployerFactory}, which keeps its token refreshed, so using a target is
+ * a map lookup. Targets nobody used for {@link SpinnakerConfiguration.Targets#getIdleTimeout()} are forgotten.
+ *
+ * @author Greg Turnquist
+ */
+public class TargetRegistry {
+
+	private static final Logger log = LoggerFactory.getLogger(TargetRegistry.class);
+
+	private final Map<String, Target> targets = new ConcurrentHashMap<>();
+
+	/**
+	 * Target ids by a digest of their credentials, so logging in twice hands back the same target.
+	 */
+	private final Map<String, String> idsByCredentials = new ConcurrentHashMap<>();
+
+	private final CloudFoundryAppDeployerFactory appDeployerFactory;
+
+	private final SpinnakerConfiguration.Targets settings;
+
+	private volatile long lastSweep = System.currentTimeMillis();
+
+	public TargetRegistry(CloudFoundryAppDeployerFactory appDeployerFactory, SpinnakerConfiguration.Targets settings) {
+		this.appDeployerFactory = appDeployerFactory;
+		this.settings = settings;
+	}
+
+	/**
+	 * Log in to a target and, once that worked, remember it. Failing to log in leaves a target registered before with
+	 * the same credentials alone, since others may still be using it.
+	 *
+	 * @return the registered target
+	 * @throws IllegalArgumentException if the target can't be reached with the given credentials
+	 */
+	public Target register(String api, String org, String space, String email, String password) {
+
+		// Keep the client around until the login is done, even if it takes longer than we're willing to wait
+		final Runnable release = appDeployerFactory.hold(api, email, password);
+		CompletableFuture<?> login = CompletableFuture.completedFuture(null);
+
+		try {
+			final CloudFoundryOperations operations = appDeployerFactory.getOperations(api, org, space, email, password, "");
+			if (operations != null) {
+				login = Publishers.collect(operations.applications().list());
+				login.get(settings.getLoginTimeout(), TimeUnit.MILLISECONDS);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while logging in to " + api, e);
+		} catch (ExecutionException | TimeoutException e) {
+			throw new IllegalArgumentException("Unable to log in to " + org + "/" + space + " at " + api + " as " + email, e);
+		} finally {
+			login.whenComplete((done, e) -> release.run());
+		}
+
+		final Target target = remember(api, org, space, email, password);
+
+		log.debug("Registered " + org + "/" + space + " at " + api + " as " + target.getId());
+		return target;
+	}
+
+	/**
+	 * @param id
+	 * @return the target, unless it was never registered or has been forgotten
+	 */
+	public Optional<Target> get(String id) {
+
+		sweepIdleTargets();
+
+		final Target target = (id != null) ? this.targets.get(id) : null;
+		if (target != null) {
+			target.lastAccess = System.currentTimeMillis();
+		}
+		return Optional.ofNullable(target);
+	}
+
+	/**
+	 * Find the target a request is meant for: either a registered one, by id, or one spelled out by its credentials.
+	 * The latter is remembered as well, so its links can refer to it by id.
+	 *
+	 * @throws UnknownTargetException if the id is unknown
+	 * @throws IllegalArgumentException if neither is given
+	 */
+	public Target resolve(String id, String api, String org, String space, String email, String password) {
+
+		if (id != null) {
+			return get(id).orElseThrow(() -> new UnknownTargetException(id));
+		}
+		if (api == null || org == null || space == null || email == null || password == null) {
+			throw new IllegalArgumentException("Either a target or api, org, space, email and password are required");
+		}
+		return remember(api, org, space, email, password);
+	}
+
+	/**
+	 * @param id
+	 * @return whether there was such a target
+	 */
+	public boolean forget(String id) {
+
+		final Target target = this.targets.remove(id);
+		if (target != null) {
+			this.idsByCredentials.values().remove(id);
+		}
+		return target != null;
+	}
+
+	private Target remember(String api, String org, String space, String email, String password) {
+
+		sweepIdleTargets();
+
+		final String credentials = Digests.sha256(api + ":" + org + ":" + space + ":" + email + ":" + password);
+		final String id = this.idsByCredentials.computeIfAbsent(credentials, key -> UUID.randomUUID().toString());
+		final Target target = this.targets.computeIfAbsent(id, key -> new Target(key, api, org, space, email, password));
+
+		target.lastAccess = System.currentTimeMillis();
+		return target;
+	}
+
+	/**
+	 * Every so often, forget targets nobody has used for a while.
+	 */
+	private void sweepIdleTargets() {
+
+		final long now = System.currentTimeMillis();
+		if (now - this.lastSweep < Math.min(this.settings.getIdleTimeout(), 60000)) {
+			return;
+		}
+		this.lastSweep = now;
+
+		final long cutoff = now - this.settings.getIdleTimeout();
+		this.targets.values().stream()
+			.filter(target -> target.lastAccess < cutoff)
+			.map(Target::getId)
+			.forEach(this::forget);
+	}
+
+}
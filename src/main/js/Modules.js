@@ -14,11 +14,16 @@ class Modules extends React.Component {
 
 	constructor(props) {
 		super(props);
-		this.state = {modules: {}} // TODO: Split up state between each module
+		this.state = {modules: {}, href: undefined} // TODO: Split up state between each module
 		this.findModules = this.findModules.bind(this)
 		this.refresh = this.refresh.bind(this)
 		this.deploy = this.deploy.bind(this)
+		this.deployData = this.deployData.bind(this)
 		this.undeploy = this.undeploy.bind(this)
+		this.followJob = this.followJob.bind(this)
+		this.followBulkJob = this.followBulkJob.bind(this)
+		this.watch = this.watch.bind(this)
+		this.unwatch = this.unwatch.bind(this)
 		this.getNamespace = this.getNamespace.bind(this)
 		this.handleRefreshAll = this.handleRefreshAll.bind(this)
 		this.handleDeployAll = this.handleDeployAll.bind(this)
@@ -33,17 +38,54 @@ class Modules extends React.Component {
 		let password = this.props.settings[this.props.settings.password]
 		let namespace = this.getNamespace()
 
-		let root = '/api?api=' + api + '&org=' + org + '&space=' + space + '&email=' + email + '&password=' + password
-			+ (namespace !== '' ? '&namespace=' + namespace : '')
+		client({
+			method: 'POST',
+			path: '/api/targets',
+			entity: {api: api, org: org, space: space, email: email, password: password},
+			headers: {'Content-Type': 'application/json'}}).done(response => {
+
+			let root = '/api?target=' + response.entity.id + (namespace !== '' ? '&namespace=' + namespace : '')
 
-		follow(client, root, ['modules']).done(response => {
-			this.setState({modules: response.entity._embedded.appStatuses.reduce((prev, curr) => {
-				prev[curr.deploymentId] = curr
-				return prev
-			}, {})})
+			follow(client, root, ['modules']).done(response => {
+				this.setState({
+					href: response.entity._links.self.href,
+					modules: response.entity._embedded.appStatuses.reduce((prev, curr) => {
+						prev[curr.deploymentId] = curr
+						return prev
+					}, {})
+				})
+				this.watch(response.entity._links.stream.href)
+			})
+		}, failure => {
+			alert('FAILURE: ' + failure.entity.message)
 		})
 	}
 
+	watch(streamHref) {
+		this.unwatch()
+		this.events = new EventSource(streamHref)
+		this.events.addEventListener('status', e => {
+			let status = JSON.parse(e.data)
+			let existing = this.state.modules[status.deploymentId]
+			if (existing !== undefined) {
+				let newModules = this.state.modules
+				newModules[status.deploymentId] = Object.assign({}, status, {_links: existing._links})
+				this.setState({modules: newModules})
+			}
+		})
+	}
+
+	unwatch() {
+		if (this.events !== undefined) {
+			this.events.close()
+			this.events = undefined
+		}
+	}
+
+	componentWillUnmount() {
+		this.unwatch()
+	}
+
 	refresh(moduleDetails) {
 		client({method: 'GET', path: moduleDetails._links.self.href}).done(response => {
 			let newModules = this.state.modules
@@ -52,7 +94,7 @@ class Modules extends React.Component {
 		})
 	}
 
-	deploy(moduleDetails) {
+	deployData(moduleDetails) {
 		let data = {}
 
 		if (['clouddriver', 'front50', 'gate', 'igor', 'orca'].find(m => moduleDetails.deploymentId.startsWith(m)) !== undefined) {
@@ -85,24 +127,44 @@ class Modules extends React.Component {
 		data[this.props.settings.domain] = this.props.settings[this.props.settings.domain]
 		data['namespace'] = this.getNamespace()
 
+		return data
+	}
+
+	deploy(moduleDetails) {
 		client({
 			method: 'POST',
 			path: moduleDetails._links.self.href,
-			entity: data,
-			headers: {'Content-Type': 'application/json'}}).done(success => {
+			entity: this.deployData(moduleDetails),
+			headers: {'Content-Type': 'application/json'}}).done(response => {
 
-			this.refresh(moduleDetails)
+			this.followJob(response.entity, moduleDetails)
 		})
 	}
 
 	undeploy(moduleDetails) {
-		client({method: 'DELETE', path: moduleDetails._links.self.href}).done(success => {
-			this.refresh(moduleDetails)
+		client({method: 'DELETE', path: moduleDetails._links.self.href}).done(response => {
+			this.followJob(response.entity, moduleDetails)
 		}, failure => {
 			alert('FAILURE: ' + failure.entity.message)
 		})
 	}
 
+	followJob(job, moduleDetails) {
+		this.refresh(moduleDetails)
+		if (job.state === 'succeeded') {
+			return
+		}
+		if (job.state === 'failed') {
+			alert('FAILURE: ' + job.operation + ' ' + job.deploymentId + ': ' + job.message)
+			return
+		}
+		setTimeout(() => {
+			client({method: 'GET', path: job._links.self.href}).done(response => {
+				this.followJob(response.entity, moduleDetails)
+			})
+		}, 2000)
+	}
+
 	getNamespace() {
 		if (this.props.settings['all.namespace'] !== undefined && this.props.settings['all.namespace'] !== '') {
 			return '-' + this.props.settings['all.namespace']
@@ -120,18 +182,48 @@ class Modules extends React.Component {
 
 	handleDeployAll(e) {
 		e.preventDefault()
+		let data = {}
 		Object.keys(this.state.modules).map(key => {
-			this.deploy(this.state.modules[key])
+			data[key] = this.deployData(this.state.modules[key])
+		})
+
+		client({
+			method: 'POST',
+			path: this.state.href,
+			entity: data,
+			headers: {'Content-Type': 'application/json'}}).done(response => {
+			this.followBulkJob(response.entity)
+		}, failure => {
+			alert('FAILURE: ' + failure.entity.message)
 		})
 	}
 
 	handleUndeployAll(e) {
 		e.preventDefault()
-		Object.keys(this.state.modules).map(key => {
-			this.undeploy(this.state.modules[key])
+		client({method: 'DELETE', path: this.state.href}).done(response => {
+			this.followBulkJob(response.entity)
+		}, failure => {
+			alert('FAILURE: ' + failure.entity.message)
 		})
 	}
 
+	followBulkJob(job) {
+		if (job.state === 'succeeded' || job.state === 'failed') {
+			if (job.state === 'failed') {
+				alert('FAILURE: ' + job.operation + ' ' + job.deploymentId + ': ' + job.message)
+			}
+			Object.keys(this.state.modules).map(key => {
+				this.refresh(this.state.modules[key])
+			})
+			return
+		}
+		setTimeout(() => {
+			client({method: 'GET', path: job._links.self.href}).done(response => {
+				this.followBulkJob(response.entity)
+			})
+		}, 2000)
+	}
+
 	render() {
 		let modules = Object.keys(this.state.modules).map(name =>
 			<Module key={name}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+/**
+ * @author Greg Turnquist
+ */
+public class ApiExceptionHandlerTests {
+
+	ModuleService moduleService;
+
+	DeploymentJobs deploymentJobs;
+
+	MockMvc mockMvc;
+
+	@Before
+	public void setUp() {
+
+		TargetRegistry targets = new TargetRegistry(new TestAppDeployerFactory(), new SpinnakerConfiguration.Targets());
+		moduleService = mock(ModuleService.class);
+		deploymentJobs = mock(DeploymentJobs.class);
+
+		mockMvc = MockMvcBuilders.standaloneSetup(
+				new ModuleController(moduleService, deploymentJobs, mock(ModuleStatusStream.class), targets),
+				new ApiController(targets))
+			.setControllerAdvice(new ApiExceptionHandler())
+			.build();
+	}
+
+	@Test
+	public void shouldAnswerNotFoundForAnUnknownTarget() throws Exception {
+
+		mockMvc.perform(get("/api/modules").param("target", "nope"))
+			.andExpect(status().isNotFound())
+			.andExpect(content().string(containsString("Unknown target 'nope'")));
+
+		mockMvc.perform(delete("/api/modules/clouddriver").param("target", "nope"))
+			.andExpect(status().isNotFound());
+	}
+
+	@Test
+	public void shouldAnswerBadRequestWithoutATarget() throws Exception {
+
+		mockMvc.perform(get("/api").param("api", "api.example.com"))
+			.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	public void shouldTurnAwayAnUnknownModuleBeforeQueueingAJob() throws Exception {
+
+		// given
+		given(moduleService.getModuleDetails("nothing")).willThrow(new IllegalArgumentException("Module 'nothing' is not managed by this system"));
+
+		// when
+		mockMvc.perform(post("/api/modules/nothing").param("api", "api.example.com").param("org", "org").param("space", "space")
+				.param("email", "user").param("password", "password")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{}"))
+			.andExpect(status().isBadRequest())
+			.andExpect(content().string(containsString("Module 'nothing' is not managed")));
+
+		// then
+		then(deploymentJobs).should(never()).submit(anyString(), anyString(), any());
+	}
+
+	@Test
+	public void shouldAnswerServiceUnavailableWhenJobsAreTurnedAway() throws Exception {
+
+		// given
+		given(deploymentJobs.submit(anyString(), anyString(), any())).willThrow(new RejectedExecutionException("Too many jobs waiting"));
+
+		// when
+		mockMvc.perform(delete("/api/modules/clouddriver").param("api", "api.example.com").param("org", "org").param("space", "space")
+				.param("email", "user").param("password", "password"))
+			.andExpect(status().isServiceUnavailable())
+			.andExpect(content().string(containsString("Too many jobs waiting")));
+
+		// then
+		// the answer is all there is to check
+	}
+
+}
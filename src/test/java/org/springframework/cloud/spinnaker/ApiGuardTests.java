@@ -0,0 +1,127 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+/**
+ * @author Greg Turnquist
+ */
+public class ApiGuardTests {
+
+	SpinnakerConfiguration.Limits limits;
+
+	@Before
+	public void setUp() {
+
+		limits = new SpinnakerConfiguration.Limits();
+		limits.setRate(0);
+		limits.setFailureThreshold(3);
+		limits.setOpenTimeout(100);
+	}
+
+	@Test
+	public void shouldTurnAwayCallsBeyondTheBurst() {
+
+		// given
+		limits.setRate(1);
+		limits.setBurst(5);
+		ApiGuard guard = new ApiGuard("api.example.com", limits);
+
+		// when
+		int allowed = 0;
+		for (int i = 0; i < 10; i++) {
+			try {
+				guard.acquire();
+				allowed++;
+			} catch (ApiUnavailableException e) {
+				// turned away
+			}
+		}
+
+		// then
+		assertThat(allowed, equalTo(5));
+		assertThat(guard.getRejected(), equalTo(5L));
+	}
+
+	@Test
+	public void shouldOpenAfterEnoughFailuresAndRecoverAfterTheTimeout() throws Exception {
+
+		// given
+		ApiGuard guard = new ApiGuard("api.example.com", limits);
+
+		// when
+		for (int i = 0; i < 3; i++) {
+			guard.acquire();
+			guard.completed(new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE));
+		}
+
+		// then
+		assertThat(guard.isOpen(), equalTo(true));
+		assertThat(guard.getTripped(), equalTo(1L));
+		assertThat(rejects(guard), equalTo(true));
+
+		// when
+		Thread.sleep(150);
+		guard.acquire();
+
+		// then
+		assertThat(rejects(guard), equalTo(true));
+
+		// when
+		guard.completed(null);
+
+		// then
+		assertThat(guard.isOpen(), equalTo(false));
+		assertThat(rejects(guard), equalTo(false));
+	}
+
+	@Test
+	public void shouldNotCountMissingApplicationsAsFailures() {
+
+		// given
+		ApiGuard guard = new ApiGuard("api.example.com", limits);
+
+		// when
+		for (int i = 0; i < 10; i++) {
+			guard.acquire();
+			guard.completed(new HttpClientErrorException(HttpStatus.NOT_FOUND));
+		}
+
+		// then
+		assertThat(guard.isOpen(), equalTo(false));
+		assertThat(ApiGuard.isFailure(new HttpClientErrorException(HttpStatus.TOO_MANY_REQUESTS)), equalTo(true));
+	}
+
+	private static boolean rejects(ApiGuard guard) {
+
+		try {
+			guard.acquire();
+			return false;
+		} catch (ApiUnavailableException e) {
+			return true;
+		}
+	}
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Greg Turnquist
+ */
+public class DeckArtifactCacheTests {
+
+	@Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	SpinnakerConfiguration.DeckCache settings;
+
+	AtomicInteger builds;
+
+	@Before
+	public void setUp() throws IOException {
+
+		settings = new SpinnakerConfiguration.DeckCache();
+		settings.setDirectory(temporaryFolder.newFolder().getAbsolutePath());
+		builds = new AtomicInteger();
+	}
+
+	@Test
+	public void shouldReuseArtifactBuiltWithSameSettings() throws IOException {
+
+		// given
+		DeckArtifactCache cache = new DeckArtifactCache(settings);
+
+		// when
+		Path first = cache.get("abc123", Arrays.asList("-ns", "cfapps.io"), this::build);
+		Path second = cache.get("abc123", Arrays.asList("-ns", "cfapps.io"), this::build);
+		Path otherSpace = cache.get("abc123", Arrays.asList("-other", "cfapps.io"), this::build);
+
+		// then
+		assertThat(second, equalTo(first));
+		assertThat(otherSpace, not(equalTo(first)));
+		assertThat(builds.get(), equalTo(2));
+	}
+
+	@Test
+	public void shouldEvictLeastRecentlyUsedArtifacts() throws IOException {
+
+		// given
+		settings.setMaxSize(25);
+		DeckArtifactCache cache = new DeckArtifactCache(settings);
+
+		Path first = getAndRelease(cache, "first");
+		Path second = getAndRelease(cache, "second");
+
+		// when
+		getAndRelease(cache, "first");
+		Path third = getAndRelease(cache, "third");
+
+		// then
+		assertThat(Files.exists(first), equalTo(true));
+		assertThat(Files.exists(second), equalTo(false));
+		assertThat(Files.exists(third), equalTo(true));
+		assertThat(builds.get(), equalTo(3));
+	}
+
+	@Test
+	public void shouldNotEvictArtifactsStillInUse() throws IOException {
+
+		// given
+		settings.setMaxSize(15);
+		DeckArtifactCache cache = new DeckArtifactCache(settings);
+
+		Path first = cache.get("abc123", Arrays.asList("first"), this::build);
+
+		// when
+		getAndRelease(cache, "second");
+
+		// then
+		assertThat(Files.exists(first), equalTo(true));
+		assertThat(cache.pinCount(), equalTo(1));
+
+		// when
+		cache.release(first);
+		Path third = getAndRelease(cache, "third");
+
+		// then
+		assertThat(Files.exists(first), equalTo(false));
+		assertThat(Files.exists(third), equalTo(true));
+		assertThat(cache.pinCount(), equalTo(0));
+	}
+
+	@Test
+	public void shouldPickUpArtifactsFromAPreviousRun() throws IOException {
+
+		// given
+		new DeckArtifactCache(settings).get("abc123", Arrays.asList("-ns"), this::build);
+
+		// when
+		new DeckArtifactCache(settings).get("abc123", Arrays.asList("-ns"), this::build);
+
+		// then
+		assertThat(builds.get(), equalTo(1));
+	}
+
+	private Path getAndRelease(DeckArtifactCache cache, String setting) throws IOException {
+
+		Path cached = cache.get("abc123", Arrays.asList(setting), this::build);
+		cache.release(cached);
+		return cached;
+	}
+
+	private void build(Path target) throws IOException {
+		builds.incrementAndGet();
+		Files.write(target, "0123456789".getBytes());
+	}
+
+}
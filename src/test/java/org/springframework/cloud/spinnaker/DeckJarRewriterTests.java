@@ -0,0 +1,100 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.jar.JarFile;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.springframework.util.StreamUtils;
+
+/**
+ * @author Greg Turnquist
+ */
+public class DeckJarRewriterTests {
+
+	@Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void shouldRewriteSettingsJsAndCopyEverythingElse() throws IOException {
+
+		// given
+		Path original = temporaryFolder.newFile("deck.jar").toPath();
+		Path rewritten = temporaryFolder.newFile("deck-rewritten.jar").toPath();
+
+		try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(original))) {
+			addEntry(zip, "META-INF/MANIFEST.MF", "Manifest-Version: 1.0\r\nCreated-By: gradle\r\n\r\n");
+			addEntry(zip, "index.html", "<html><body>deck</body></html>");
+			addStoredEntry(zip, "favicon.ico", "not really an icon");
+			addEntry(zip, "settings.js", "var gateHost = '{gate}';");
+		}
+
+		// when
+		new DeckJarRewriter(StandardCharsets.UTF_8).rewrite(original, rewritten, settingsJs -> settingsJs.replace("{gate}", "https://gate.example.com"));
+
+		// then
+		try (JarFile jarFile = new JarFile(rewritten.toFile())) {
+			assertThat(jarFile.size(), equalTo(4));
+			assertThat(jarFile.getManifest(), notNullValue());
+			assertThat(jarFile.getManifest().getMainAttributes().getValue("Created-By"), nullValue());
+			assertThat(contentsOf(jarFile, "index.html"), equalTo("<html><body>deck</body></html>"));
+			assertThat(contentsOf(jarFile, "favicon.ico"), equalTo("not really an icon"));
+			assertThat(contentsOf(jarFile, "settings.js"), equalTo("var gateHost = 'https://gate.example.com';"));
+		}
+	}
+
+	private static void addEntry(ZipOutputStream zip, String name, String contents) throws IOException {
+
+		zip.putNextEntry(new ZipEntry(name));
+		zip.write(contents.getBytes(StandardCharsets.UTF_8));
+		zip.closeEntry();
+	}
+
+	private static void addStoredEntry(ZipOutputStream zip, String name, String contents) throws IOException {
+
+		byte[] bytes = contents.getBytes(StandardCharsets.UTF_8);
+		CRC32 crc = new CRC32();
+		crc.update(bytes);
+
+		ZipEntry entry = new ZipEntry(name);
+		entry.setMethod(ZipEntry.STORED);
+		entry.setSize(bytes.length);
+		entry.setCrc(crc.getValue());
+
+		zip.putNextEntry(entry);
+		zip.write(bytes);
+		zip.closeEntry();
+	}
+
+	private static String contentsOf(JarFile jarFile, String name) throws IOException {
+		return StreamUtils.copyToString(jarFile.getInputStream(jarFile.getEntry(name)), StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.withSettings;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.cloudfoundry.client.CloudFoundryClient;
+import org.cloudfoundry.client.v2.applications.ApplicationsV2;
+import org.cloudfoundry.client.v2.applications.CopyApplicationRequest;
+import org.cloudfoundry.operations.CloudFoundryOperations;
+import org.junit.Before;
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * @author Greg Turnquist
+ */
+public class DefaultAppDeployerFactoryTests {
+
+	private static final String API = "https://api.example.com";
+
+	SpinnakerConfiguration.Deployers settings;
+
+	SpinnakerConfiguration.Limits limits;
+
+	List<CloudFoundryClient> clients;
+
+	DefaultAppDeployerFactory factory;
+
+	@Before
+	public void setUp() {
+
+		settings = new SpinnakerConfiguration.Deployers();
+		limits = new SpinnakerConfiguration.Limits();
+		clients = new ArrayList<>();
+
+		factory = new DefaultAppDeployerFactory(settings, limits) {
+
+			@Override
+			CloudFoundryClient createClient(String api, String email, String password) {
+				CloudFoundryClient client = mock(CloudFoundryClient.class, withSettings().extraInterfaces(DisposableBean.class));
+				clients.add(client);
+				return client;
+			}
+
+			@Override
+			CloudFoundryOperations createOperations(CloudFoundryClient client, String org, String space) {
+				return mock(CloudFoundryOperations.class);
+			}
+		};
+	}
+
+	@Test
+	public void shouldHandOutTheSameDeployerForTheSameTarget() {
+
+		// when
+		CloudFoundryOperations first = factory.getOperations(API, "org", "space", "user", "password", "");
+		CloudFoundryOperations second = factory.getOperations(API, "org", "space", "user", "password", "");
+
+		// then
+		assertThat(second, sameInstance(first));
+		assertThat(metric("spinnaker.deployers.hits"), equalTo(1L));
+		assertThat(metric("spinnaker.deployers.misses"), equalTo(1L));
+	}
+
+	@Test
+	public void shouldShareOneClientPerEndpointAndCredentials() {
+
+		// when
+		factory.getObject(API, "org", "space", "user", "password", "");
+		factory.getObject(API, "org", "other-space", "user", "password", "-ns");
+		factory.getObject(API, "org", "space", "someone-else", "secret", "");
+
+		// then
+		assertThat(clients.size(), equalTo(2));
+		assertThat(metric("spinnaker.deployers.size"), equalTo(3L));
+		assertThat(metric("spinnaker.deployers.clients"), equalTo(2L));
+	}
+
+	@Test
+	public void shouldKeepAtMostMaxSizeDeployers() throws Exception {
+
+		// given
+		settings.setMaxSize(2);
+
+		// when
+		factory.getObject(API, "org", "a", "user", "password", "");
+		Thread.sleep(5);
+		factory.getObject(API, "org", "b", "user", "password", "");
+		Thread.sleep(5);
+		factory.getObject(API, "org", "c", "user", "password", "");
+
+		// then
+		assertThat(metric("spinnaker.deployers.size"), equalTo(2L));
+		assertThat(metric("spinnaker.deployers.evictions"), equalTo(1L));
+		then((DisposableBean) clients.get(0)).should(never()).destroy();
+	}
+
+	@Test
+	public void shouldDisposeOfAClientOnceNoDeployerUsesIt() throws Exception {
+
+		// given
+		settings.setMaxSize(1);
+
+		// when
+		factory.getObject(API, "org", "space", "user", "password", "");
+		Thread.sleep(5);
+		factory.getObject(API, "org", "space", "someone-else", "secret", "");
+
+		// then
+		then((DisposableBean) clients.get(0)).should().destroy();
+		then((DisposableBean) clients.get(1)).should(never()).destroy();
+		assertThat(metric("spinnaker.deployers.clients"), equalTo(1L));
+	}
+
+	@Test
+	public void shouldDisposeOfIdleDeployers() throws Exception {
+
+		// given
+		settings.setIdleTimeout(1);
+		factory.getObject(API, "org", "space", "user", "password", "");
+		Thread.sleep(10);
+
+		// when
+		factory.getObject(API, "org", "space", "someone-else", "secret", "");
+
+		// then
+		assertThat(metric("spinnaker.deployers.size"), equalTo(1L));
+		then((DisposableBean) clients.get(0)).should().destroy();
+	}
+
+	@Test
+	public void shouldNotDisposeOfAClientWhileItIsInUse() throws Exception {
+
+		// given
+		settings.setMaxSize(1);
+
+		// when
+		factory.using(API, "user", "password", () -> {
+			factory.getObject(API, "org", "space", "user", "password", "");
+			Thread.sleep(5);
+			factory.getObject(API, "org", "space", "someone-else", "secret", "");
+
+			// then
+			then((DisposableBean) clients.get(0)).should(never()).destroy();
+		});
+
+		// then
+		then((DisposableBean) clients.get(0)).should().destroy();
+		assertThat(metric("spinnaker.deployers.clients"), equalTo(1L));
+	}
+
+	@Test
+	public void shouldNotDisposeOfAClientWhileALookupIsPending() throws Exception {
+
+		// given
+		settings.setMaxSize(1);
+		CompletableFuture<String> lookup = new CompletableFuture<>();
+		Runnable release = factory.hold(API, "user", "password");
+		factory.getOperations(API, "org", "space", "user", "password", "");
+		lookup.whenComplete((status, e) -> release.run());
+
+		// when
+		Thread.sleep(5);
+		factory.getObject(API, "org", "space", "someone-else", "secret", "");
+
+		// then
+		assertThat(metric("spinnaker.deployers.evictions"), equalTo(1L));
+		then((DisposableBean) clients.get(0)).should(never()).destroy();
+
+		// when
+		lookup.complete("running");
+		release.run();
+
+		// then
+		then((DisposableBean) clients.get(0)).should().destroy();
+		assertThat(metric("spinnaker.deployers.clients"), equalTo(1L));
+	}
+
+	@Test
+	public void shouldGuardCallsMadeStraightToTheClient() throws Exception {
+
+		// given
+		limits.setRate(1);
+		limits.setBurst(1);
+		CloudFoundryClient client = factory.getClient(API, "org", "space", "user", "password", "");
+		ApplicationsV2 applications = mock(ApplicationsV2.class);
+		given(clients.get(0).applicationsV2()).willReturn(applications);
+		given(applications.copy(any())).willReturn(Mono.empty());
+		CopyApplicationRequest request = CopyApplicationRequest.builder()
+			.applicationId("target-id")
+			.sourceApplicationId("source-id")
+			.build();
+
+		// when
+		CompletableFuture<?> first = Publishers.collect(client.applicationsV2().copy(request));
+		CompletableFuture<?> second = Publishers.collect(client.applicationsV2().copy(request));
+
+		// then
+		assertThat(client, not(sameInstance(clients.get(0))));
+		assertThat(first.handle((value, e) -> e == null).get(5, TimeUnit.SECONDS), equalTo(true));
+		assertThat(second.handle((value, e) -> ApiGuard.isThrottled(e)).get(5, TimeUnit.SECONDS), equalTo(true));
+		assertThat(metric("spinnaker.api.api_example_com.rejected"), equalTo(1L));
+	}
+
+	@Test
+	public void shouldNotKeepCredentialsInCacheKeys() {
+
+		// when
+		factory.getObject(API, "org", "space", "user", "s3cr3t", "");
+
+		// then
+		assertThat(factory.getCacheKeys().size(), equalTo(1));
+		factory.getCacheKeys().forEach(key -> {
+			assertThat(key.contains("s3cr3t"), equalTo(false));
+			assertThat(key.contains("user"), equalTo(false));
+		});
+		assertThat(factory.getCacheKeys().iterator().next(), not(equalTo("")));
+	}
+
+	private long metric(String name) {
+
+		return factory.metrics().stream()
+			.filter(metric -> metric.getName().equals(name))
+			.findFirst()
+			.map(metric -> metric.getValue().longValue())
+			.orElseThrow(() -> new AssertionError("No metric " + name));
+	}
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import org.springframework.boot.actuate.metrics.Metric;
+
+/**
+ * @author Greg Turnquist
+ */
+public class DeployMetricsTests {
+
+	DeployMetrics metrics = new DeployMetrics();
+
+	@Test
+	public void shouldReportPercentilesPerStageModuleAndTarget() {
+
+		// given
+		for (int i = 0; i < 98; i++) {
+			metrics.record("push", "clouddriver", "api_run_pivotal_io", 40);
+		}
+		metrics.record("push", "clouddriver", "api_run_pivotal_io", 900);
+		metrics.record("push", "clouddriver", "api_run_pivotal_io", 30000);
+
+		// when
+		Map<String, Number> values = values();
+
+		// then
+		assertThat(values.get("spinnaker.deploy.push.clouddriver.api_run_pivotal_io.count"), equalTo(100L));
+		assertThat(values.get("spinnaker.deploy.push.clouddriver.api_run_pivotal_io.p50"), equalTo(50L));
+		assertThat(values.get("spinnaker.deploy.push.clouddriver.api_run_pivotal_io.p99"), equalTo(1000L));
+		assertThat(values.get("spinnaker.deploy.push.clouddriver.api_run_pivotal_io.max"), equalTo(30000L));
+	}
+
+	@Test
+	public void shouldCountCallsErrorsAndBytes() {
+
+		// when
+		metrics.statusCalled();
+		metrics.cloudFoundryError();
+		metrics.cloudFoundryRejection();
+		metrics.uploaded(1024);
+		metrics.uploaded(2048);
+
+		// then
+		Map<String, Number> values = values();
+		assertThat(values.get("spinnaker.status.calls"), equalTo(1L));
+		assertThat(values.get("spinnaker.cf.errors"), equalTo(1L));
+		assertThat(values.get("spinnaker.cf.rejected"), equalTo(1L));
+		assertThat(values.get("spinnaker.deploy.bytesUploaded"), equalTo(3072L));
+	}
+
+	@Test
+	public void shouldNameTargetsAfterTheirApiHost() {
+
+		assertThat(DeployMetrics.target("https://api.run.pivotal.io"), equalTo("api_run_pivotal_io"));
+		assertThat(DeployMetrics.target("api.local.pcfdev.io"), equalTo("api_local_pcfdev_io"));
+	}
+
+	private Map<String, Number> values() {
+		return metrics.metrics().stream()
+			.collect(Collectors.toMap(Metric::getName, Metric::getValue));
+	}
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.Test;
+
+/**
+ * @author Greg Turnquist
+ */
+public class DeploymentJobsTests {
+
+	@Test
+	public void shouldReportTheLastStageOfAFailedJob() {
+
+		// given
+		DeploymentJobs jobs = new DeploymentJobs(new SpinnakerConfiguration.Jobs(), Runnable::run);
+
+		// when
+		DeploymentJob job = jobs.submit("deploy", "clouddriver", stages -> {
+			stages.accept("resolving properties");
+			throw new IllegalStateException("Circular placeholder reference");
+		});
+
+		// then
+		assertThat(job.getState(), equalTo(DeploymentJob.State.failed));
+		assertThat(job.getStage(), equalTo("resolving properties"));
+		assertThat(job.getMessage(), equalTo("Circular placeholder reference"));
+		assertThat(jobs.get(job.getId()).isPresent(), equalTo(true));
+	}
+
+	@Test
+	public void shouldTrackJobsThatSucceed() {
+
+		// given
+		DeploymentJobs jobs = new DeploymentJobs(new SpinnakerConfiguration.Jobs(), Runnable::run);
+
+		// when
+		DeploymentJob job = jobs.submit("undeploy", "deck", stages -> stages.accept("undeploying"));
+
+		// then
+		assertThat(job.getState(), equalTo(DeploymentJob.State.succeeded));
+		assertThat(jobs.get(job.getId()).get().getOperation(), equalTo("undeploy"));
+	}
+
+	@Test
+	public void shouldTrackEachApplicationOfABulkJob() {
+
+		// given
+		DeploymentJobs jobs = new DeploymentJobs(new SpinnakerConfiguration.Jobs(), Runnable::run);
+
+		// when
+		DeploymentJob job = jobs.submitBulk("undeploy", "all modules in [-a, -b]", progress -> {
+			progress.accept("deck-a", "undeploying");
+			progress.accept("deck-b", "not deployed");
+			progress.accept("deck-a", "undeployed");
+		});
+
+		// then
+		assertThat(job.getState(), equalTo(DeploymentJob.State.succeeded));
+		assertThat(job.getProgress().get("deck-a"), equalTo("undeployed"));
+		assertThat(job.getProgress().get("deck-b"), equalTo("not deployed"));
+	}
+
+	@Test
+	public void shouldForgetJobsThatCouldNotBeQueued() {
+
+		// given
+		DeploymentJobs jobs = new DeploymentJobs(new SpinnakerConfiguration.Jobs(), command -> {
+			throw new RejectedExecutionException("full");
+		});
+
+		// when
+		try {
+			jobs.submit("deploy", "orca", stages -> {});
+		} catch (RejectedExecutionException e) {
+			// then
+			assertThat(e.getMessage(), equalTo("full"));
+			return;
+		}
+		fail("Expected the job to be turned away");
+	}
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+/**
+ * @author Greg Turnquist
+ */
+public class ModuleArtifactIndexTests {
+
+	@Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Rule public ExpectedException thrown = ExpectedException.none();
+
+	SpinnakerConfiguration spinnakerConfiguration;
+
+	File modules;
+
+	@Before
+	public void setUp() throws IOException {
+
+		modules = temporaryFolder.newFolder("spinnaker-modules");
+
+		spinnakerConfiguration = new SpinnakerConfiguration();
+		spinnakerConfiguration.setModules(Arrays.asList(module("clouddriver"), module("deck")));
+		spinnakerConfiguration.getArtifacts().setLocation("file:" + modules.getAbsolutePath() + "/**/*.jar");
+	}
+
+	@Test
+	public void shouldWorkOutSizeAndDigestOfEachArtifact() throws IOException {
+
+		// given
+		jar("clouddriver/build/libs/clouddriver-1.0.jar", "hello");
+		jar("deck/build/libs/deck-1.0.jar", "deck");
+		jar("other/clouddriver-2.0.jar", "not in the clouddriver directory");
+		Files.write(modules.toPath().resolve("clouddriver/build/libs/clouddriver-1.0.jar.sha1"), "ignored".getBytes());
+
+		// when
+		ModuleArtifactIndex index = new ModuleArtifactIndex(spinnakerConfiguration, new PathMatchingResourcePatternResolver());
+
+		// then
+		ModuleArtifactIndex.IndexedArtifact clouddriver = index.get(module("clouddriver"));
+		assertThat(clouddriver.getResource().getFilename(), equalTo("clouddriver-1.0.jar"));
+		assertThat(clouddriver.getSize(), equalTo(5L));
+		assertThat(clouddriver.getSha256(), equalTo("2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824"));
+		assertThat(index.get(module("deck")).getResource().getFilename(), equalTo("deck-1.0.jar"));
+	}
+
+	@Test
+	public void shouldRefuseModulesWithMoreThanOneArtifact() throws IOException {
+
+		// given
+		jar("clouddriver/build/libs/clouddriver-1.0.jar", "hello");
+		jar("clouddriver/build/libs/clouddriver-1.1.jar", "hello again");
+		jar("deck/build/libs/deck-1.0.jar", "deck");
+
+		thrown.expect(IllegalStateException.class);
+		thrown.expectMessage("Found 2 artifacts for module 'clouddriver'");
+
+		// when
+		new ModuleArtifactIndex(spinnakerConfiguration, new PathMatchingResourcePatternResolver());
+
+		// then
+		// JUnit exception conditions are at the top
+	}
+
+	@Test
+	public void shouldRefuseMissingArtifacts() throws IOException {
+
+		// given
+		jar("clouddriver/build/libs/clouddriver-1.0.jar", "hello");
+
+		thrown.expect(IllegalStateException.class);
+		thrown.expectMessage("Unable to find artifact 'deck' for module 'deck'");
+
+		// when
+		new ModuleArtifactIndex(spinnakerConfiguration, new PathMatchingResourcePatternResolver());
+
+		// then
+		// JUnit exception conditions are at the top
+	}
+
+	@Test
+	public void shouldOnlyRefuseToDeployMissingArtifactsWhenToldNotToFail() throws IOException {
+
+		// given
+		jar("clouddriver/build/libs/clouddriver-1.0.jar", "hello");
+		spinnakerConfiguration.getArtifacts().setFailOnMissing(false);
+		ModuleArtifactIndex index = new ModuleArtifactIndex(spinnakerConfiguration, new PathMatchingResourcePatternResolver());
+
+		assertThat(index.get(module("clouddriver")).getSize(), equalTo(5L));
+
+		thrown.expect(IllegalStateException.class);
+		thrown.expectMessage("No artifact 'deck' available for module 'deck'");
+
+		// when
+		index.get(module("deck"));
+
+		// then
+		// JUnit exception conditions are at the top
+	}
+
+	private void jar(String path, String contents) throws IOException {
+
+		Path jar = modules.toPath().resolve(path);
+		Files.createDirectories(jar.getParent());
+		Files.write(jar, contents.getBytes());
+	}
+
+	private static ModuleDetails module(String name) {
+
+		ModuleDetails details = new ModuleDetails();
+		details.setName(name);
+		details.setArtifact(name);
+		return details;
+	}
+
+}
@@ -0,0 +1,319 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.cloud.deployer.spi.app.AppStatus;
+import org.springframework.cloud.deployer.spi.app.DeploymentState;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.hateoas.Resource;
+import org.springframework.hateoas.Resources;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+/**
+ * Drives {@link ModuleController} with many concurrent dashboard users and deployments against a
+ * {@link SimulatedCloudFoundry}, reporting throughput along with p50 and p99 latency.
+ *
+ * The defaults keep the run short enough for every build. Scale it up with system properties, e.g.
+ * {@literal -Dloadtest.clients=64 -Dloadtest.requests=200 -Dloadtest.latency=80 -Dloadtest.throttleRate=0.05}.
+ *
+ * @author Greg Turnquist
+ */
+public class ModuleControllerLoadTests {
+
+	private static final Logger log = LoggerFactory.getLogger(ModuleControllerLoadTests.class);
+
+	private static final List<String> MODULES = Arrays.asList("clouddriver", "echo", "front50", "gate", "igor", "orca");
+
+	private static final String TARGET = "?api=api.example.com&org=org&space=space&email=user&password=password";
+
+	@Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	int clients = Integer.getInteger("loadtest.clients", 16);
+
+	int requests = Integer.getInteger("loadtest.requests", 20);
+
+	int deployments = Integer.getInteger("loadtest.deployments", 12);
+
+	SimulatedCloudFoundry cloudFoundry;
+
+	ExecutorService statusExecutor;
+
+	ExecutorService deployExecutor;
+
+	ExecutorService jobExecutor;
+
+	ThreadPoolTaskScheduler scheduler;
+
+	DeploymentJobs deploymentJobs;
+
+	MockMvc mockMvc;
+
+	@Before
+	public void setUp() throws IOException {
+
+		cloudFoundry = new SimulatedCloudFoundry(MODULES);
+		cloudFoundry.latency = Long.getLong("loadtest.latency", 20L);
+		cloudFoundry.jitter = Long.getLong("loadtest.jitter", 10L);
+		cloudFoundry.stagingTime = Long.getLong("loadtest.stagingTime", 200L);
+		cloudFoundry.throttleRate = Double.parseDouble(System.getProperty("loadtest.throttleRate", "0.02"));
+		cloudFoundry.failureRate = Double.parseDouble(System.getProperty("loadtest.failureRate", "0.01"));
+
+		SpinnakerConfiguration spinnakerConfiguration = new SpinnakerConfiguration();
+		spinnakerConfiguration.setModules(MODULES.stream()
+			.map(name -> {
+				ModuleDetails details = new ModuleDetails();
+				details.setName(name);
+				details.setArtifact(name + "-web");
+				return details;
+			})
+			.collect(Collectors.toList()));
+		spinnakerConfiguration.getStatus().setCacheTtl(Long.getLong("loadtest.cacheTtl", 0L));
+		spinnakerConfiguration.getArtifacts().setLocation("file:" + artifacts() + "/**/*.jar");
+		spinnakerConfiguration.getDeckCache().setDirectory(temporaryFolder.newFolder("deck-cache").getPath());
+		spinnakerConfiguration.getJobs().setQueueCapacity(deployments);
+
+		statusExecutor = Executors.newFixedThreadPool(spinnakerConfiguration.getStatus().getThreads());
+		deployExecutor = Executors.newFixedThreadPool(spinnakerConfiguration.getDeploy().getParallelism());
+		jobExecutor = Executors.newFixedThreadPool(spinnakerConfiguration.getJobs().getThreads());
+		scheduler = new ThreadPoolTaskScheduler();
+		scheduler.initialize();
+
+		ModuleService moduleService = new ModuleService(spinnakerConfiguration, cloudFoundry,
+			new ModuleArtifactIndex(spinnakerConfiguration, new PathMatchingResourcePatternResolver()),
+			new DeckArtifactCache(spinnakerConfiguration.getDeckCache()), statusExecutor,
+			new ModuleStatusCache(spinnakerConfiguration.getStatus(), statusExecutor, scheduler), deployExecutor, scheduler, new DeployMetrics());
+
+		deploymentJobs = new DeploymentJobs(spinnakerConfiguration.getJobs(), jobExecutor);
+
+		mockMvc = MockMvcBuilders.standaloneSetup(new ModuleController(moduleService, deploymentJobs,
+			new ModuleStatusStream(moduleService, mock(TaskScheduler.class), spinnakerConfiguration.getStatus()),
+			new TargetRegistry(cloudFoundry, spinnakerConfiguration.getTargets()))).build();
+	}
+
+	@After
+	public void tearDown() {
+
+		cloudFoundry.shutdown();
+		statusExecutor.shutdownNow();
+		deployExecutor.shutdownNow();
+		jobExecutor.shutdownNow();
+		scheduler.shutdown();
+	}
+
+	@Test
+	public void shouldServeManyDashboardsAtOnce() throws Exception {
+
+		// given
+		double errorRate = cloudFoundry.throttleRate + cloudFoundry.failureRate;
+
+		// when
+		Dashboards dashboards = loadDashboards(clients, requests);
+
+		// then
+		log.info("{} of {} statuses were unknown; Cloud Foundry throttled {} and failed {} of {} calls", dashboards.unknown,
+			dashboards.statuses, cloudFoundry.throttled.get(), cloudFoundry.failed.get(), cloudFoundry.calls.get());
+		assertThat(dashboards.latencies.size(), equalTo(clients * requests));
+		assertThat(dashboards.errors.get(), equalTo(0));
+		assertThat(dashboards.statuses.get(), equalTo(clients * requests * MODULES.size()));
+		// A status is only unknown if listing the space or looking up the module failed for good, each of which
+		// happens at most at the simulated error rate. Anything well beyond that is the service's own doing.
+		assertThat((double) dashboards.unknown.get() / dashboards.statuses.get(), lessThanOrEqualTo(Math.min(1.0, 3 * errorRate)));
+	}
+
+	@Test
+	public void shouldReportModulesAsUnknownWhileCloudFoundryFails() throws Exception {
+
+		// given
+		cloudFoundry.throttleRate = 0.0;
+		cloudFoundry.failureRate = 1.0;
+
+		// when
+		Dashboards dashboards = loadDashboards(4, 5);
+
+		// then
+		assertThat(dashboards.errors.get(), equalTo(0));
+		assertThat(dashboards.statuses.get(), equalTo(4 * 5 * MODULES.size()));
+		assertThat(dashboards.unknown.get(), equalTo(dashboards.statuses.get()));
+		assertThat(cloudFoundry.failed.get(), equalTo(cloudFoundry.calls.get()));
+	}
+
+	/**
+	 * Have each client load the dashboard the given number of times, one request after the other.
+	 */
+	private Dashboards loadDashboards(int clients, int requests) throws Exception {
+
+		ExecutorService users = Executors.newFixedThreadPool(clients);
+		Dashboards dashboards = new Dashboards();
+
+		long started = System.nanoTime();
+		List<Future<List<Long>>> results = new ArrayList<>();
+		for (int i = 0; i < clients; i++) {
+			results.add(users.submit(() -> {
+				List<Long> latencies = new ArrayList<>();
+				for (int j = 0; j < requests; j++) {
+					long start = System.nanoTime();
+					MvcResult result = mockMvc.perform(get("/api/modules" + TARGET)).andReturn();
+					ResponseEntity<?> response = (ResponseEntity<?>) result.getAsyncResult(TimeUnit.SECONDS.toMillis(30));
+					latencies.add(System.nanoTime() - start);
+					if (!response.getStatusCode().is2xxSuccessful()) {
+						dashboards.errors.incrementAndGet();
+						continue;
+					}
+					for (Object module : ((Resources<?>) response.getBody()).getContent()) {
+						dashboards.statuses.incrementAndGet();
+						if (((AppStatus) ((Resource<?>) module).getContent()).getState() == DeploymentState.unknown) {
+							dashboards.unknown.incrementAndGet();
+						}
+					}
+				}
+				return latencies;
+			}));
+		}
+		for (Future<List<Long>> result : results) {
+			dashboards.latencies.addAll(result.get());
+		}
+		long elapsed = System.nanoTime() - started;
+		users.shutdown();
+
+		report("GET /api/modules", dashboards.latencies, elapsed);
+		return dashboards;
+	}
+
+	@Test
+	public void shouldSeeManyDeploymentsThrough() throws Exception {
+
+		// given
+		ObjectMapper objectMapper = new ObjectMapper();
+		List<String> jobs = new ArrayList<>();
+
+		// when
+		long started = System.nanoTime();
+		for (int i = 0; i < deployments; i++) {
+			MvcResult result = mockMvc.perform(post("/api/modules/" + MODULES.get(i % MODULES.size()) + TARGET + "&namespace=-load" + i)
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{}"))
+				.andReturn();
+			JsonNode job = objectMapper.readTree(result.getResponse().getContentAsString());
+			jobs.add(job.get("id").asText());
+		}
+
+		List<Long> latencies = new ArrayList<>();
+		int failed = 0;
+		for (String id : jobs) {
+			DeploymentJob job = deploymentJobs.get(id).get();
+			while (!job.isFinished()) {
+				Thread.sleep(10);
+			}
+			latencies.add(TimeUnit.MILLISECONDS.toNanos(job.getFinishedAt() - job.getSubmittedAt()));
+			if (job.getState() == DeploymentJob.State.failed) {
+				failed++;
+			}
+		}
+		long elapsed = System.nanoTime() - started;
+
+		// then
+		report("POST /api/modules/{module}", latencies, elapsed);
+		log.info("{} of {} deployments failed; Cloud Foundry throttled {} and failed {} of {} calls", failed, deployments,
+			cloudFoundry.throttled.get(), cloudFoundry.failed.get(), cloudFoundry.calls.get());
+		assertThat(latencies.size(), equalTo(deployments));
+	}
+
+	/**
+	 * What the dashboards saw.
+	 */
+	private static class Dashboards {
+
+		final List<Long> latencies = new ArrayList<>();
+		final AtomicInteger errors = new AtomicInteger();
+		final AtomicInteger statuses = new AtomicInteger();
+		final AtomicInteger unknown = new AtomicInteger();
+	}
+
+	private static void report(String name, List<Long> latencies, long elapsed) {
+
+		List<Long> sorted = new ArrayList<>(latencies);
+		Collections.sort(sorted);
+
+		log.info("{}: {} requests in {} ms ({} per second), p50 {} ms, p99 {} ms, max {} ms", name, sorted.size(),
+			TimeUnit.NANOSECONDS.toMillis(elapsed),
+			String.format("%.1f", sorted.size() / (elapsed / 1e9)),
+			TimeUnit.NANOSECONDS.toMillis(percentile(sorted, 0.5)),
+			TimeUnit.NANOSECONDS.toMillis(percentile(sorted, 0.99)),
+			TimeUnit.NANOSECONDS.toMillis(sorted.get(sorted.size() - 1)));
+	}
+
+	private static long percentile(List<Long> sorted, double percentile) {
+		return sorted.get(Math.max(0, (int) Math.ceil(percentile * sorted.size()) - 1));
+	}
+
+	/**
+	 * A tiny artifact for each module, laid out the way {@link ModuleArtifactIndex} expects them.
+	 */
+	private Path artifacts() throws IOException {
+
+		Path root = temporaryFolder.newFolder("spinnaker-modules").toPath();
+		for (String module : MODULES) {
+			Path directory = Files.createDirectories(root.resolve(module + "-web"));
+			try (OutputStream out = Files.newOutputStream(directory.resolve(module + "-web-1.0.jar"));
+				 ZipOutputStream zip = new ZipOutputStream(out)) {
+				zip.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+				zip.write("Manifest-Version: 1.0\r\n\r\n".getBytes("UTF-8"));
+			}
+		}
+		return root;
+	}
+
+}
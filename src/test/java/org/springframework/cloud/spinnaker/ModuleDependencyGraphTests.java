@@ -0,0 +1,91 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Greg Turnquist
+ */
+public class ModuleDependencyGraphTests {
+
+	ModuleDependencyGraph graph;
+
+	@Before
+	public void setUp() {
+
+		SpinnakerConfiguration spinnakerConfiguration = new SpinnakerConfiguration();
+		spinnakerConfiguration.setModules(Arrays.asList(
+			module("clouddriver"),
+			module("deck"),
+			module("echo", "front50.baseUrl", "${services.front50.baseUrl}", "orca.baseUrl", "${services.orca.baseUrl}"),
+			module("front50"),
+			module("orca", "echo.baseUrl", "${services.echo.baseUrl}", "oort.baseUrl", "${services.clouddriver.baseUrl}")));
+		spinnakerConfiguration.getProperties().put("services.clouddriver.baseUrl", "${services.default.protocol}://${services.clouddriver.host}");
+
+		graph = new ModuleDependencyGraph(spinnakerConfiguration);
+	}
+
+	@Test
+	public void shouldFindDependenciesFromServiceReferences() {
+
+		assertThat(graph.getDependencies("orca"), equalTo(new HashSet<>(Arrays.asList("echo", "clouddriver"))));
+		assertThat(graph.getDependencies("clouddriver").isEmpty(), equalTo(true));
+	}
+
+	@Test
+	public void shouldDeployDependenciesInEarlierWaves() {
+
+		// when
+		List<List<String>> waves = graph.waves(Arrays.asList("orca", "echo", "deck", "front50", "clouddriver"));
+
+		// then
+		assertThat(waves.size(), equalTo(2));
+		assertThat(waves.get(0), containsInAnyOrder("deck", "front50", "clouddriver"));
+		assertThat(waves.get(1), containsInAnyOrder("orca", "echo"));
+	}
+
+	@Test
+	public void shouldIgnoreDependenciesThatWerentAskedFor() {
+
+		// when
+		List<List<String>> waves = graph.waves(Arrays.asList("orca", "deck"));
+
+		// then
+		assertThat(waves.size(), equalTo(1));
+		assertThat(waves.get(0), containsInAnyOrder("orca", "deck"));
+	}
+
+	private static ModuleDetails module(String name, String... properties) {
+
+		ModuleDetails details = new ModuleDetails();
+		details.setName(name);
+		for (int i = 0; i < properties.length; i += 2) {
+			details.getProperties().put(properties[i], properties[i + 1]);
+		}
+		return details;
+	}
+
+}
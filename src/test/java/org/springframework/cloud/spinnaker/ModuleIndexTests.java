@@ -0,0 +1,94 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Greg Turnquist
+ */
+public class ModuleIndexTests {
+
+	SpinnakerConfiguration spinnakerConfiguration;
+
+	ModuleIndex index;
+
+	@Before
+	public void setUp() {
+
+		spinnakerConfiguration = new SpinnakerConfiguration();
+		spinnakerConfiguration.setModules(Arrays.asList(module("deck"), module("module1"), module("module10"), module("module100")));
+		spinnakerConfiguration.getProperties().put("redis.enabled", "false");
+		spinnakerConfiguration.getProperties().put("domain", "cfapps.io");
+		spinnakerConfiguration.getPatterns().put("accountName", "global");
+		spinnakerConfiguration.getModules().get(0).getProperties().put("redis.enabled", "true");
+		spinnakerConfiguration.getModules().get(0).getPatterns().put("accountName", "deck-only");
+
+		index = new ModuleIndex(spinnakerConfiguration);
+	}
+
+	@Test
+	public void shouldFindTheModuleWithTheLongestMatchingName() {
+
+		assertThat(index.get("module100-prod").getName(), equalTo("module100"));
+		assertThat(index.get("module10").getName(), equalTo("module10"));
+		assertThat(index.get("module1-staging").getName(), equalTo("module1"));
+		assertThat(index.get("module1-staging").namespaceOf("module1-staging"), equalTo("-staging"));
+	}
+
+	@Test
+	public void shouldFindNothingForUnmanagedApplications() {
+
+		assertThat(index.get("module"), nullValue());
+		assertThat(index.get("clouddriver-prod"), nullValue());
+		assertThat(index.lookup("clouddriver-prod").isPresent(), equalTo(false));
+	}
+
+	@Test
+	public void shouldMergeModulePropertiesOverTopLevelOnes() {
+
+		// when
+		ModuleIndex.IndexedModule deck = index.get("deck-prod");
+
+		// then
+		assertThat(deck.getProperties().get("redis.enabled"), equalTo("true"));
+		assertThat(deck.getProperties().get("domain"), equalTo("cfapps.io"));
+		assertThat(deck.getPatterns().get("accountName"), equalTo("deck-only"));
+		assertThat(index.get("module1").getPatterns().get("accountName"), equalTo("global"));
+	}
+
+	@Test
+	public void shouldKeepTheConfiguredOrder() {
+
+		assertThat(index.getModules().stream().map(ModuleIndex.IndexedModule::getName).toArray(),
+			equalTo(new Object[]{"deck", "module1", "module10", "module100"}));
+	}
+
+	private static ModuleDetails module(String name) {
+
+		ModuleDetails details = new ModuleDetails();
+		details.setName(name);
+		return details;
+	}
+
+}
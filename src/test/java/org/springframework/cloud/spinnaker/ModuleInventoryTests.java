@@ -0,0 +1,158 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.cloudfoundry.operations.applications.ApplicationSummary;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.cloud.deployer.spi.app.AppStatus;
+
+/**
+ * @author Greg Turnquist
+ */
+public class ModuleInventoryTests {
+
+	Function<String, Optional<ModuleDetails>> moduleLookup;
+
+	ModuleInventory inventory;
+
+	List<Collection<String>> lookedUp;
+
+	Function<Collection<String>, Map<String, AppStatus>> loader;
+
+	@Before
+	public void setUp() {
+
+		List<String> modules = Arrays.asList("clouddriver", "deck");
+		moduleLookup = name -> modules.stream()
+			.filter(name::startsWith)
+			.map(ModuleInventoryTests::module)
+			.findAny();
+		inventory = new ModuleInventory(moduleLookup, 60000);
+
+		lookedUp = new ArrayList<>();
+		loader = names -> {
+			lookedUp.add(names);
+			return names.stream().collect(Collectors.toMap(name -> name, name -> AppStatus.of(name).build()));
+		};
+	}
+
+	@Test
+	public void shouldGroupModulesByNamespace() {
+
+		// when
+		Map<String, List<AppStatus>> namespaces = inventory.update("target", Arrays.asList(
+			application("clouddriver", 1), application("deck", 1), application("clouddriver-test", 1), application("unrelated", 1)), loader);
+
+		// then
+		assertThat(namespaces.keySet(), containsInAnyOrder("", "-test"));
+		assertThat(deploymentIds(namespaces.get("")), containsInAnyOrder("clouddriver", "deck"));
+		assertThat(deploymentIds(namespaces.get("-test")), containsInAnyOrder("clouddriver-test"));
+	}
+
+	@Test
+	public void shouldOnlyLookUpApplicationsThatChanged() {
+
+		// given
+		inventory.update("target", Arrays.asList(application("clouddriver", 1), application("deck", 1), application("deck-test", 1)), loader);
+
+		// when
+		Map<String, List<AppStatus>> namespaces = inventory.update("target", Arrays.asList(application("clouddriver", 0), application("deck", 1)), loader);
+
+		// then
+		assertThat(lookedUp.size(), equalTo(2));
+		assertThat(lookedUp.get(1), containsInAnyOrder("clouddriver"));
+		assertThat(namespaces.keySet(), containsInAnyOrder(""));
+		assertThat(deploymentIds(namespaces.get("")), containsInAnyOrder("clouddriver", "deck"));
+	}
+
+	@Test
+	public void shouldLookUpApplicationsAgainThatCouldNotBeLookedUp() {
+
+		// given
+		inventory.update("target", Arrays.asList(application("clouddriver", 1)), names -> {
+			lookedUp.add(names);
+			return new HashMap<>();
+		});
+
+		// when
+		inventory.update("target", Arrays.asList(application("clouddriver", 1)), loader);
+
+		// then
+		assertThat(lookedUp.size(), equalTo(2));
+		assertThat(lookedUp.get(1), containsInAnyOrder("clouddriver"));
+	}
+
+	@Test
+	public void shouldForgetTargetsNobodyAsksAbout() throws InterruptedException {
+
+		// given
+		inventory = new ModuleInventory(moduleLookup, 10);
+		inventory.update("idle", Arrays.asList(application("clouddriver", 1)), loader);
+		inventory.update("busy", Arrays.asList(application("clouddriver", 1)), loader);
+		Thread.sleep(50);
+
+		// when
+		inventory.update("busy", Arrays.asList(application("clouddriver", 1)), loader);
+
+		// then
+		assertThat(inventory.size(), equalTo(1));
+
+		// when
+		inventory.update("idle", Arrays.asList(application("clouddriver", 1)), loader);
+
+		// then
+		assertThat(lookedUp.size(), equalTo(3));
+	}
+
+	private static List<String> deploymentIds(List<AppStatus> statuses) {
+		return statuses.stream().map(AppStatus::getDeploymentId).collect(Collectors.toList());
+	}
+
+	private static ApplicationSummary application(String name, int runningInstances) {
+
+		return ApplicationSummary.builder()
+			.name(name)
+			.id(name + "-id")
+			.requestedState("STARTED")
+			.instances(1)
+			.runningInstances(runningInstances)
+			.build();
+	}
+
+	private static ModuleDetails module(String name) {
+
+		ModuleDetails details = new ModuleDetails();
+		details.setName(name);
+		return details;
+	}
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+/**
+ * @author Greg Turnquist
+ */
+public class ModuleLocksTests {
+
+	ModuleLocks locks = new ModuleLocks(64);
+
+	@Test
+	public void shouldMakeASecondDeploymentOfTheSameModuleWait() throws Exception {
+
+		// given
+		CountDownLatch holding = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		List<String> stages = new CopyOnWriteArrayList<>();
+
+		CompletableFuture<Void> first = CompletableFuture.runAsync(() ->
+			locks.run("api", "org", "space", "clouddriver", stages::add, () -> {
+				holding.countDown();
+				await(release);
+			}));
+		holding.await();
+
+		// when
+		CompletableFuture<Void> second = CompletableFuture.runAsync(() ->
+			locks.run("api", "org", "space", "clouddriver", stages::add, () -> {}));
+		Thread.sleep(50);
+
+		// then
+		assertThat(second.isDone(), equalTo(false));
+		release.countDown();
+		first.get();
+		second.get();
+		assertThat(stages, contains("waiting for another deployment of clouddriver"));
+	}
+
+	@Test
+	public void shouldNotHoldUpOtherModules() throws Exception {
+
+		// given
+		String module = "clouddriver";
+		String other = "deck";
+		while (locks.lockFor("api:org:space:" + other) == locks.lockFor("api:org:space:" + module)) {
+			other += "-x";
+		}
+		String otherModule = other;
+		List<String> stages = new CopyOnWriteArrayList<>();
+
+		// when
+		locks.run("api", "org", "space", module, stages::add, () ->
+			CompletableFuture.runAsync(() -> locks.run("api", "org", "space", otherModule, stages::add, () -> {})).join());
+
+		// then
+		assertThat(stages.isEmpty(), equalTo(true));
+	}
+
+	private static void await(CountDownLatch latch) {
+
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.rules.ExpectedException.none;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+/**
+ * @author Greg Turnquist
+ */
+public class ModulePropertyTemplatesTests {
+
+	@Rule public ExpectedException thrown = none();
+
+	SpinnakerConfiguration spinnakerConfiguration;
+
+	ModuleDetails orca;
+
+	Map<String, String> data;
+
+	@Before
+	public void setUp() {
+
+		orca = new ModuleDetails();
+		orca.setName("orca");
+
+		spinnakerConfiguration = new SpinnakerConfiguration();
+		spinnakerConfiguration.setModules(Collections.singletonList(orca));
+
+		data = new HashMap<>();
+		data.put("deck.domain", "cfapps.io");
+		data.put("namespace", "-test");
+	}
+
+	@Test
+	public void shouldResolveNestedPlaceholdersRegardlessOfOrder() {
+
+		// given
+		orca.getProperties().put("oort.baseUrl", "${services.clouddriver.baseUrl}");
+		spinnakerConfiguration.getProperties().put("services.clouddriver.baseUrl",
+			"${services.default.protocol}://${services.clouddriver.host}${namespace}.${deck.domain}");
+		spinnakerConfiguration.getProperties().put("services.clouddriver.host", "clouddriver");
+		spinnakerConfiguration.getProperties().put("services.default.protocol", "http");
+
+		// when
+		Map<String, String> properties = new ModulePropertyTemplates(spinnakerConfiguration).resolve(orca, data);
+
+		// then
+		assertThat(properties.get("oort.baseUrl"), equalTo("http://clouddriver-test.cfapps.io"));
+		assertThat(properties.get("services.clouddriver.baseUrl"), equalTo("http://clouddriver-test.cfapps.io"));
+	}
+
+	@Test
+	public void shouldFillInPatternsAndModuleName() {
+
+		// given
+		spinnakerConfiguration.getPatterns().put("domain", "${deck.domain}");
+		spinnakerConfiguration.getProperties().put("spinnaker.baseUrl", "http://${module}.${domain}");
+
+		// when
+		Map<String, String> properties = new ModulePropertyTemplates(spinnakerConfiguration).resolve(orca, data);
+
+		// then
+		assertThat(properties.get("spinnaker.baseUrl"), equalTo("http://orca.cfapps.io"));
+	}
+
+	@Test
+	public void shouldLetModulesOverrideTopLevelSettings() {
+
+		// given
+		spinnakerConfiguration.getPatterns().put("accountName", "global");
+		orca.getPatterns().put("accountName", "orca-only");
+		spinnakerConfiguration.getProperties().put("account", "${accountName}");
+		spinnakerConfiguration.getProperties().put("redis.enabled", "false");
+		orca.getProperties().put("redis.enabled", "true");
+
+		// when
+		Map<String, String> properties = new ModulePropertyTemplates(spinnakerConfiguration).resolve(orca, data);
+
+		// then
+		assertThat(properties.get("account"), equalTo("orca-only"));
+		assertThat(properties.get("redis.enabled"), equalTo("true"));
+	}
+
+	@Test
+	public void shouldLeaveUnknownPlaceholdersForTheModuleToResolve() {
+
+		// given
+		spinnakerConfiguration.getProperties().put("redis.connection", "redis://${cloud.services.redis.connection.host}:6379");
+
+		// when
+		Map<String, String> properties = new ModulePropertyTemplates(spinnakerConfiguration).resolve(orca, data);
+
+		// then
+		assertThat(properties.get("redis.connection"), equalTo("redis://${cloud.services.redis.connection.host}:6379"));
+	}
+
+	@Test
+	public void shouldLayDataOnTop() {
+
+		// given
+		spinnakerConfiguration.getProperties().put("deck.domain", "example.com");
+
+		// when
+		Map<String, String> properties = new ModulePropertyTemplates(spinnakerConfiguration).resolve(orca, data);
+
+		// then
+		assertThat(properties.get("deck.domain"), equalTo("cfapps.io"));
+		assertThat(properties.get("namespace"), equalTo("-test"));
+	}
+
+	@Test
+	public void shouldRejectCircularReferences() {
+
+		// given
+		spinnakerConfiguration.getProperties().put("a", "${b}");
+		spinnakerConfiguration.getProperties().put("b", "${a}");
+
+		thrown.expect(IllegalStateException.class);
+		thrown.expectMessage(containsString("Circular placeholder reference in module 'orca'"));
+
+		// when
+		new ModulePropertyTemplates(spinnakerConfiguration).resolve(orca, data);
+
+		// then
+		// JUnit exception conditions are at the top
+	}
+
+}
@@ -17,24 +17,55 @@ package org.springframework.cloud.spinnaker;
 
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.junit.rules.ExpectedException.none;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.then;
+import static org.mockito.BDDMockito.willThrow;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
 
+import org.cloudfoundry.client.CloudFoundryClient;
+import org.cloudfoundry.operations.CloudFoundryOperations;
 import org.cloudfoundry.operations.applications.ApplicationDetail;
+import org.cloudfoundry.operations.applications.ApplicationEnvironments;
+import org.cloudfoundry.operations.applications.ApplicationSummary;
+import org.cloudfoundry.operations.applications.Applications;
+import org.cloudfoundry.operations.applications.GetApplicationEnvironmentsRequest;
+import org.cloudfoundry.operations.applications.GetApplicationRequest;
+import org.cloudfoundry.operations.applications.RestageApplicationRequest;
+import org.cloudfoundry.operations.applications.RestartApplicationRequest;
+import org.cloudfoundry.operations.applications.SetEnvironmentVariableApplicationRequest;
+import org.cloudfoundry.operations.applications.UnsetEnvironmentVariableApplicationRequest;
+import org.junit.After;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
@@ -49,7 +80,12 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.web.client.HttpServerErrorException;
 
 /**
  * @author Greg Turnquist
@@ -62,10 +98,33 @@ public class ModuleServiceTests {
 	TestAppDeployerFactory appDeployerFactory;
 
 	@Autowired
-	ModuleService moduleService;
+	CopyRecordingModuleService moduleService;
+
+	@Autowired
+	SpinnakerConfiguration spinnakerConfiguration;
+
+	@Autowired
+	ModuleArtifactIndex artifactIndex;
+
+	@Autowired
+	DeckArtifactCache deckArtifactCache;
+
+	@Autowired
+	ThreadPoolTaskExecutor moduleStatusExecutor;
+
+	@Autowired
+	ThreadPoolTaskScheduler moduleStatusScheduler;
 
 	@Rule public ExpectedException thrown = none();
 
+	@After
+	public void tearDown() {
+
+		appDeployerFactory.setOperations(null);
+		appDeployerFactory.setClient(null);
+		moduleService.copies.clear();
+	}
+
 	@Test
 	public void shouldReturnStatusCodeForRunningModules() throws Exception {
 
@@ -98,6 +157,134 @@ public class ModuleServiceTests {
 		verifyNoMoreInteractions(appDeployer);
 	}
 
+	@Test
+	public void shouldReturnStatusesForAllModules() throws Exception {
+
+		// given
+		CloudFoundryAppDeployer appDeployer = mock(CloudFoundryAppDeployer.class);
+		appDeployerFactory.setStub(appDeployer);
+
+		given(appDeployer.status(anyString())).willAnswer(invocation ->
+			AppStatus.of((String) invocation.getArguments()[0]).build());
+
+		// when
+		List<String> deploymentIds = moduleService.getStatuses("api", "org", "space", "user", "password", "-ns")
+			.map(AppStatus::getDeploymentId)
+			.collect(Collectors.toList());
+
+		// then
+		assertThat(deploymentIds, equalTo(spinnakerConfiguration.getModules().stream()
+			.map(details -> details.getName() + "-ns")
+			.collect(Collectors.toList())));
+	}
+
+	@Test
+	public void shouldReportUnknownStatusForModulesThatTimeOut() throws Exception {
+
+		// given
+		CloudFoundryAppDeployer appDeployer = mock(CloudFoundryAppDeployer.class);
+		appDeployerFactory.setStub(appDeployer);
+
+		given(appDeployer.status(anyString())).willAnswer(invocation ->
+			AppStatus.of((String) invocation.getArguments()[0]).build());
+		CountDownLatch answer = new CountDownLatch(1);
+		given(appDeployer.status("clouddriver")).willAnswer(invocation -> {
+			answer.await();
+			return AppStatus.of("clouddriver").build();
+		});
+
+		SpinnakerConfiguration.Status settings = new SpinnakerConfiguration.Status();
+		settings.setTimeout(200);
+		settings.setCacheTtl(0);
+
+		SpinnakerConfiguration configuration = new SpinnakerConfiguration();
+		configuration.setModules(spinnakerConfiguration.getModules());
+		configuration.setStatus(settings);
+
+		ModuleService impatientModuleService = new ModuleService(configuration, appDeployerFactory, artifactIndex,
+			new DeckArtifactCache(configuration.getDeckCache()), moduleStatusExecutor,
+			new ModuleStatusCache(settings, moduleStatusExecutor, moduleStatusScheduler), moduleStatusExecutor, moduleStatusScheduler,
+			new DeployMetrics());
+
+		try {
+			// when
+			Map<String, AppStatus> statuses = impatientModuleService.getStatuses("api", "org", "space", "user", "password", "")
+				.collect(Collectors.toMap(AppStatus::getDeploymentId, status -> status));
+
+			// then
+			assertThat(statuses.size(), equalTo(spinnakerConfiguration.getModules().size()));
+			assertThat(statuses.get("clouddriver").getState(), equalTo(DeploymentState.unknown));
+			assertThat(appDeployerFactory.getHeld(), greaterThan(0));
+		} finally {
+			answer.countDown();
+		}
+
+		// then
+		long deadline = System.currentTimeMillis() + 5000;
+		while (appDeployerFactory.getHeld() > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(appDeployerFactory.getHeld(), equalTo(0));
+	}
+
+	@Test
+	public void shouldReportUnknownStatusForModulesThatFail() throws Exception {
+
+		// given
+		CloudFoundryAppDeployer appDeployer = mock(CloudFoundryAppDeployer.class);
+		appDeployerFactory.setStub(appDeployer);
+
+		given(appDeployer.status(anyString())).willAnswer(invocation ->
+			AppStatus.of((String) invocation.getArguments()[0]).build());
+		given(appDeployer.status("clouddriver")).willThrow(new HttpServerErrorException(HttpStatus.BAD_GATEWAY));
+
+		// when
+		Map<String, AppStatus> statuses = moduleService.getStatuses("api", "org", "space", "user", "password", "")
+			.collect(Collectors.toMap(AppStatus::getDeploymentId, status -> status));
+
+		// then
+		assertThat(statuses.size(), equalTo(spinnakerConfiguration.getModules().size()));
+		assertThat(statuses.get("clouddriver").getState(), equalTo(DeploymentState.unknown));
+		then(appDeployer).should(times(spinnakerConfiguration.getRetry().getMaxAttempts())).status("clouddriver");
+	}
+
+	@Test
+	public void shouldLookUpOnlyDeployedModulesFromOneListOfApplications() throws Exception {
+
+		// given
+		CloudFoundryAppDeployer appDeployer = mock(CloudFoundryAppDeployer.class);
+		appDeployerFactory.setStub(appDeployer);
+
+		CloudFoundryOperations operations = mock(CloudFoundryOperations.class);
+		Applications applications = mock(Applications.class);
+		given(operations.applications()).willReturn(applications);
+		appDeployerFactory.setOperations(operations);
+
+		given(applications.list()).willReturn(Flux.just(
+			ApplicationSummary.builder().name("clouddriver-ns").id("abcdef").build(),
+			ApplicationSummary.builder().name("something-else").id("ghijkl").build()));
+		given(applications.get(any(GetApplicationRequest.class))).willReturn(Mono.just(
+			ApplicationDetail.builder()
+				.name("clouddriver-ns")
+				.id("abcdef")
+				.instanceDetail(ApplicationDetail.InstanceDetail.builder()
+					.state("RUNNING")
+					.build())
+				.build()));
+
+		// when
+		Map<String, AppStatus> statuses = moduleService.getStatuses("api", "org", "space", "user", "password", "-ns")
+			.collect(Collectors.toMap(AppStatus::getDeploymentId, status -> status));
+
+		// then
+		assertThat(statuses.size(), equalTo(spinnakerConfiguration.getModules().size()));
+		assertThat(statuses.get("clouddriver-ns").getState(), equalTo(DeploymentState.deployed));
+		assertThat(statuses.get("deck-ns").getState(), equalTo(DeploymentState.unknown));
+		then(applications).should().list();
+		then(applications).should().get(any(GetApplicationRequest.class));
+		verifyNoMoreInteractions(applications, appDeployer);
+	}
+
 	@Test
 	public void shouldReturnErrorForNonexistentModule() throws Exception {
 
@@ -173,6 +360,204 @@ public class ModuleServiceTests {
 		verifyNoMoreInteractions(appDeployer);
 	}
 
+	@Test
+	public void shouldOnlyRestartAnAppThatAlreadyRunsTheArtifact() throws IOException {
+
+		// given
+		CloudFoundryAppDeployer appDeployer = mock(CloudFoundryAppDeployer.class);
+		appDeployerFactory.setStub(appDeployer);
+
+		Applications applications = space(tagged("clouddriver", artifactDigest("clouddriver")), "clouddriver");
+
+		// when
+		moduleService.deploy("clouddriver", Collections.singletonMap("foo", "bar"), "api", "org", "space", "user", "password", "");
+
+		// then
+		ArgumentCaptor<SetEnvironmentVariableApplicationRequest> environment = ArgumentCaptor.forClass(SetEnvironmentVariableApplicationRequest.class);
+		then(applications).should().setEnvironmentVariable(environment.capture());
+		assertThat(environment.getValue().getVariableName(), equalTo("SPRING_APPLICATION_JSON"));
+		assertThat(environment.getValue().getVariableValue(), containsString("\"foo\":\"bar\""));
+		then(applications).should().restart(any(RestartApplicationRequest.class));
+		then(applications).should(never()).unsetEnvironmentVariable(any(UnsetEnvironmentVariableApplicationRequest.class));
+		then(appDeployer).should(never()).deploy(any(AppDeploymentRequest.class));
+	}
+
+	@Test
+	public void shouldUntagAnAppWhileNewBitsArePushed() throws IOException {
+
+		// given
+		CloudFoundryAppDeployer appDeployer = mock(CloudFoundryAppDeployer.class);
+		appDeployerFactory.setStub(appDeployer);
+		given(appDeployer.deploy(any())).willReturn("clouddriver");
+
+		Applications applications = space(tagged("clouddriver", "digest-of-an-older-artifact"), "clouddriver");
+
+		// when
+		moduleService.deploy("clouddriver", Collections.emptyMap(), "api", "org", "space", "user", "password", "");
+
+		// then
+		InOrder inOrder = inOrder(applications, appDeployer);
+		ArgumentCaptor<SetEnvironmentVariableApplicationRequest> tag = ArgumentCaptor.forClass(SetEnvironmentVariableApplicationRequest.class);
+		inOrder.verify(applications).unsetEnvironmentVariable(any(UnsetEnvironmentVariableApplicationRequest.class));
+		inOrder.verify(appDeployer).deploy(any(AppDeploymentRequest.class));
+		inOrder.verify(applications).setEnvironmentVariable(tag.capture());
+		assertThat(tag.getValue().getVariableName(), equalTo(ModuleService.ARTIFACT_DIGEST));
+		assertThat(tag.getValue().getVariableValue(), equalTo(artifactDigest("clouddriver")));
+		then(applications).should(never()).restart(any(RestartApplicationRequest.class));
+	}
+
+	@Test
+	public void shouldPushAnywayWhenTheAppCantBeTagged() throws IOException {
+
+		// given
+		CloudFoundryAppDeployer appDeployer = mock(CloudFoundryAppDeployer.class);
+		appDeployerFactory.setStub(appDeployer);
+		given(appDeployer.deploy(any())).willReturn("clouddriver");
+
+		Applications applications = space(tagged("clouddriver", "digest-of-an-older-artifact"), "clouddriver");
+		given(applications.unsetEnvironmentVariable(any(UnsetEnvironmentVariableApplicationRequest.class)))
+			.willReturn(Mono.error(new IllegalStateException("Not authorized")));
+		given(applications.setEnvironmentVariable(any(SetEnvironmentVariableApplicationRequest.class)))
+			.willReturn(Mono.error(new IllegalStateException("Not authorized")));
+
+		// when
+		moduleService.deploy("clouddriver", Collections.emptyMap(), "api", "org", "space", "user", "password", "");
+
+		// then
+		then(appDeployer).should().deploy(any(AppDeploymentRequest.class));
+		then(applications).should().unsetEnvironmentVariable(any(UnsetEnvironmentVariableApplicationRequest.class));
+		then(applications).should().setEnvironmentVariable(any(SetEnvironmentVariableApplicationRequest.class));
+	}
+
+	@Test
+	public void shouldCopyTheFirstNamespacesBitsToTheRest() {
+
+		// given
+		CloudFoundryAppDeployer appDeployer = mock(CloudFoundryAppDeployer.class);
+		appDeployerFactory.setStub(appDeployer);
+		given(appDeployer.deploy(any())).willReturn("clouddriver-a");
+
+		Map<String, String> digests = new ConcurrentHashMap<>();
+		Applications applications = space(digests, "clouddriver-a", "clouddriver-b", "clouddriver-c");
+
+		// when
+		List<DeploymentOutcome> outcomes = moduleService.deployToNamespaces("clouddriver", namespaces("-a", "-b", "-c"),
+			"api", "org", "space", "user", "password", stage -> {});
+
+		// then
+		assertThat(states(outcomes), equalTo(Arrays.asList(DeploymentOutcome.State.succeeded, DeploymentOutcome.State.succeeded,
+			DeploymentOutcome.State.succeeded)));
+		then(appDeployer).should(times(1)).deploy(any(AppDeploymentRequest.class));
+		assertThat(moduleService.copies.size(), equalTo(2));
+		assertThat(moduleService.copies.contains("id-clouddriver-a -> id-clouddriver-b"), equalTo(true));
+		assertThat(moduleService.copies.contains("id-clouddriver-a -> id-clouddriver-c"), equalTo(true));
+		then(applications).should(times(2)).restage(any(RestageApplicationRequest.class));
+		assertThat(digests.get("clouddriver-b"), equalTo(artifactDigest("clouddriver")));
+		assertThat(digests.get("clouddriver-c"), equalTo(artifactDigest("clouddriver")));
+	}
+
+	@Test
+	public void shouldPushToANamespaceThatDoesNotHaveTheAppYet() {
+
+		// given
+		CloudFoundryAppDeployer appDeployer = mock(CloudFoundryAppDeployer.class);
+		appDeployerFactory.setStub(appDeployer);
+		given(appDeployer.deploy(any())).willReturn("clouddriver");
+
+		Map<String, String> digests = new ConcurrentHashMap<>();
+		space(digests, "clouddriver-a");
+
+		// when
+		List<DeploymentOutcome> outcomes = moduleService.deployToNamespaces("clouddriver", namespaces("-a", "-b"),
+			"api", "org", "space", "user", "password", stage -> {});
+
+		// then
+		assertThat(states(outcomes), equalTo(Arrays.asList(DeploymentOutcome.State.succeeded, DeploymentOutcome.State.succeeded)));
+		then(appDeployer).should(times(2)).deploy(any(AppDeploymentRequest.class));
+		assertThat(moduleService.copies.isEmpty(), equalTo(true));
+	}
+
+	@Test
+	public void shouldPushWhenTheFirstNamespaceIsNotKnownToRunTheArtifact() {
+
+		// given
+		CloudFoundryAppDeployer appDeployer = mock(CloudFoundryAppDeployer.class);
+		appDeployerFactory.setStub(appDeployer);
+		given(appDeployer.deploy(any())).willReturn("clouddriver");
+
+		Map<String, String> digests = new ConcurrentHashMap<>();
+		Applications applications = space(digests, "clouddriver-a", "clouddriver-b");
+		// Neither app can be tagged, so there's no telling what clouddriver-a runs once it's pushed
+		given(applications.setEnvironmentVariable(any(SetEnvironmentVariableApplicationRequest.class)))
+			.willReturn(Mono.error(new IllegalStateException("Not authorized")));
+
+		// when
+		List<DeploymentOutcome> outcomes = moduleService.deployToNamespaces("clouddriver", namespaces("-a", "-b"),
+			"api", "org", "space", "user", "password", stage -> {});
+
+		// then
+		assertThat(states(outcomes), equalTo(Arrays.asList(DeploymentOutcome.State.succeeded, DeploymentOutcome.State.succeeded)));
+		then(appDeployer).should(times(2)).deploy(any(AppDeploymentRequest.class));
+		assertThat(moduleService.copies.isEmpty(), equalTo(true));
+	}
+
+	@Test
+	public void shouldPushDeckToEveryNamespaceSinceItsSettingsDiffer() {
+
+		// given
+		CloudFoundryAppDeployer appDeployer = mock(CloudFoundryAppDeployer.class);
+		appDeployerFactory.setStub(appDeployer);
+		given(appDeployer.deploy(any())).willReturn("deck");
+
+		Map<String, String> digests = new ConcurrentHashMap<>();
+		space(digests, "deck-a", "deck-b");
+
+		Map<String, Map<String, String>> dataByNamespace = new LinkedHashMap<>();
+		dataByNamespace.put("-a", Collections.singletonMap("deck.domain", "a.springapps.io"));
+		dataByNamespace.put("-b", Collections.singletonMap("deck.domain", "b.springapps.io"));
+
+		// when
+		List<DeploymentOutcome> outcomes = moduleService.deployToNamespaces("deck", dataByNamespace,
+			"api", "org", "space", "user", "password", stage -> {});
+
+		// then
+		assertThat(states(outcomes), equalTo(Arrays.asList(DeploymentOutcome.State.succeeded, DeploymentOutcome.State.succeeded)));
+		then(appDeployer).should(times(2)).deploy(any(AppDeploymentRequest.class));
+		assertThat(moduleService.copies.isEmpty(), equalTo(true));
+		assertThat(digests.get("deck-b"), not(equalTo(digests.get("deck-a"))));
+		assertThat(deckArtifactCache.pinCount(), equalTo(0));
+	}
+
+	@Test
+	public void shouldCopyFromTheFirstNamespaceThatDeploys() {
+
+		// given
+		CloudFoundryAppDeployer appDeployer = mock(CloudFoundryAppDeployer.class);
+		appDeployerFactory.setStub(appDeployer);
+		given(appDeployer.deploy(any())).willAnswer(invocation -> {
+			AppDeploymentRequest request = (AppDeploymentRequest) invocation.getArguments()[0];
+			if (request.getDefinition().getName().equals("clouddriver-a")) {
+				throw new IllegalStateException("Staging failed");
+			}
+			return request.getDefinition().getName();
+		});
+
+		Map<String, String> digests = new ConcurrentHashMap<>();
+		space(digests, "clouddriver-a", "clouddriver-b", "clouddriver-c");
+
+		// when
+		List<DeploymentOutcome> outcomes = moduleService.deployToNamespaces("clouddriver", namespaces("-a", "-b", "-c"),
+			"api", "org", "space", "user", "password", stage -> {});
+
+		// then
+		assertThat(states(outcomes), equalTo(Arrays.asList(DeploymentOutcome.State.failed, DeploymentOutcome.State.succeeded,
+			DeploymentOutcome.State.succeeded)));
+		assertThat(outcomes.get(0).getMessage(), containsString("Staging failed"));
+		then(appDeployer).should(times(2)).deploy(any(AppDeploymentRequest.class));
+		assertThat(moduleService.copies, equalTo(Collections.singletonList("id-clouddriver-b -> id-clouddriver-c")));
+		assertThat(digests.containsKey("clouddriver-a"), equalTo(false));
+	}
+
 	@Test
 	public void shouldHandleUndeployingAnApp() {
 
@@ -188,6 +573,104 @@ public class ModuleServiceTests {
 		verifyNoMoreInteractions(appDeployer);
 	}
 
+	@Test
+	public void shouldUndeployEveryModuleOfEveryNamespaceDespiteFailures() {
+
+		// given
+		CloudFoundryAppDeployer appDeployer = mock(CloudFoundryAppDeployer.class);
+		appDeployerFactory.setStub(appDeployer);
+
+		willThrow(new IllegalStateException("Unable to delete")).given(appDeployer).undeploy("clouddriver-a");
+
+		Map<String, String> progress = new ConcurrentHashMap<>();
+
+		// when
+		Map<String, DeploymentOutcome> outcomes = moduleService.undeployAll(Arrays.asList("-a", "-b"), "api", "org", "space", "user", "password", progress::put)
+			.stream()
+			.collect(Collectors.toMap(DeploymentOutcome::getDeploymentId, outcome -> outcome));
+
+		// then
+		assertThat(outcomes.size(), equalTo(2 * spinnakerConfiguration.getModules().size()));
+		assertThat(outcomes.get("clouddriver-a").getState(), equalTo(DeploymentOutcome.State.failed));
+		assertThat(outcomes.get("clouddriver-b").getState(), equalTo(DeploymentOutcome.State.succeeded));
+		assertThat(progress.get("clouddriver-a"), equalTo("failed"));
+		assertThat(progress.get("deck-b"), equalTo("undeployed"));
+		spinnakerConfiguration.getModules().forEach(details -> {
+			then(appDeployer).should().undeploy(details.getName() + "-a");
+			then(appDeployer).should().undeploy(details.getName() + "-b");
+		});
+	}
+
+	/**
+	 * Hand out {@link Applications} for a space where only the given apps exist. Each app keeps the artifact digest
+	 * it's tagged with in {@literal digests}, and accepts every other change.
+	 */
+	private Applications space(Map<String, String> digests, String... deploymentIds) {
+
+		CloudFoundryOperations operations = mock(CloudFoundryOperations.class);
+		Applications applications = mock(Applications.class);
+		given(operations.applications()).willReturn(applications);
+		appDeployerFactory.setOperations(operations);
+		appDeployerFactory.setClient(mock(CloudFoundryClient.class));
+
+		List<String> existing = Arrays.asList(deploymentIds);
+
+		given(applications.get(any(GetApplicationRequest.class))).willAnswer(invocation -> {
+			String name = ((GetApplicationRequest) invocation.getArguments()[0]).getName();
+			return existing.contains(name)
+				? Mono.just(ApplicationDetail.builder().name(name).id("id-" + name).build())
+				: Mono.error(new IllegalStateException("App " + name + " not found"));
+		});
+		given(applications.getEnvironments(any(GetApplicationEnvironmentsRequest.class))).willAnswer(invocation -> {
+			String digest = digests.get(((GetApplicationEnvironmentsRequest) invocation.getArguments()[0]).getName());
+			return Mono.just((digest != null)
+				? ApplicationEnvironments.builder().userProvided(ModuleService.ARTIFACT_DIGEST, digest).build()
+				: ApplicationEnvironments.builder().build());
+		});
+		given(applications.setEnvironmentVariable(any(SetEnvironmentVariableApplicationRequest.class))).willAnswer(invocation -> {
+			SetEnvironmentVariableApplicationRequest request = (SetEnvironmentVariableApplicationRequest) invocation.getArguments()[0];
+			if (request.getVariableName().equals(ModuleService.ARTIFACT_DIGEST)) {
+				digests.put(request.getName(), request.getVariableValue());
+			}
+			return Mono.empty();
+		});
+		given(applications.unsetEnvironmentVariable(any(UnsetEnvironmentVariableApplicationRequest.class))).willAnswer(invocation -> {
+			digests.remove(((UnsetEnvironmentVariableApplicationRequest) invocation.getArguments()[0]).getName());
+			return Mono.empty();
+		});
+		given(applications.restage(any(RestageApplicationRequest.class))).willReturn(Mono.empty());
+		given(applications.restart(any(RestartApplicationRequest.class))).willReturn(Mono.empty());
+
+		return applications;
+	}
+
+	/**
+	 * @return the artifact digests of a space where only the given app is tagged
+	 */
+	private static Map<String, String> tagged(String deploymentId, String digest) {
+
+		Map<String, String> digests = new ConcurrentHashMap<>();
+		digests.put(deploymentId, digest);
+		return digests;
+	}
+
+	private static Map<String, Map<String, String>> namespaces(String... namespaces) {
+
+		Map<String, Map<String, String>> dataByNamespace = new LinkedHashMap<>();
+		Arrays.stream(namespaces).forEach(namespace -> dataByNamespace.put(namespace, Collections.emptyMap()));
+		return dataByNamespace;
+	}
+
+	private static List<DeploymentOutcome.State> states(List<DeploymentOutcome> outcomes) {
+		return outcomes.stream().map(DeploymentOutcome::getState).collect(Collectors.toList());
+	}
+
+	private String artifactDigest(String module) {
+
+		ModuleDetails details = moduleService.getModuleDetails(module);
+		return ModuleService.artifactDigest(details, artifactIndex.get(details));
+	}
+
 	@Configuration
 	@EnableConfigurationProperties(SpinnakerConfiguration.class)
 	static class TestConfig {
@@ -198,12 +681,64 @@ public class ModuleServiceTests {
 		}
 
 		@Bean
-		ModuleService moduleService(SpinnakerConfiguration spinnakerConfiguration,
+		ThreadPoolTaskExecutor moduleStatusExecutor() {
+			ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+			executor.setCorePoolSize(8);
+			return executor;
+		}
+
+		@Bean
+		ThreadPoolTaskScheduler moduleStatusScheduler() {
+			return new ThreadPoolTaskScheduler();
+		}
+
+		@Bean
+		ModuleArtifactIndex moduleArtifactIndex(SpinnakerConfiguration spinnakerConfiguration, ApplicationContext ctx) throws IOException {
+
+			spinnakerConfiguration.getArtifacts().setFailOnMissing(false);
+
+			return new ModuleArtifactIndex(spinnakerConfiguration, ctx);
+		}
+
+		@Bean
+		DeckArtifactCache deckArtifactCache(SpinnakerConfiguration spinnakerConfiguration) throws IOException {
+			return new DeckArtifactCache(spinnakerConfiguration.getDeckCache());
+		}
+
+		@Bean
+		CopyRecordingModuleService moduleService(SpinnakerConfiguration spinnakerConfiguration,
 									CloudFoundryAppDeployerFactory appDeployerFactoryBean,
-									ApplicationContext ctx) {
-			return new ModuleService(spinnakerConfiguration, appDeployerFactoryBean, ctx);
+									ApplicationContext ctx) throws IOException {
+			SpinnakerConfiguration.Status uncached = new SpinnakerConfiguration.Status();
+			uncached.setCacheTtl(0);
+
+			return new CopyRecordingModuleService(spinnakerConfiguration, appDeployerFactoryBean, moduleArtifactIndex(spinnakerConfiguration, ctx),
+				deckArtifactCache(spinnakerConfiguration), moduleStatusExecutor(),
+				new ModuleStatusCache(uncached, moduleStatusExecutor(), moduleStatusScheduler()), moduleStatusExecutor(), moduleStatusScheduler(),
+				new DeployMetrics());
 		}
 
 	}
 
+	/**
+	 * Notes down which application's bits go where, rather than asking Cloud Foundry to copy them, since the copy is
+	 * followed through a job the mocked client can't answer for.
+	 */
+	static class CopyRecordingModuleService extends ModuleService {
+
+		final List<String> copies = Collections.synchronizedList(new ArrayList<>());
+
+		CopyRecordingModuleService(SpinnakerConfiguration spinnakerConfiguration, CloudFoundryAppDeployerFactory appDeployerFactory,
+								   ModuleArtifactIndex artifactIndex, DeckArtifactCache deckArtifactCache, Executor statusExecutor,
+								   ModuleStatusCache statusCache, Executor deployExecutor, TaskScheduler timeoutScheduler, DeployMetrics metrics) {
+			super(spinnakerConfiguration, appDeployerFactory, artifactIndex, deckArtifactCache, statusExecutor, statusCache, deployExecutor,
+				timeoutScheduler, metrics);
+		}
+
+		@Override
+		void copyBits(CloudFoundryClient client, String sourceApplicationId, String applicationId) {
+			copies.add(sourceApplicationId + " -> " + applicationId);
+		}
+	}
+
 }
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.cloud.deployer.spi.app.AppStatus;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * @author Greg Turnquist
+ */
+public class ModuleStatusCacheTests {
+
+	SpinnakerConfiguration.Status settings;
+
+	ThreadPoolTaskScheduler scheduler;
+
+	ModuleStatusCache cache;
+
+	AtomicInteger lookups;
+
+	@Before
+	public void setUp() {
+
+		settings = new SpinnakerConfiguration.Status();
+		scheduler = new ThreadPoolTaskScheduler();
+		scheduler.initialize();
+		cache = new ModuleStatusCache(settings, Runnable::run, scheduler);
+		lookups = new AtomicInteger();
+	}
+
+	@After
+	public void tearDown() {
+		scheduler.shutdown();
+	}
+
+	@Test
+	public void shouldServeFreshStatusFromCache() {
+
+		// given
+		settings.setCacheTtl(60000);
+
+		// when
+		AppStatus first = cache.get("api", "org", "space", "email", "password", "clouddriver", this::lookup);
+		AppStatus second = cache.get("api", "org", "space", "email", "password", "clouddriver", this::lookup);
+
+		// then
+		assertThat(second, sameInstance(first));
+		assertThat(lookups.get(), equalTo(1));
+	}
+
+	@Test
+	public void shouldServeStaleStatusWhileRefreshing() throws Exception {
+
+		// given
+		settings.setCacheTtl(1);
+		settings.setCacheMaxStale(60000);
+
+		AppStatus first = cache.get("api", "org", "space", "email", "password", "clouddriver", this::lookup);
+		Thread.sleep(10);
+
+		// when
+		AppStatus stale = cache.get("api", "org", "space", "email", "password", "clouddriver", this::lookup);
+
+		// then
+		assertThat(stale, sameInstance(first));
+		assertThat(lookups.get(), equalTo(2));
+	}
+
+	@Test
+	public void shouldShareALookupThatIsAlreadyUnderway() throws Exception {
+
+		// given
+		settings.setCacheTtl(0);
+
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		CompletableFuture<AppStatus> first = CompletableFuture.supplyAsync(() -> cache.get("api", "org", "space", "email", "password", "clouddriver", () -> {
+			started.countDown();
+			await(release);
+			return lookup();
+		}));
+		started.await();
+
+		// when
+		CompletableFuture<AppStatus> second = CompletableFuture.supplyAsync(() -> cache.get("api", "org", "space", "email", "password", "clouddriver", this::lookup));
+		Thread.sleep(50);
+		release.countDown();
+
+		// then
+		assertThat(second.get(), sameInstance(first.get()));
+		assertThat(lookups.get(), equalTo(1));
+	}
+
+	@Test
+	public void shouldShareAnAsyncLookupUntilItCompletes() {
+
+		// given
+		settings.setCacheTtl(60000);
+		CompletableFuture<AppStatus> pending = new CompletableFuture<>();
+
+		// when
+		CompletableFuture<AppStatus> first = cache.getAsync("api", "org", "space", "email", "password", "clouddriver", () -> {
+			lookups.incrementAndGet();
+			return pending;
+		});
+		CompletableFuture<AppStatus> second = cache.getAsync("api", "org", "space", "email", "password", "clouddriver", () -> {
+			lookups.incrementAndGet();
+			return pending;
+		});
+		pending.complete(AppStatus.of("clouddriver").build());
+
+		// then
+		assertThat(first.join(), sameInstance(second.join()));
+		assertThat(cache.get("api", "org", "space", "email", "password", "clouddriver", this::lookup), sameInstance(first.join()));
+		assertThat(lookups.get(), equalTo(1));
+	}
+
+	@Test
+	public void shouldStopSharingALookupThatTimesOut() throws Exception {
+
+		// given
+		settings.setCacheTtl(60000);
+		settings.setTimeout(50);
+
+		CompletableFuture<AppStatus> hung = cache.getAsync("api", "org", "space", "email", "password", "clouddriver", () -> {
+			lookups.incrementAndGet();
+			return new CompletableFuture<>();
+		});
+
+		// when
+		try {
+			hung.get();
+		} catch (ExecutionException e) {
+			assertThat(e.getCause(), instanceOf(TimeoutException.class));
+		}
+		AppStatus status = cache.getAsync("api", "org", "space", "email", "password", "clouddriver",
+			() -> CompletableFuture.completedFuture(lookup())).get();
+
+		// then
+		assertThat(hung.isCompletedExceptionally(), equalTo(true));
+		assertThat(status.getDeploymentId(), equalTo("clouddriver"));
+		assertThat(lookups.get(), equalTo(2));
+	}
+
+	@Test
+	public void shouldLookUpAgainAfterInvalidation() {
+
+		// given
+		settings.setCacheTtl(60000);
+		cache.get("api", "org", "space", "email", "password", "clouddriver", this::lookup);
+
+		// when
+		cache.invalidate("api", "org", "space", "clouddriver");
+		cache.get("api", "org", "space", "email", "password", "clouddriver", this::lookup);
+
+		// then
+		assertThat(lookups.get(), equalTo(2));
+	}
+
+	@Test
+	public void shouldKeepTargetsApart() {
+
+		// given
+		settings.setCacheTtl(60000);
+
+		// when
+		cache.get("api", "org", "space", "email", "password", "clouddriver", this::lookup);
+		cache.get("api", "org", "other-space", "email", "password", "clouddriver", this::lookup);
+
+		// then
+		assertThat(lookups.get(), equalTo(2));
+	}
+
+	@Test
+	public void shouldNotCacheALookupInvalidatedWhileUnderway() {
+
+		// given
+		settings.setCacheTtl(60000);
+		CompletableFuture<AppStatus> pending = new CompletableFuture<>();
+		cache.getAsync("api", "org", "space", "email", "password", "clouddriver", () -> {
+			lookups.incrementAndGet();
+			return pending;
+		});
+
+		// when
+		cache.invalidate("api", "org", "space", "clouddriver");
+		pending.complete(AppStatus.of("clouddriver").build());
+		cache.get("api", "org", "space", "email", "password", "clouddriver", this::lookup);
+
+		// then
+		assertThat(lookups.get(), equalTo(2));
+	}
+
+	@Test
+	public void shouldKeepCredentialsApart() {
+
+		// given
+		settings.setCacheTtl(60000);
+
+		// when
+		cache.get("api", "org", "space", "email", "password", "clouddriver", this::lookup);
+		cache.get("api", "org", "space", "someone-else", "secret", "clouddriver", this::lookup);
+
+		// then
+		assertThat(lookups.get(), equalTo(2));
+	}
+
+	@Test
+	public void shouldInvalidateEveryonesStatus() {
+
+		// given
+		settings.setCacheTtl(60000);
+		cache.get("api", "org", "space", "email", "password", "clouddriver", this::lookup);
+		cache.get("api", "org", "space", "someone-else", "secret", "clouddriver", this::lookup);
+
+		// when
+		cache.invalidate("api", "org", "space", "clouddriver");
+		cache.get("api", "org", "space", "email", "password", "clouddriver", this::lookup);
+		cache.get("api", "org", "space", "someone-else", "secret", "clouddriver", this::lookup);
+
+		// then
+		assertThat(lookups.get(), equalTo(4));
+	}
+
+	private AppStatus lookup() {
+		lookups.incrementAndGet();
+		return AppStatus.of("clouddriver").build();
+	}
+
+	private static void await(CountDownLatch latch) {
+
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
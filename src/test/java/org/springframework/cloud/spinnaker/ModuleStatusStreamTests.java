@@ -0,0 +1,128 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.cloudfoundry.operations.applications.ApplicationDetail;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import org.springframework.cloud.deployer.spi.app.AppStatus;
+import org.springframework.cloud.deployer.spi.cloudfoundry.CloudFoundryAppInstanceStatus;
+import org.springframework.scheduling.TaskScheduler;
+
+/**
+ * @author Greg Turnquist
+ */
+public class ModuleStatusStreamTests {
+
+	@Test
+	public void shouldShareOneWatcherPerTargetCredentialsAndNamespace() {
+
+		// given
+		TaskScheduler scheduler = mock(TaskScheduler.class);
+		ModuleStatusStream stream = new ModuleStatusStream(mock(ModuleService.class), scheduler, new SpinnakerConfiguration.Status());
+
+		// when
+		stream.subscribe("api", "org", "space", "user", "password", "");
+		stream.subscribe("api", "org", "space", "user", "password", "");
+		stream.subscribe("api", "org", "space", "user", "password", "-test");
+
+		// then
+		assertThat(stream.getWatcherCount(), equalTo(2));
+		then(scheduler).should(times(2)).scheduleWithFixedDelay(any(Runnable.class), anyLong());
+	}
+
+	@Test
+	public void shouldNotShareAWatcherWithDifferentCredentials() {
+
+		// given
+		TaskScheduler scheduler = mock(TaskScheduler.class);
+		ModuleStatusStream stream = new ModuleStatusStream(mock(ModuleService.class), scheduler, new SpinnakerConfiguration.Status());
+
+		// when
+		stream.subscribe("api", "org", "space", "user", "password", "");
+		stream.subscribe("api", "org", "space", "user", "guessed", "");
+		stream.subscribe("api", "org", "space", "someone-else", "password", "");
+
+		// then
+		assertThat(stream.getWatcherCount(), equalTo(3));
+	}
+
+	@Test
+	public void shouldNotStartAnotherLookWhileTheLastIsUnderway() {
+
+		// given
+		TaskScheduler scheduler = mock(TaskScheduler.class);
+		ModuleService moduleService = mock(ModuleService.class);
+		ModuleStatusStream stream = new ModuleStatusStream(moduleService, scheduler, new SpinnakerConfiguration.Status());
+
+		CompletableFuture<List<AppStatus>> pending = new CompletableFuture<>();
+		given(moduleService.getStatusesAsync("api", "org", "space", "user", "password", "")).willReturn(pending);
+
+		stream.subscribe("api", "org", "space", "user", "password", "");
+
+		ArgumentCaptor<Runnable> watcher = ArgumentCaptor.forClass(Runnable.class);
+		then(scheduler).should().scheduleWithFixedDelay(watcher.capture(), anyLong());
+
+		// when
+		watcher.getValue().run();
+		watcher.getValue().run();
+		pending.complete(Collections.singletonList(status("RUNNING")));
+		watcher.getValue().run();
+
+		// then
+		then(moduleService).should(times(2)).getStatusesAsync("api", "org", "space", "user", "password", "");
+	}
+
+	@Test
+	public void shouldOnlyConsiderStatusesChangedWhenTheirInstancesChange() {
+
+		assertThat(ModuleStatusStream.fingerprint(status("RUNNING")), equalTo(ModuleStatusStream.fingerprint(status("RUNNING"))));
+		assertThat(ModuleStatusStream.fingerprint(status("RUNNING")), not(equalTo(ModuleStatusStream.fingerprint(status("CRASHED")))));
+	}
+
+	private static AppStatus status(String instanceState) {
+
+		return AppStatus
+			.of("clouddriver")
+			.with(
+				new CloudFoundryAppInstanceStatus(
+						ApplicationDetail.builder()
+								.name("clouddriver")
+								.id("abcdef")
+								.build(),
+						ApplicationDetail.InstanceDetail.builder()
+								.state(instanceState)
+								.build(),
+						0))
+			.build();
+	}
+
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.rules.ExpectedException.none;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+/**
+ * @author Greg Turnquist
+ */
+public class RetriesTests {
+
+	SpinnakerConfiguration.Retry settings;
+
+	ThreadPoolTaskScheduler scheduler;
+
+	Retries retries;
+
+	@Rule public ExpectedException thrown = none();
+
+	@Before
+	public void setUp() {
+
+		settings = new SpinnakerConfiguration.Retry();
+		settings.setInitialBackoff(10);
+		settings.setMaxBackoff(20);
+
+		scheduler = new ThreadPoolTaskScheduler();
+		scheduler.setPoolSize(2);
+		scheduler.initialize();
+
+		retries = new Retries(settings, scheduler);
+	}
+
+	@After
+	public void tearDown() {
+		scheduler.shutdown();
+	}
+
+	@Test
+	public void shouldRetryTransientFailures() {
+
+		// given
+		AtomicInteger attempts = new AtomicInteger();
+
+		// when
+		String answer = retries.call("a flaky call", () -> {
+			if (attempts.incrementAndGet() < 3) {
+				throw new HttpServerErrorException(HttpStatus.BAD_GATEWAY);
+			}
+			return "ok";
+		});
+
+		// then
+		assertThat(answer, equalTo("ok"));
+		assertThat(attempts.get(), equalTo(3));
+	}
+
+	@Test
+	public void shouldNotRetryCallsThatCantSucceed() {
+
+		// given
+		AtomicInteger attempts = new AtomicInteger();
+
+		thrown.expect(HttpClientErrorException.class);
+
+		try {
+			// when
+			retries.call("a missing application", () -> {
+				attempts.incrementAndGet();
+				throw new HttpClientErrorException(HttpStatus.NOT_FOUND);
+			});
+		} finally {
+			// then
+			assertThat(attempts.get(), equalTo(1));
+		}
+	}
+
+	@Test
+	public void shouldRetryCallsTurnedAwayForGoingOverTheRateLimit() {
+
+		// given
+		AtomicInteger attempts = new AtomicInteger();
+
+		// when
+		String answer = retries.call("a throttled call", () -> {
+			if (attempts.incrementAndGet() < 2) {
+				throw new ApiUnavailableException("Too many calls", true);
+			}
+			return "ok";
+		});
+
+		// then
+		assertThat(answer, equalTo("ok"));
+		assertThat(attempts.get(), equalTo(2));
+	}
+
+	@Test
+	public void shouldNotRetryCallsTurnedAwayByAnOpenCircuit() {
+
+		// given
+		AtomicInteger attempts = new AtomicInteger();
+
+		thrown.expect(ApiUnavailableException.class);
+
+		try {
+			// when
+			retries.call("a suspended call", () -> {
+				attempts.incrementAndGet();
+				throw new ApiUnavailableException("Calls are suspended");
+			});
+		} finally {
+			// then
+			assertThat(attempts.get(), equalTo(1));
+		}
+	}
+
+	@Test
+	public void shouldGiveUpAsynchronouslyAfterTheLastAttempt() throws Exception {
+
+		// given
+		AtomicInteger attempts = new AtomicInteger();
+
+		// when
+		CompletableFuture<String> answer = retries.callAsync("a broken call", () -> {
+			attempts.incrementAndGet();
+			CompletableFuture<String> failed = new CompletableFuture<>();
+			failed.completeExceptionally(new HttpClientErrorException(HttpStatus.TOO_MANY_REQUESTS));
+			return failed;
+		});
+
+		// then
+		assertThat(answer.handle((value, e) -> e != null).get(5, TimeUnit.SECONDS), equalTo(true));
+		assertThat(attempts.get(), equalTo(settings.getMaxAttempts()));
+	}
+
+	@Test
+	public void shouldKeepTheFasterOfTwoHedgedCalls() throws Exception {
+
+		// given
+		settings.setHedge(true);
+		AtomicInteger attempts = new AtomicInteger();
+		CompletableFuture<String> stuck = new CompletableFuture<>();
+
+		// when
+		CompletableFuture<String> answer = retries.hedge(() -> (attempts.incrementAndGet() == 1)
+			? stuck
+			: CompletableFuture.completedFuture("second"), 50);
+
+		// then
+		assertThat(answer.get(5, TimeUnit.SECONDS), equalTo("second"));
+		assertThat(attempts.get(), equalTo(2));
+	}
+
+	@Test
+	public void shouldBoundEachBackoff() {
+
+		for (int attempt = 1; attempt < 40; attempt++) {
+			assertThat(retries.backoff(attempt), lessThanOrEqualTo(settings.getMaxBackoff()));
+		}
+	}
+
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.cloudfoundry.client.CloudFoundryClient;
+import org.cloudfoundry.operations.CloudFoundryOperations;
+import org.cloudfoundry.operations.applications.ApplicationDetail;
+import org.cloudfoundry.operations.applications.ApplicationSummary;
+import org.cloudfoundry.operations.applications.Applications;
+import org.cloudfoundry.operations.applications.GetApplicationEnvironmentsRequest;
+import org.cloudfoundry.operations.applications.GetApplicationRequest;
+import org.cloudfoundry.operations.applications.RestartApplicationRequest;
+import org.cloudfoundry.operations.applications.SetEnvironmentVariableApplicationRequest;
+import org.cloudfoundry.operations.applications.UnsetEnvironmentVariableApplicationRequest;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import org.springframework.cloud.deployer.spi.app.AppStatus;
+import org.springframework.cloud.deployer.spi.cloudfoundry.CloudFoundryAppDeployer;
+import org.springframework.cloud.deployer.spi.cloudfoundry.CloudFoundryAppInstanceStatus;
+import org.springframework.cloud.deployer.spi.cloudfoundry.CloudFoundryDeployerProperties;
+import org.springframework.cloud.deployer.spi.core.AppDeploymentRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+
+/**
+ * An in-process stand-in for a Cloud Foundry space, for driving the service under load without a real foundation.
+ * Every call takes {@link #latency} (give or take {@link #jitter}) to answer, and is turned away as throttled or
+ * failed at the configured rates. Pushing an application also takes {@link #stagingTime}.
+ *
+ * Reactive calls answer on a timer, the way the real client answers on its I/O threads. Calls through the
+ * {@link CloudFoundryAppDeployer} block the caller, as they do for real.
+ *
+ * @author Greg Turnquist
+ */
+public class SimulatedCloudFoundry implements CloudFoundryAppDeployerFactory {
+
+	long latency = 20;
+
+	long jitter = 10;
+
+	long stagingTime = 200;
+
+	double throttleRate = 0.0;
+
+	double failureRate = 0.0;
+
+	final AtomicLong calls = new AtomicLong();
+	final AtomicLong throttled = new AtomicLong();
+	final AtomicLong failed = new AtomicLong();
+
+	private final ScheduledExecutorService timer = Executors.newScheduledThreadPool(2);
+
+	private final CloudFoundryOperations operations = mock(CloudFoundryOperations.class);
+
+	private final CloudFoundryAppDeployer deployer = mock(CloudFoundryAppDeployer.class);
+
+	private final List<ApplicationSummary> summaries;
+
+	/**
+	 * @param deploymentIds the applications the space starts out with
+	 */
+	public SimulatedCloudFoundry(List<String> deploymentIds) {
+
+		this.summaries = Collections.unmodifiableList(deploymentIds.stream()
+			.map(deploymentId -> ApplicationSummary.builder().name(deploymentId).id("id-" + deploymentId).build())
+			.collect(Collectors.toList()));
+
+		final Applications applications = mock(Applications.class);
+		given(this.operations.applications()).willReturn(applications);
+
+		given(applications.list()).willAnswer(invocation -> Flux.from(answer(() -> this.summaries)));
+		given(applications.get(any(GetApplicationRequest.class))).willAnswer(invocation -> {
+			final String name = ((GetApplicationRequest) invocation.getArguments()[0]).getName();
+			return Mono.from(answer(() -> Collections.singletonList(detail(name))));
+		});
+		// The simulated space doesn't keep environment variables around, so every deployment is a full push
+		given(applications.getEnvironments(any(GetApplicationEnvironmentsRequest.class))).willAnswer(invocation ->
+			Mono.from(answer(() -> {
+				throw new IllegalStateException("Environment variables aren't simulated");
+			})));
+		given(applications.setEnvironmentVariable(any(SetEnvironmentVariableApplicationRequest.class))).willAnswer(invocation ->
+			Mono.from(answer(Collections::emptyList)));
+		given(applications.unsetEnvironmentVariable(any(UnsetEnvironmentVariableApplicationRequest.class))).willAnswer(invocation ->
+			Mono.from(answer(Collections::emptyList)));
+		given(applications.restart(any(RestartApplicationRequest.class))).willAnswer(invocation ->
+			Mono.from(answer(Collections::emptyList)));
+
+		given(this.deployer.deploy(any(AppDeploymentRequest.class))).willAnswer(invocation -> {
+			block(this.stagingTime);
+			return ((AppDeploymentRequest) invocation.getArguments()[0]).getDefinition().getName();
+		});
+		given(this.deployer.status(anyString())).willAnswer(invocation -> {
+			block(0);
+			final String deploymentId = (String) invocation.getArguments()[0];
+			return AppStatus.of(deploymentId)
+				.with(new CloudFoundryAppInstanceStatus(detail(deploymentId), detail(deploymentId).getInstanceDetails().get(0), 0))
+				.build();
+		});
+		willAnswer(invocation -> {
+			block(0);
+			return null;
+		}).given(this.deployer).undeploy(anyString());
+	}
+
+	@Override
+	public CloudFoundryAppDeployer getObject(String api, String org, String space, String email, String password, String namespace) {
+		return this.deployer;
+	}
+
+	@Override
+	public CloudFoundryAppDeployer getObject(CloudFoundryDeployerProperties props, String api, String org, String space, String email, String password, String namespace) {
+		return this.deployer;
+	}
+
+	@Override
+	public CloudFoundryOperations getOperations(String api, String org, String space, String email, String password, String namespace) {
+		return this.operations;
+	}
+
+	@Override
+	public CloudFoundryClient getClient(String api, String org, String space, String email, String password, String namespace) {
+		return null;
+	}
+
+	public void shutdown() {
+		this.timer.shutdownNow();
+	}
+
+	/**
+	 * Thrown for calls turned away as if Cloud Foundry answered {@literal 429 Too Many Requests}.
+	 */
+	public static class ThrottledException extends HttpClientErrorException {
+
+		ThrottledException() {
+			super(HttpStatus.TOO_MANY_REQUESTS);
+		}
+	}
+
+	private static ApplicationDetail detail(String deploymentId) {
+
+		return ApplicationDetail.builder()
+			.name(deploymentId)
+			.id("id-" + deploymentId)
+			.instanceDetail(ApplicationDetail.InstanceDetail.builder()
+				.state("RUNNING")
+				.build())
+			.build();
+	}
+
+	/**
+	 * @return a {@link Publisher} that answers with the supplied elements once the simulated latency has passed
+	 */
+	private <T> Publisher<T> answer(Supplier<List<T>> elements) {
+
+		return subscriber -> {
+			subscriber.onSubscribe(new Subscription() {
+
+				@Override
+				public void request(long n) {
+				}
+
+				@Override
+				public void cancel() {
+				}
+			});
+
+			this.timer.schedule(() -> {
+				try {
+					outcome();
+					elements.get().forEach(subscriber::onNext);
+					subscriber.onComplete();
+				} catch (RuntimeException e) {
+					subscriber.onError(e);
+				}
+			}, delay(), TimeUnit.MILLISECONDS);
+		};
+	}
+
+	/**
+	 * Hold up the caller for the simulated latency, plus any extra time the call takes.
+	 */
+	private void block(long extra) throws InterruptedException {
+
+		Thread.sleep(delay() + extra);
+		outcome();
+	}
+
+	/**
+	 * Turn the call away, as throttled or failed, at the configured rates.
+	 */
+	private void outcome() {
+
+		this.calls.incrementAndGet();
+
+		final double roll = ThreadLocalRandom.current().nextDouble();
+		if (roll < this.throttleRate) {
+			this.throttled.incrementAndGet();
+			throw new ThrottledException();
+		}
+		if (roll < this.throttleRate + this.failureRate) {
+			this.failed.incrementAndGet();
+			throw new IllegalStateException("Simulated failure");
+		}
+	}
+
+	private long delay() {
+		return Math.max(0, this.latency + ThreadLocalRandom.current().nextLong(-this.jitter, this.jitter + 1));
+	}
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.spinnaker;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+import org.cloudfoundry.operations.CloudFoundryOperations;
+import org.cloudfoundry.operations.applications.Applications;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import reactor.core.publisher.Flux;
+
+/**
+ * @author Greg Turnquist
+ */
+public class TargetRegistryTests {
+
+	@Rule public ExpectedException thrown = ExpectedException.none();
+
+	TargetRegistry registry = new TargetRegistry(new TestAppDeployerFactory(), new SpinnakerConfiguration.Targets());
+
+	@Test
+	public void shouldHandBackTheSameTargetForTheSameCredentials() {
+
+		// when
+		Target first = registry.register("api", "org", "space", "user", "password");
+		Target second = registry.resolve(null, "api", "org", "space", "user", "password");
+		Target other = registry.resolve(null, "api", "org", "other-space", "user", "password");
+
+		// then
+		assertThat(second.getId(), equalTo(first.getId()));
+		assertThat(other.getId(), not(equalTo(first.getId())));
+		assertThat(registry.resolve(first.getId(), null, null, null, null, null).getSpace(), equalTo("space"));
+	}
+
+	@Test
+	public void shouldKeepAnExistingTargetWhenLoggingInAgainFails() {
+
+		// given
+		CloudFoundryOperations operations = mock(CloudFoundryOperations.class);
+		Applications applications = mock(Applications.class);
+		given(operations.applications()).willReturn(applications);
+		given(applications.list()).willReturn(Flux.empty(), Flux.error(new IllegalStateException("Login timed out")));
+
+		TestAppDeployerFactory appDeployerFactory = new TestAppDeployerFactory();
+		appDeployerFactory.setOperations(operations);
+		registry = new TargetRegistry(appDeployerFactory, new SpinnakerConfiguration.Targets());
+
+		Target target = registry.register("api", "org", "space", "user", "password");
+
+		// when
+		try {
+			registry.register("api", "org", "space", "user", "password");
+			fail("Logging in again should have failed");
+		} catch (IllegalArgumentException e) {
+			assertThat(e.getMessage(), containsString("Unable to log in"));
+		}
+
+		// then
+		assertThat(registry.get(target.getId()).isPresent(), equalTo(true));
+		assertThat(registry.resolve(null, "api", "org", "space", "user", "password").getId(), equalTo(target.getId()));
+	}
+
+	@Test
+	public void shouldRefuseTargetsThatWereForgotten() {
+
+		// given
+		Target target = registry.register("api", "org", "space", "user", "password");
+		registry.forget(target.getId());
+
+		thrown.expect(IllegalArgumentException.class);
+		thrown.expectMessage("Unknown target");
+
+		// when
+		registry.resolve(target.getId(), null, null, null, null, null);
+
+		// then
+		// JUnit exception conditions are at the top
+	}
+
+}
@@ -15,6 +15,12 @@
  */
 package org.springframework.cloud.spinnaker;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.cloudfoundry.client.CloudFoundryClient;
+import org.cloudfoundry.operations.CloudFoundryOperations;
+
 import org.springframework.cloud.deployer.spi.cloudfoundry.CloudFoundryAppDeployer;
 import org.springframework.cloud.deployer.spi.cloudfoundry.CloudFoundryDeployerProperties;
 
@@ -25,6 +31,12 @@ public class TestAppDeployerFactory implements CloudFoundryAppDeployerFactory {
 
 	private CloudFoundryAppDeployer stub;
 
+	private CloudFoundryOperations operations;
+
+	private CloudFoundryClient client;
+
+	private final AtomicInteger held = new AtomicInteger();
+
 	public TestAppDeployerFactory() {
 		this.stub = stub;
 	}
@@ -39,6 +51,36 @@ public class TestAppDeployerFactory implements CloudFoundryAppDeployerFactory {
 		return this.stub;
 	}
 
+	@Override
+	public CloudFoundryOperations getOperations(String api, String org, String space, String email, String password, String namespace) {
+		return this.operations;
+	}
+
+	@Override
+	public CloudFoundryClient getClient(String api, String org, String space, String email, String password, String namespace) {
+		return this.client;
+	}
+
+	@Override
+	public Runnable hold(String api, String email, String password) {
+
+		this.held.incrementAndGet();
+
+		final AtomicBoolean released = new AtomicBoolean();
+		return () -> {
+			if (released.compareAndSet(false, true)) {
+				this.held.decrementAndGet();
+			}
+		};
+	}
+
+	/**
+	 * @return how many holds haven't been released yet
+	 */
+	public int getHeld() {
+		return this.held.get();
+	}
+
 	public CloudFoundryAppDeployer getStub() {
 		return stub;
 	}
@@ -47,4 +89,12 @@ public class TestAppDeployerFactory implements CloudFoundryAppDeployerFactory {
 		this.stub = stub;
 	}
 
+	public void setOperations(CloudFoundryOperations operations) {
+		this.operations = operations;
+	}
+
+	public void setClient(CloudFoundryClient client) {
+		this.client = client;
+	}
+
 }